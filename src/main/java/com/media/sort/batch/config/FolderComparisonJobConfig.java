@@ -3,18 +3,27 @@ package com.media.sort.batch.config;
 import com.media.sort.MediaSortingProperties;
 import com.media.sort.batch.dto.FileHashDTO;
 import com.media.sort.batch.dto.FileMoveDTO;
+import com.media.sort.batch.processor.AsyncFileProcessor;
 import com.media.sort.batch.processor.DuplicateFileProcessor;
 import com.media.sort.batch.processor.FileHashProcessor;
 import com.media.sort.batch.reader.FolderFileReader;
+import com.media.sort.batch.tasklet.SizeIndexTasklet;
+import com.media.sort.batch.writer.AsyncFileWriter;
 import com.media.sort.batch.writer.FileMoveWriter;
 import com.media.sort.batch.writer.HashMapWriter;
+import com.media.sort.config.MediaSortingConfig;
+import com.media.sort.model.ContentHash;
 import com.media.sort.service.FileQualityComparator;
 
 import com.media.sort.service.ExifDataFactory;
+import com.media.sort.service.FileSizeIndex;
+import com.media.sort.service.IoScheduler;
 import com.media.sort.service.MediaFileService;
 import com.media.sort.service.PerceptualHashService;
+import com.media.sort.service.phash.PerceptualHashIndex;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.JobScope;
 import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.job.builder.JobBuilder;
 import org.springframework.batch.core.repository.JobRepository;
@@ -26,7 +35,9 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.transaction.PlatformTransactionManager;
 
 import java.io.File;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 
 /**
  * Enhanced configuration for Folder Comparison Batch Job with quality
@@ -37,6 +48,7 @@ import java.util.concurrent.ConcurrentHashMap;
  * Duplicates subfolder).
  * 
  * Job flow:
+ * 0. Group folder1 and folder2 files by size so only same-size files are hashed
  * 1. Build hash map from folder2 (secondary/reference folder) with EXIF data
  * and perceptual hash
  * 2. Compare folder1 files against hash map, determine quality, and move files
@@ -59,28 +71,70 @@ public class FolderComparisonJobConfig {
     @Autowired
     private PerceptualHashService perceptualHashService;
 
+    @Autowired
+    private MediaSortingConfig mediaSortingConfig;
+
     /**
      * Shared hash map for storing file hashes from folder2 with metadata
      */
     @Bean
-    public ConcurrentHashMap<String, FileHashDTO> folderComparisonHashMap() {
+    public ConcurrentHashMap<ContentHash, FileHashDTO> folderComparisonHashMap() {
         return new ConcurrentHashMap<>();
     }
 
+    /**
+     * Perceptual hashes of the images in folderComparisonHashMap, kept in step
+     * with the map by HashMapWriter
+     */
+    @Bean
+    public PerceptualHashIndex<FileHashDTO> folderComparisonPerceptualHashIndex() {
+        return new PerceptualHashIndex<>();
+    }
+
     /**
      * Folder Comparison Job
      */
     @Bean
     @SuppressWarnings("null")
     public Job folderComparisonJob(JobRepository jobRepository,
+            Step compareSizeIndexStep,
             Step buildHashMapStep,
             Step compareFoldersStep) {
         return new JobBuilder("folderComparisonJob", jobRepository)
-                .start(buildHashMapStep)
+                .start(compareSizeIndexStep)
+                .next(buildHashMapStep)
                 .next(compareFoldersStep)
                 .build();
     }
 
+    /**
+     * Step 0: Size pre-pass over both folders so only files with a same-size
+     * peer are hashed
+     */
+    @Bean
+    @SuppressWarnings("null")
+    public Step compareSizeIndexStep(JobRepository jobRepository,
+            PlatformTransactionManager transactionManager,
+            SizeIndexTasklet compareSizeIndexTasklet) {
+        return new StepBuilder("compareSizeIndexStep", jobRepository)
+                .tasklet(compareSizeIndexTasklet, transactionManager)
+                .build();
+    }
+
+    /**
+     * Tasklet for the size pre-pass over folder1 and folder2. It registers the
+     * files the two step readers found, so each folder is only walked once.
+     */
+    @Bean
+    @StepScope
+    public SizeIndexTasklet compareSizeIndexTasklet(FileSizeIndex fileSizeIndex,
+            FolderFileReader folder1Reader,
+            FolderFileReader folder2Reader) {
+        boolean enabled = mediaSortingConfig.getHashing().isSizePrefilter();
+        List<List<File>> scans = enabled ? List.of(folder1Reader.getFiles(), folder2Reader.getFiles()) : List.of();
+        return new SizeIndexTasklet(fileSizeIndex, scans, enabled);
+    }
+
     /**
      * Step 1: Build hash map from folder2 (secondary folder) with EXIF data and
      * perceptual hash
@@ -90,12 +144,13 @@ public class FolderComparisonJobConfig {
             PlatformTransactionManager transactionManager,
             FolderFileReader folder2Reader,
             FileHashProcessor fileHashProcessor,
-            HashMapWriter hashMapWriter) {
+            HashMapWriter hashMapWriter,
+            IoScheduler ioScheduler) {
         return new StepBuilder("buildHashMapStep", jobRepository)
-                .<File, FileHashDTO>chunk(10, transactionManager)
+                .<File, Future<FileHashDTO>>chunk(ioScheduler.chunkSize(10), transactionManager)
                 .reader(folder2Reader)
-                .processor(fileHashProcessor)
-                .writer(hashMapWriter)
+                .processor(new AsyncFileProcessor<>(fileHashProcessor, ioScheduler))
+                .writer(new AsyncFileWriter<>(hashMapWriter))
                 .build();
     }
 
@@ -108,30 +163,33 @@ public class FolderComparisonJobConfig {
             PlatformTransactionManager transactionManager,
             FolderFileReader folder1Reader,
             DuplicateFileProcessor duplicateFileProcessor,
-            FileMoveWriter fileMoveWriter) {
+            FileMoveWriter fileMoveWriter,
+            IoScheduler ioScheduler) {
         return new StepBuilder("compareFoldersStep", jobRepository)
-                .<File, FileMoveDTO>chunk(10, transactionManager)
+                .<File, Future<FileMoveDTO>>chunk(ioScheduler.chunkSize(10), transactionManager)
                 .reader(folder1Reader)
-                .processor(duplicateFileProcessor)
-                .writer(fileMoveWriter)
+                .processor(new AsyncFileProcessor<>(duplicateFileProcessor, ioScheduler))
+                .writer(new AsyncFileWriter<>(fileMoveWriter))
                 .build();
     }
 
     /**
-     * Reader for folder2 (secondary/reference folder)
+     * Reader for folder2 (secondary/reference folder), job scoped so the
+     * size pre-pass and the hash map step share one scan
      */
     @Bean
-    @StepScope
+    @JobScope
     public FolderFileReader folder2Reader(@Value("#{jobParameters['folder2Path']}") String folder2Path) {
         String folder = folder2Path != null ? folder2Path : properties.getBatchJob().getSecondaryFolderPath();
         return new FolderFileReader(folder);
     }
 
     /**
-     * Reader for folder1 (primary folder to check for duplicates)
+     * Reader for folder1 (primary folder to check for duplicates), job
+     * scoped so the size pre-pass and the compare step share one scan
      */
     @Bean
-    @StepScope
+    @JobScope
     public FolderFileReader folder1Reader(@Value("#{jobParameters['folder1Path']}") String folder1Path) {
         String folder = folder1Path != null ? folder1Path : properties.getBatchJob().getPrimaryFolderPath();
         return new FolderFileReader(folder);
@@ -152,8 +210,9 @@ public class FolderComparisonJobConfig {
      */
     @Bean
     @StepScope
-    public HashMapWriter hashMapWriter(ConcurrentHashMap<String, FileHashDTO> folderComparisonHashMap) {
-        return new HashMapWriter(folderComparisonHashMap);
+    public HashMapWriter hashMapWriter(ConcurrentHashMap<ContentHash, FileHashDTO> folderComparisonHashMap,
+            PerceptualHashIndex<FileHashDTO> folderComparisonPerceptualHashIndex) {
+        return new HashMapWriter(folderComparisonHashMap, mediaFileService, folderComparisonPerceptualHashIndex);
     }
 
     /**
@@ -163,13 +222,15 @@ public class FolderComparisonJobConfig {
     @Bean
     @StepScope
     public DuplicateFileProcessor duplicateFileProcessor(
-            ConcurrentHashMap<String, FileHashDTO> folderComparisonHashMap) {
+            ConcurrentHashMap<ContentHash, FileHashDTO> folderComparisonHashMap,
+            PerceptualHashIndex<FileHashDTO> folderComparisonPerceptualHashIndex) {
         return new DuplicateFileProcessor(
                 mediaFileService,
                 qualityComparator,
                 exifDataFactory,
                 folderComparisonHashMap,
-                perceptualHashService);
+                perceptualHashService,
+                folderComparisonPerceptualHashIndex);
     }
 
     /**
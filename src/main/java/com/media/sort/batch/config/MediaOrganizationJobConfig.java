@@ -3,19 +3,30 @@ package com.media.sort.batch.config;
 import com.media.sort.MediaSortingProperties;
 import com.media.sort.batch.dto.FileHashDTO;
 import com.media.sort.batch.dto.MediaFileDTO;
+import com.media.sort.batch.processor.AsyncFileProcessor;
 import com.media.sort.batch.processor.FileHashProcessor;
 import com.media.sort.batch.processor.MediaFileProcessor;
 import com.media.sort.batch.reader.MediaFileReader;
 import com.media.sort.batch.reader.OrganizedFilesReader;
+import com.media.sort.batch.tasklet.SizeIndexTasklet;
+import com.media.sort.batch.writer.AsyncFileWriter;
 import com.media.sort.batch.writer.HashMapPopulatorWriter;
 import com.media.sort.batch.writer.MediaFileWriter;
+import com.media.sort.config.MediaSortingConfig;
+import com.media.sort.model.ContentHash;
 import com.media.sort.model.ExifData;
 
 import com.media.sort.service.ExifDataFactory;
+import com.media.sort.service.FileSizeIndex;
+import com.media.sort.service.IoScheduler;
 import com.media.sort.service.MediaFileService;
 import com.media.sort.service.PerceptualHashService;
+import com.media.sort.service.VideoQualityComparator;
+import com.media.sort.service.phash.PerceptualHashIndex;
+import com.media.sort.service.video.VideoFingerprintIndex;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.JobScope;
 import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.job.builder.JobBuilder;
 import org.springframework.batch.core.repository.JobRepository;
@@ -28,7 +39,10 @@ import org.springframework.transaction.PlatformTransactionManager;
 
 import java.io.File;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 /**
  * Configuration for Media Organization Batch Job.
@@ -44,39 +58,98 @@ public class MediaOrganizationJobConfig {
     @Autowired
     private MediaFileService mediaFileService;
 
+    @Autowired
+    private MediaSortingConfig mediaSortingConfig;
+
     /**
      * Shared hash map for duplicate detection across the job
      */
     @Bean
-    public Map<String, ExifData> mediaFileHashMap() {
+    public Map<ContentHash, ExifData> mediaFileHashMap() {
         return new java.util.concurrent.ConcurrentHashMap<>();
     }
 
+    /**
+     * Perceptual hashes of the images in mediaFileHashMap, kept in step with
+     * the map by the writers
+     */
+    @Bean
+    public PerceptualHashIndex<ExifData> mediaPerceptualHashIndex() {
+        return new PerceptualHashIndex<>();
+    }
+
+    /**
+     * Container fingerprints of the videos in mediaFileHashMap, kept in step
+     * with the map by the writers
+     */
+    @Bean
+    public VideoFingerprintIndex<ExifData> mediaVideoFingerprintIndex() {
+        return new VideoFingerprintIndex<>();
+    }
+
     /**
      * Media Organization Job
-     * Conditionally includes pre-scan step if cross-run duplicate detection is
-     * enabled
+     * Starts with the size pre-pass, then conditionally includes pre-scan step if
+     * cross-run duplicate detection is enabled
      */
     @Bean
     @SuppressWarnings("null")
     public Job mediaOrganizationJob(JobRepository jobRepository,
+            Step organizeSizeIndexStep,
             Step organizeMediaStep,
             Step preScanOrganizedFilesStep) {
 
         if (properties.isEnableCrossRunDuplicateDetection()) {
-            // Two-step job: pre-scan then organize
+            // Three-step job: size pre-pass, pre-scan, then organize
             return new JobBuilder("mediaOrganizationJob", jobRepository)
-                    .start(preScanOrganizedFilesStep)
+                    .start(organizeSizeIndexStep)
+                    .next(preScanOrganizedFilesStep)
                     .next(organizeMediaStep)
                     .build();
         } else {
-            // Single-step job: just organize
+            // Two-step job: size pre-pass, then organize
             return new JobBuilder("mediaOrganizationJob", jobRepository)
-                    .start(organizeMediaStep)
+                    .start(organizeSizeIndexStep)
+                    .next(organizeMediaStep)
                     .build();
         }
     }
 
+    /**
+     * Size pre-pass step - groups source and already-organized files by byte
+     * length so only files with a same-size peer are hashed
+     */
+    @Bean
+    @SuppressWarnings("null")
+    public Step organizeSizeIndexStep(JobRepository jobRepository,
+            PlatformTransactionManager transactionManager,
+            SizeIndexTasklet organizeSizeIndexTasklet) {
+        return new StepBuilder("organizeSizeIndexStep", jobRepository)
+                .tasklet(organizeSizeIndexTasklet, transactionManager)
+                .build();
+    }
+
+    /**
+     * Tasklet for the size pre-pass over new files and pre-scanned originals.
+     * It registers the files the step readers found, so the trees are only
+     * walked once.
+     */
+    @Bean
+    @StepScope
+    public SizeIndexTasklet organizeSizeIndexTasklet(FileSizeIndex fileSizeIndex,
+            MediaFileReader mediaFileReader,
+            OrganizedFilesReader organizedFilesReader) {
+        boolean enabled = mediaSortingConfig.getHashing().isSizePrefilter();
+        List<List<File>> scans = new ArrayList<>();
+        if (enabled) {
+            scans.add(mediaFileReader.getMediaFiles());
+            if (properties.isEnableCrossRunDuplicateDetection()) {
+                scans.add(organizedFilesReader.getOrganizedFiles());
+            }
+        }
+        return new SizeIndexTasklet(fileSizeIndex, scans, enabled);
+    }
+
     /**
      * Step to organize media files
      */
@@ -86,20 +159,22 @@ public class MediaOrganizationJobConfig {
             PlatformTransactionManager transactionManager,
             MediaFileReader mediaFileReader,
             MediaFileProcessor mediaFileProcessor,
-            MediaFileWriter mediaFileWriter) {
+            MediaFileWriter mediaFileWriter,
+            IoScheduler ioScheduler) {
         return new StepBuilder("organizeMediaStep", jobRepository)
-                .<File, MediaFileDTO>chunk(10, transactionManager)
+                .<File, Future<MediaFileDTO>>chunk(ioScheduler.chunkSize(10), transactionManager)
                 .reader(mediaFileReader)
-                .processor(mediaFileProcessor)
-                .writer(mediaFileWriter)
+                .processor(new AsyncFileProcessor<>(mediaFileProcessor, ioScheduler))
+                .writer(new AsyncFileWriter<>(mediaFileWriter))
                 .build();
     }
 
     /**
-     * Reader - scans source folder for media files
+     * Reader - scans source folder for media files. Job scoped so the size
+     * pre-pass and the organize step share one scan.
      */
     @Bean
-    @StepScope
+    @JobScope
     public MediaFileReader mediaFileReader(@Value("#{jobParameters['sourceFolder']}") String sourceFolder) {
         String folder = sourceFolder != null ? sourceFolder : properties.getSourceFolder();
         String imageExts = String.join(",", properties.getFileExtensions().getSupportedImageExtensions());
@@ -114,7 +189,8 @@ public class MediaOrganizationJobConfig {
     @StepScope
     public MediaFileProcessor mediaFileProcessor(ExifDataFactory exifDataFactory,
             PerceptualHashService perceptualHashService) {
-        return new MediaFileProcessor(mediaFileService, exifDataFactory, perceptualHashService);
+        return new MediaFileProcessor(mediaFileService, exifDataFactory, perceptualHashService,
+                mediaSortingConfig.getIo());
     }
 
     /**
@@ -123,10 +199,14 @@ public class MediaOrganizationJobConfig {
     @Bean
     @StepScope
     public MediaFileWriter mediaFileWriter(@Value("#{jobParameters['sourceFolder']}") String sourceFolder,
-            Map<String, ExifData> mediaFileHashMap,
-            PerceptualHashService perceptualHashService) {
+            Map<ContentHash, ExifData> mediaFileHashMap,
+            PerceptualHashService perceptualHashService,
+            PerceptualHashIndex<ExifData> mediaPerceptualHashIndex,
+            VideoQualityComparator videoQualityComparator,
+            VideoFingerprintIndex<ExifData> mediaVideoFingerprintIndex) {
         String folder = sourceFolder != null ? sourceFolder : properties.getSourceFolder();
-        return new MediaFileWriter(mediaFileService, properties, folder, mediaFileHashMap, perceptualHashService);
+        return new MediaFileWriter(mediaFileService, properties, folder, mediaFileHashMap, perceptualHashService,
+                mediaPerceptualHashIndex, videoQualityComparator, mediaVideoFingerprintIndex);
     }
 
     // ===============================================================================
@@ -143,20 +223,22 @@ public class MediaOrganizationJobConfig {
             PlatformTransactionManager transactionManager,
             OrganizedFilesReader organizedFilesReader,
             FileHashProcessor fileHashProcessor,
-            HashMapPopulatorWriter hashMapPopulatorWriter) {
+            HashMapPopulatorWriter hashMapPopulatorWriter,
+            IoScheduler ioScheduler) {
         return new StepBuilder("preScanOrganizedFilesStep", jobRepository)
-                .<File, FileHashDTO>chunk(100, transactionManager)
+                .<File, Future<FileHashDTO>>chunk(ioScheduler.chunkSize(100), transactionManager)
                 .reader(organizedFilesReader)
-                .processor(fileHashProcessor)
-                .writer(hashMapPopulatorWriter)
+                .processor(new AsyncFileProcessor<>(fileHashProcessor, ioScheduler))
+                .writer(new AsyncFileWriter<>(hashMapPopulatorWriter))
                 .build();
     }
 
     /**
-     * Reader for organized files (Images/Original and Videos/Original)
+     * Reader for organized files (Images/Original and Videos/Original). Job
+     * scoped so the size pre-pass and the pre-scan step share one scan.
      */
     @Bean
-    @StepScope
+    @JobScope
     public OrganizedFilesReader organizedFilesReader(@Value("#{jobParameters['sourceFolder']}") String sourceFolder) {
         String folder = sourceFolder != null ? sourceFolder : properties.getSourceFolder();
         return new OrganizedFilesReader(folder);
@@ -177,7 +259,10 @@ public class MediaOrganizationJobConfig {
      */
     @Bean
     @StepScope
-    public HashMapPopulatorWriter hashMapPopulatorWriter(Map<String, ExifData> mediaFileHashMap) {
-        return new HashMapPopulatorWriter(mediaFileHashMap);
+    public HashMapPopulatorWriter hashMapPopulatorWriter(Map<ContentHash, ExifData> mediaFileHashMap,
+            PerceptualHashIndex<ExifData> mediaPerceptualHashIndex,
+            VideoFingerprintIndex<ExifData> mediaVideoFingerprintIndex) {
+        return new HashMapPopulatorWriter(mediaFileHashMap, mediaFileService, mediaPerceptualHashIndex,
+                mediaVideoFingerprintIndex);
     }
 }
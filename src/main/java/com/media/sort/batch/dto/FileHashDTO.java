@@ -1,10 +1,12 @@
 package com.media.sort.batch.dto;
 
+import com.media.sort.model.ContentHash;
 import com.media.sort.model.ExifData;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
@@ -23,19 +25,40 @@ import java.nio.file.Path;
 public class FileHashDTO {
 
     private Path filePath;
-    private String hash;
+    private ContentHash hash;
 
     @Setter(AccessLevel.NONE) // Custom setter below
     private File file;
 
     private ExifData exifData;
 
-    // Perceptual hash for detecting visually similar images
-    private String perceptualHash;
+    // Perceptual hash for detecting visually similar images, valid if hasPerceptualHash
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE) // Custom accessors below
+    private long perceptualHash;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean hasPerceptualHash;
 
     @Setter(AccessLevel.NONE) // Computed in setFilePath/setFile
     private long fileSize;
 
+    public boolean hasPerceptualHash() {
+        return hasPerceptualHash;
+    }
+
+    /**
+     * The 64 bits of the perceptual hash; only meaningful if hasPerceptualHash()
+     */
+    public long getPerceptualHash() {
+        return perceptualHash;
+    }
+
+    public void setPerceptualHash(long perceptualHash) {
+        this.perceptualHash = perceptualHash;
+        this.hasPerceptualHash = true;
+    }
+
     /**
      * Custom setter for filePath that also updates file and fileSize
      */
@@ -1,5 +1,6 @@
 package com.media.sort.batch.dto;
 
+import com.media.sort.model.ContentHash;
 import com.media.sort.model.ExifData;
 import java.io.File;
 
@@ -11,7 +12,7 @@ public record MediaFileDTO(
         File sourceFile,
         String targetPath,
         ExifData exifData,
-        String fileHash,
+        ContentHash fileHash,
         MediaType mediaType) {
     public enum MediaType {
         IMAGE, VIDEO
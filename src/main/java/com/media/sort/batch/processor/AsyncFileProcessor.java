@@ -0,0 +1,44 @@
+package com.media.sort.batch.processor;
+
+import com.media.sort.service.IoScheduler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ItemProcessor;
+
+import java.io.File;
+import java.util.concurrent.Future;
+
+/**
+ * ItemProcessor that hands each file to the IoScheduler so the files of a
+ * chunk are read concurrently within their device's limits.
+ * Paired with AsyncFileWriter, which waits for the results in read order.
+ */
+@RequiredArgsConstructor
+public class AsyncFileProcessor<O> implements ItemProcessor<File, Future<O>> {
+
+    private final ItemProcessor<File, O> delegate;
+    private final IoScheduler ioScheduler;
+
+    @Override
+    public Future<O> process(File file) {
+        // Step-scoped delegates resolve their target from the step context of the calling thread
+        StepContext stepContext = StepSynchronizationManager.getContext();
+        StepExecution stepExecution = stepContext != null ? stepContext.getStepExecution() : null;
+
+        return ioScheduler.submit(file.toPath(), () -> {
+            boolean registered = stepExecution != null && StepSynchronizationManager.getContext() == null;
+            if (registered) {
+                StepSynchronizationManager.register(stepExecution);
+            }
+            try {
+                return delegate.process(file);
+            } finally {
+                if (registered) {
+                    StepSynchronizationManager.close();
+                }
+            }
+        });
+    }
+}
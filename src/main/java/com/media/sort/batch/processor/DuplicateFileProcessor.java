@@ -2,11 +2,13 @@ package com.media.sort.batch.processor;
 
 import com.media.sort.batch.dto.FileMoveDTO;
 import com.media.sort.batch.dto.FileHashDTO;
+import com.media.sort.model.ContentHash;
 import com.media.sort.model.ExifData;
 import com.media.sort.service.ExifDataFactory;
 import com.media.sort.service.FileQualityComparator;
 import com.media.sort.service.MediaFileService;
 import com.media.sort.service.PerceptualHashService;
+import com.media.sort.service.phash.PerceptualHashIndex;
 import com.media.sort.util.DuplicatePatternUtils;
 import com.media.sort.util.FileOperationUtils;
 import lombok.RequiredArgsConstructor;
@@ -31,13 +33,15 @@ public class DuplicateFileProcessor implements ItemProcessor<File, FileMoveDTO>
     private final MediaFileService mediaFileService;
     private final FileQualityComparator qualityComparator;
     private final ExifDataFactory exifDataFactory;
-    private final ConcurrentHashMap<String, FileHashDTO> referenceHashMap;
+    private final ConcurrentHashMap<ContentHash, FileHashDTO> referenceHashMap;
     private final PerceptualHashService perceptualHashService;
+    private final PerceptualHashIndex<FileHashDTO> perceptualHashIndex;
 
     @Override
     public FileMoveDTO process(File file) throws Exception {
         try {
-            String hash = mediaFileService.calculateHash(file.toPath());
+            ContentHash hash = mediaFileService.resolveFingerprint(referenceHashMap,
+                    mediaFileService.calculateHashKey(file.toPath()), file.toPath(), FileHashDTO::getFilePath);
 
             // Check for exact hash match
             if (referenceHashMap.containsKey(hash)) {
@@ -65,7 +69,7 @@ public class DuplicateFileProcessor implements ItemProcessor<File, FileMoveDTO>
 
             // Check for perceptual duplicate (visually similar)
             if (perceptualHashService != null && isImageFile(file)) {
-                FileHashDTO perceptualMatch = findPerceptualDuplicate(file);
+                FileHashDTO perceptualMatch = findPerceptualDuplicate(file, hash);
                 if (perceptualMatch != null) {
                     // Apply same filters
                     if (isBurstSequence(file, perceptualMatch.getFile())) {
@@ -143,21 +147,16 @@ public class DuplicateFileProcessor implements ItemProcessor<File, FileMoveDTO>
     /**
      * Find perceptual duplicate by comparing perceptual hashes
      */
-    private FileHashDTO findPerceptualDuplicate(File file) {
+    private FileHashDTO findPerceptualDuplicate(File file, ContentHash contentHash) {
         try {
-            String perceptualHash = perceptualHashService.computeHash(file);
-            if (perceptualHash == null) {
+            PerceptualHashService.ImageHash imageHash = perceptualHashService.hashImage(file, null, contentHash);
+            if (imageHash == null) {
                 return null;
             }
 
-            // Search through reference hash map for perceptually similar images
-            for (FileHashDTO refDTO : referenceHashMap.values()) {
-                if (refDTO.getPerceptualHash() != null) {
-                    if (perceptualHashService.areSimilar(perceptualHash, refDTO.getPerceptualHash())) {
-                        return refDTO;
-                    }
-                }
-            }
+            // Look up the most similar reference image within the Hamming threshold
+            return perceptualHashService.findSimilar(perceptualHashIndex, imageHash.hash(), file, contentHash,
+                    FileHashDTO::getFile, FileHashDTO::getHash);
         } catch (Exception e) {
             log.warn("Failed to find perceptual duplicate for: {}", file.getAbsolutePath(), e);
         }
@@ -1,6 +1,7 @@
 package com.media.sort.batch.processor;
 
 import com.media.sort.batch.dto.FileHashDTO;
+import com.media.sort.model.ContentHash;
 import com.media.sort.model.ExifData;
 import com.media.sort.service.ExifDataFactory;
 import com.media.sort.service.MediaFileService;
@@ -27,11 +28,11 @@ public class FileHashProcessor implements ItemProcessor<File, FileHashDTO> {
     @Override
     public FileHashDTO process(File file) throws Exception {
         try {
-            String hash = mediaFileService.calculateHash(file.toPath());
+            ContentHash hash = mediaFileService.calculateHashKey(file.toPath());
 
             // Extract EXIF data for media files
             ExifData exifData = null;
-            String perceptualHash = null;
+            PerceptualHashService.ImageHash imageHash = null;
 
             // Try to create ExifData - it will determine if it's a media file
             try {
@@ -46,7 +47,7 @@ public class FileHashProcessor implements ItemProcessor<File, FileHashDTO> {
                     // Calculate perceptual hash for images
                     if (exifData.isImage() && perceptualHashService != null) {
                         try {
-                            perceptualHash = perceptualHashService.computeHash(file);
+                            imageHash = perceptualHashService.hashImage(file, null, hash);
                             log.debug("Calculated perceptual hash for: {}", file.getAbsolutePath());
                         } catch (Exception e) {
                             log.warn("Failed to calculate perceptual hash for: {}", file.getAbsolutePath(), e);
@@ -59,12 +60,15 @@ public class FileHashProcessor implements ItemProcessor<File, FileHashDTO> {
                 exifData = null;
             }
 
-            return FileHashDTO.builder()
+            FileHashDTO dto = FileHashDTO.builder()
                     .filePath(file.toPath())
                     .hash(hash)
                     .exifData(exifData)
-                    .perceptualHash(perceptualHash)
                     .build();
+            if (imageHash != null) {
+                dto.setPerceptualHash(imageHash.hash());
+            }
+            return dto;
 
         } catch (Exception e) {
             log.error("Error processing file: {}", file.getAbsolutePath(), e);
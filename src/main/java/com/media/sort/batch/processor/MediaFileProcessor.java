@@ -1,17 +1,20 @@
 package com.media.sort.batch.processor;
 
 import com.media.sort.batch.dto.MediaFileDTO;
+import com.media.sort.config.MediaSortingConfig;
+import com.media.sort.model.ContentHash;
 import com.media.sort.model.ExifData;
 import com.media.sort.service.ExifDataFactory;
+import com.media.sort.service.FileTypeRegistry;
 import com.media.sort.service.MediaFileService;
 import com.media.sort.service.PerceptualHashService;
+import com.media.sort.util.FileContent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.batch.item.ItemProcessor;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
 
 /**
  * ItemProcessor for media files.
@@ -24,12 +27,14 @@ public class MediaFileProcessor implements ItemProcessor<File, MediaFileDTO> {
     private final MediaFileService mediaFileService;
     private final ExifDataFactory exifDataFactory;
     private final PerceptualHashService perceptualHashService;
+    private final MediaSortingConfig.Io ioConfig;
 
     @Override
     public MediaFileDTO process(File file) throws Exception {
-        try {
+        // Read small images once and share the bytes with every consumer below
+        try (FileContent content = readOnce(file)) {
             // Create ExifData object using factory (handles all dependency injection)
-            ExifData exifData = exifDataFactory.createExifData(file);
+            ExifData exifData = exifDataFactory.createExifData(file, content);
 
             // Skip "other" files (non-media files)
             if (exifData.isOther()) {
@@ -38,23 +43,19 @@ public class MediaFileProcessor implements ItemProcessor<File, MediaFileDTO> {
             }
 
             // Calculate file hash for duplicate detection
-            String fileHash = mediaFileService.calculateHash(file.toPath());
+            ContentHash fileHash = mediaFileService.calculateHashKey(file.toPath(), content);
 
-            // For images: Compute perceptual hash and extract dimensions
+            // For images: Compute perceptual hash (dimensions come from the metadata headers)
             if (exifData.isImage()) {
-                try {
-                    // Compute perceptual hash
-                    String pHash = perceptualHashService.computeHash(file);
-                    exifData.setPerceptualHash(pHash);
-
-                    // Extract image dimensions
-                    BufferedImage img = ImageIO.read(file);
-                    if (img != null) {
-                        exifData.setImageWidth(img.getWidth());
-                        exifData.setImageHeight(img.getHeight());
+                // Decode once, at reduced resolution, for the perceptual hash
+                PerceptualHashService.ImageHash imageHash = perceptualHashService.hashImage(file, content, fileHash);
+                if (imageHash != null) {
+                    exifData.setPerceptualHash(imageHash.hash());
+                    if (exifData.getImageWidth() == null) {
+                        // Metadata had no dimensions; the decoder read them from the image header
+                        exifData.setImageWidth(imageHash.width());
+                        exifData.setImageHeight(imageHash.height());
                     }
-                } catch (Exception e) {
-                    log.warn("Failed to compute perceptual hash/dimensions for: {}", file.getAbsolutePath(), e);
                 }
             }
 
@@ -79,4 +80,29 @@ public class MediaFileProcessor implements ItemProcessor<File, MediaFileDTO> {
             return null;
         }
     }
+
+    /**
+     * Reads an image into memory when single-read is enabled and the file is
+     * small enough; videos are only partially read by their consumers, so
+     * reading them whole would cost more than it saves.
+     *
+     * @return The file's bytes, or null to let each consumer read the file
+     */
+    private FileContent readOnce(File file) {
+        if (!ioConfig.isSingleRead() || !FileTypeRegistry.IMAGE_EXTENSIONS.contains(extensionOf(file))) {
+            return null;
+        }
+        try {
+            return FileContent.read(file, ioConfig.getSingleReadMaxFileSize());
+        } catch (IOException e) {
+            log.debug("Single read failed for {}, consumers will read the file: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private static String extensionOf(File file) {
+        String name = file.getName();
+        int dotIndex = name.lastIndexOf('.');
+        return dotIndex == -1 ? "" : name.substring(dotIndex + 1).toLowerCase();
+    }
 }
@@ -59,4 +59,11 @@ public class FolderFileReader implements ItemReader<File> {
         }
         return null; // End of data
     }
+
+    /**
+     * Get all files found by the scan
+     */
+    public List<File> getFiles() {
+        return files;
+    }
 }
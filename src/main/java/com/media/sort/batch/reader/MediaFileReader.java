@@ -130,4 +130,11 @@ public class MediaFileReader implements ItemReader<File> {
         }
         return null; // End of data
     }
+
+    /**
+     * Get all media files found by the scan
+     */
+    public List<File> getMediaFiles() {
+        return mediaFiles;
+    }
 }
@@ -83,4 +83,11 @@ public class OrganizedFilesReader implements ItemReader<File> {
     public int getFileCount() {
         return organizedFiles.size();
     }
+
+    /**
+     * Get all organized files found by the scan
+     */
+    public List<File> getOrganizedFiles() {
+        return organizedFiles;
+    }
 }
@@ -0,0 +1,61 @@
+package com.media.sort.batch.tasklet;
+
+import com.media.sort.service.FileSizeIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Pre-pass Tasklet that groups every file a job will hash by byte length.
+ * Runs before any hashing step so processors only compute content hashes for
+ * files in a size group with two or more members.
+ *
+ * The file lists are the ones the job's readers scanned, so each tree is
+ * walked once and the lists are not copied.
+ */
+@Slf4j
+public class SizeIndexTasklet implements Tasklet {
+
+    private final FileSizeIndex fileSizeIndex;
+    private final List<List<File>> scans;
+    private final boolean enabled;
+
+    /**
+     * @param fileSizeIndex The index to fill
+     * @param scans         The files found by each of the job's readers
+     * @param enabled       Whether the size pre-filter is on
+     */
+    public SizeIndexTasklet(FileSizeIndex fileSizeIndex, List<List<File>> scans, boolean enabled) {
+        this.fileSizeIndex = fileSizeIndex;
+        this.scans = scans;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) {
+        // Always start from a clean index so sizes from a previous job never leak in
+        fileSizeIndex.clear();
+
+        if (!enabled) {
+            log.info("Size pre-filter disabled - all files will be hashed");
+            return RepeatStatus.FINISHED;
+        }
+
+        for (List<File> files : scans) {
+            for (File file : files) {
+                fileSizeIndex.register(file);
+                contribution.incrementReadCount();
+            }
+        }
+
+        int withPeers = fileSizeIndex.getFilesWithPeers();
+        log.info("Size pre-pass complete: {} files scanned, {} share a size with another file and need hashing",
+                fileSizeIndex.getRegisteredFiles(), withPeers);
+        return RepeatStatus.FINISHED;
+    }
+}
@@ -0,0 +1,41 @@
+package com.media.sort.batch.writer;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * ItemWriter that waits for the results of AsyncFileProcessor and passes them
+ * to the real writer in the order the files were read.
+ * Files filtered by the processor (null results) are skipped, as they would
+ * be by a synchronous step.
+ */
+@RequiredArgsConstructor
+public class AsyncFileWriter<T> implements ItemWriter<Future<T>> {
+
+    private final ItemWriter<T> delegate;
+
+    @Override
+    public void write(Chunk<? extends Future<T>> chunk) throws Exception {
+        Chunk<T> results = new Chunk<>();
+        for (Future<T> future : chunk) {
+            try {
+                T result = future.get();
+                if (result != null) {
+                    results.add(result);
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        if (!results.isEmpty()) {
+            delegate.write(results);
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package com.media.sort.batch.writer;
 
 import com.media.sort.batch.dto.FileHashDTO;
+import com.media.sort.model.ContentHash;
 import com.media.sort.model.ExifData;
+import com.media.sort.service.MediaFileService;
+import com.media.sort.service.phash.PerceptualHashIndex;
+import com.media.sort.service.video.VideoFingerprintIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.batch.item.Chunk;
@@ -21,7 +25,10 @@ import java.util.concurrent.atomic.AtomicInteger;
 @RequiredArgsConstructor
 public class HashMapPopulatorWriter implements ItemWriter<FileHashDTO> {
 
-    private final Map<String, ExifData> fileHashMap;
+    private final Map<ContentHash, ExifData> fileHashMap;
+    private final MediaFileService mediaFileService;
+    private final PerceptualHashIndex<ExifData> perceptualHashIndex;
+    private final VideoFingerprintIndex<ExifData> videoFingerprintIndex;
     private final AtomicInteger populatedCount = new AtomicInteger(0);
 
     @Override
@@ -31,12 +38,34 @@ public class HashMapPopulatorWriter implements ItemWriter<FileHashDTO> {
                 // Only add files with EXIF data (media files)
                 // Skip files without EXIF (like text files, etc.)
                 if (dto.getExifData() != null) {
-                    fileHashMap.put(dto.getHash(), dto.getExifData());
+                    // Files whose partial fingerprint collides with different content get their full hash
+                    dto.setHash(mediaFileService.resolveFingerprint(fileHashMap, dto.getHash(), dto.getFilePath(),
+                            existing -> existing.getFile().toPath()));
+                    ExifData exifData = dto.getExifData();
+                    exifData.setContentHash(dto.getHash());
+                    if (!exifData.hasPerceptualHash() && dto.hasPerceptualHash()) {
+                        exifData.setPerceptualHash(dto.getPerceptualHash());
+                    }
+                    ExifData previous = fileHashMap.put(dto.getHash(), exifData);
+                    if (previous != null && previous != exifData) {
+                        perceptualHashIndex.remove(previous);
+                        videoFingerprintIndex.remove(previous);
+                    }
+                    // Organized images take part in perceptual duplicate lookups of new files
+                    if (exifData.isImage() && exifData.hasPerceptualHash()) {
+                        perceptualHashIndex.put(exifData, exifData.getPerceptualHash());
+                    }
+                    // and organized videos in re-encoded copy lookups
+                    if (exifData.isVideo() && exifData.getVideoFingerprint() != null) {
+                        videoFingerprintIndex.put(exifData, exifData.getVideoFingerprint());
+                    }
+                    // Name conflicts with this file are then resolved without reading it again
+                    mediaFileService.registerOriginal(exifData);
                     populatedCount.incrementAndGet();
 
                     log.debug("Added to reference map: {} (hash: {})",
                             dto.getFilePath().getFileName(),
-                            dto.getHash().substring(0, 8) + "...");
+                            dto.getHash());
                 }
             }
         }
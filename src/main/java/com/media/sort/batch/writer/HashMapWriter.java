@@ -1,6 +1,9 @@
 package com.media.sort.batch.writer;
 
 import com.media.sort.batch.dto.FileHashDTO;
+import com.media.sort.model.ContentHash;
+import com.media.sort.service.MediaFileService;
+import com.media.sort.service.phash.PerceptualHashIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.item.Chunk;
@@ -16,16 +19,30 @@ public class HashMapWriter implements ItemWriter<FileHashDTO> {
 
     private static final Logger logger = LoggerFactory.getLogger(HashMapWriter.class);
 
-    private final ConcurrentHashMap<String, FileHashDTO> hashMap;
+    private final ConcurrentHashMap<ContentHash, FileHashDTO> hashMap;
+    private final MediaFileService mediaFileService;
+    private final PerceptualHashIndex<FileHashDTO> perceptualHashIndex;
 
-    public HashMapWriter(ConcurrentHashMap<String, FileHashDTO> hashMap) {
+    public HashMapWriter(ConcurrentHashMap<ContentHash, FileHashDTO> hashMap, MediaFileService mediaFileService,
+            PerceptualHashIndex<FileHashDTO> perceptualHashIndex) {
         this.hashMap = hashMap;
+        this.mediaFileService = mediaFileService;
+        this.perceptualHashIndex = perceptualHashIndex;
     }
 
     @Override
     public void write(Chunk<? extends FileHashDTO> chunk) throws Exception {
         for (FileHashDTO dto : chunk) {
-            hashMap.put(dto.getHash(), dto);
+            // Files whose partial fingerprint collides with different content get their full hash
+            dto.setHash(mediaFileService.resolveFingerprint(hashMap, dto.getHash(), dto.getFilePath(),
+                    FileHashDTO::getFilePath));
+            FileHashDTO previous = hashMap.put(dto.getHash(), dto);
+            if (previous != null && previous != dto) {
+                perceptualHashIndex.remove(previous);
+            }
+            if (dto.hasPerceptualHash()) {
+                perceptualHashIndex.put(dto, dto.getPerceptualHash());
+            }
             logger.debug("Added to hash map: {} -> {} (size: {} bytes)",
                     dto.getHash(), dto.getFilePath(), dto.getFileSize());
         }
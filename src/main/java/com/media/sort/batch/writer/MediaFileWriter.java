@@ -2,11 +2,15 @@ package com.media.sort.batch.writer;
 
 import com.media.sort.MediaSortingProperties;
 import com.media.sort.batch.dto.MediaFileDTO;
+import com.media.sort.model.ContentHash;
 import com.media.sort.model.ExifData;
 
 import com.media.sort.service.MediaFileService;
 import com.media.sort.service.ReportingService;
 import com.media.sort.service.TransactionLog;
+import com.media.sort.service.VideoQualityComparator;
+import com.media.sort.service.phash.PerceptualHashIndex;
+import com.media.sort.service.video.VideoFingerprintIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.item.Chunk;
@@ -29,9 +33,12 @@ public class MediaFileWriter implements ItemWriter<MediaFileDTO> {
     private final MediaFileService mediaFileService;
     private final MediaSortingProperties properties;
     private final String sourceFolder;
-    private final Map<String, ExifData> fileHashMap;
+    private final Map<ContentHash, ExifData> fileHashMap;
     private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
     private final com.media.sort.service.PerceptualHashService perceptualHashService;
+    private final PerceptualHashIndex<ExifData> perceptualHashIndex;
+    private final VideoQualityComparator videoQualityComparator;
+    private final VideoFingerprintIndex<ExifData> videoFingerprintIndex;
 
     @Autowired(required = false)
     @SuppressWarnings("unused") // Will be used to log operations for undo capability
@@ -49,13 +56,19 @@ public class MediaFileWriter implements ItemWriter<MediaFileDTO> {
     public MediaFileWriter(MediaFileService mediaFileService,
             MediaSortingProperties properties,
             String sourceFolder,
-            Map<String, ExifData> fileHashMap,
-            com.media.sort.service.PerceptualHashService perceptualHashService) {
+            Map<ContentHash, ExifData> fileHashMap,
+            com.media.sort.service.PerceptualHashService perceptualHashService,
+            PerceptualHashIndex<ExifData> perceptualHashIndex,
+            VideoQualityComparator videoQualityComparator,
+            VideoFingerprintIndex<ExifData> videoFingerprintIndex) {
         this.mediaFileService = mediaFileService;
         this.properties = properties;
         this.sourceFolder = sourceFolder;
         this.fileHashMap = fileHashMap;
         this.perceptualHashService = perceptualHashService;
+        this.perceptualHashIndex = perceptualHashIndex;
+        this.videoQualityComparator = videoQualityComparator;
+        this.videoFingerprintIndex = videoFingerprintIndex;
         initializeDirectories();
     }
 
@@ -95,8 +108,9 @@ public class MediaFileWriter implements ItemWriter<MediaFileDTO> {
     }
 
     private void moveMediaFile(MediaFileDTO dto) {
-        String fileHash = dto.fileHash();
         ExifData fileData = dto.exifData();
+        ContentHash fileHash = resolveFileHash(dto.fileHash(), fileData);
+        fileData.setContentHash(fileHash);
         boolean isImage = dto.mediaType() == MediaFileDTO.MediaType.IMAGE;
         String folderDate = fileData.getFolderDate();
 
@@ -113,7 +127,7 @@ public class MediaFileWriter implements ItemWriter<MediaFileDTO> {
                     "Original file registered in map but missing from disk: {}. Treating current file as new Original.",
                     originalFileData.getFile().getAbsolutePath());
             originalFileData = null; // Reset so we enter the "First occurrence" block
-            fileHashMap.remove(fileHash); // Remove stale entry
+            removeFromMap(fileHash); // Remove stale entry
         }
 
         if (originalFileData != null) {
@@ -142,7 +156,7 @@ public class MediaFileWriter implements ItemWriter<MediaFileDTO> {
 
                     // 3. Update map ONLY after successful moves
                     if (fileData.getFile().exists()) { // Verify move succeeded
-                        fileHashMap.put(fileHash, fileData);
+                        putInMap(fileHash, fileData);
                     }
 
                     logger.info("Moved previous original: {} to Duplicates, kept better original: {}",
@@ -166,7 +180,7 @@ public class MediaFileWriter implements ItemWriter<MediaFileDTO> {
 
                     // 3. Update map ONLY after successful moves
                     if (fileData.getFile().exists()) {
-                        fileHashMap.put(fileHash, fileData);
+                        putInMap(fileHash, fileData);
                     }
 
                     logger.info("Moved previous original: {} to Duplicates, kept better original: {}",
@@ -202,7 +216,7 @@ public class MediaFileWriter implements ItemWriter<MediaFileDTO> {
                         // Update map
                         removeFromMap(filenameDuplicate); // Helper method needed or inline
                         if (fileData.getFile().exists())
-                            fileHashMap.put(fileHash, fileData);
+                            putInMap(fileHash, fileData);
 
                     } else {
                         // Existing is better (expected for " - low")
@@ -215,7 +229,7 @@ public class MediaFileWriter implements ItemWriter<MediaFileDTO> {
 
             // 2. Check for Perceptual Duplicates (images only)
             // ONLY if feature is enabled
-            if (properties.isPerceptualHashEnabled() && isImage && fileData.getPerceptualHash() != null) {
+            if (properties.isPerceptualHashEnabled() && isImage && fileData.hasPerceptualHash()) {
                 ExifData perceptualDuplicate = findPerceptualDuplicate(fileData);
 
                 if (perceptualDuplicate != null) {
@@ -230,7 +244,7 @@ public class MediaFileWriter implements ItemWriter<MediaFileDTO> {
                         mediaFileService.executeMove(fileData, new File(originalImageDirectory, folderDate), false,
                                 true);
                         if (fileData.getFile().exists()) {
-                            fileHashMap.put(fileHash, fileData);
+                            putInMap(fileHash, fileData);
                         }
                         return;
                     }
@@ -255,21 +269,14 @@ public class MediaFileWriter implements ItemWriter<MediaFileDTO> {
 
                         // Update map: Remove old hash and add new hash
                         // Find and remove the old file's hash from the map
-                        String oldHash = null;
-                        for (Map.Entry<String, ExifData> entry : fileHashMap.entrySet()) {
-                            if (entry.getValue() == perceptualDuplicate) {
-                                oldHash = entry.getKey();
-                                break;
-                            }
-                        }
+                        ContentHash oldHash = removeFromMap(perceptualDuplicate);
                         if (oldHash != null) {
-                            fileHashMap.remove(oldHash);
                             logger.info("Removed old hash {} for lower quality file from map", oldHash);
                         }
 
                         // Add new hash for better quality file
                         if (fileData.getFile().exists()) {
-                            fileHashMap.put(fileHash, fileData);
+                            putInMap(fileHash, fileData);
                             logger.info("Added new hash {} for better quality file to map", fileHash);
                         }
                     } else {
@@ -287,6 +294,34 @@ public class MediaFileWriter implements ItemWriter<MediaFileDTO> {
                 }
             }
 
+            // 3. Check for re-encoded copies of the same clip (videos only)
+            if (properties.isPerceptualHashEnabled() && !isImage && fileData.getVideoFingerprint() != null) {
+                ExifData sameClip = videoQualityComparator.findSameClip(videoFingerprintIndex, fileData);
+
+                if (sameClip != null) {
+                    logger.info("Re-encoded video detected: {} is the same clip as {}",
+                            fileData.getFile().getName(), sameClip.getFile().getName());
+                    String dateFolder = folderDate != null ? folderDate : "";
+
+                    if (fileData.isBetterQualityThan(sameClip)) {
+                        // Current file is the better copy - it should be the original
+                        mediaFileService.executeMove(sameClip, new File(duplicateVideoDirectory, dateFolder), true,
+                                false);
+                        mediaFileService.executeMove(fileData, new File(originalVideoDirectory, dateFolder), false,
+                                true);
+
+                        removeFromMap(sameClip);
+                        if (fileData.getFile().exists()) {
+                            putInMap(fileHash, fileData);
+                        }
+                    } else {
+                        mediaFileService.executeMove(fileData, new File(duplicateVideoDirectory, dateFolder), true,
+                                false);
+                    }
+                    return;
+                }
+            }
+
             // First occurrence - original file (unique, no duplicate - clean name)
             if (isImage) {
                 mediaFileService.executeMove(fileData,
@@ -298,13 +333,28 @@ public class MediaFileWriter implements ItemWriter<MediaFileDTO> {
 
             // Only add to map if move succeeded
             if (fileData.getFile().exists()) {
-                fileHashMap.put(fileHash, fileData);
+                putInMap(fileHash, fileData);
             } else {
                 logger.error("Failed to move original file, not adding to map: {}", fileData.getFile().getName());
             }
         }
     }
 
+    /**
+     * Confirm a partial fingerprint match against the map entry with a full hash.
+     * If confirmation fails the file gets a unique key so it is never
+     * treated as an exact duplicate of another file.
+     */
+    private ContentHash resolveFileHash(ContentHash fileHash, ExifData fileData) {
+        try {
+            return mediaFileService.resolveFingerprint(fileHashMap, fileHash, fileData.getFile().toPath(),
+                    existing -> existing.getFile().toPath());
+        } catch (Exception e) {
+            logger.error("Failed to confirm fingerprint for {}, treating as unique", fileData.getFile().getName(), e);
+            return ContentHash.unique();
+        }
+    }
+
     private String getNewFolderDateForDuplicates(ExifData fileData, ExifData existingFileData) {
         String currentDate = dateFormat.format(new java.util.Date());
 
@@ -333,26 +383,16 @@ public class MediaFileWriter implements ItemWriter<MediaFileDTO> {
      * Search for a perceptual duplicate of the given image
      * 
      * @param fileData The image to check
-     * @return Perceptually similar ExifData from the map, or null if none found
+     * @return The most similar ExifData in the map, or null if none is within the threshold
      */
     private ExifData findPerceptualDuplicate(ExifData fileData) {
-        if (fileData.getPerceptualHash() == null) {
+        if (!fileData.hasPerceptualHash()) {
             return null;
         }
 
-        // Search through all processed files for perceptually similar images
-        for (ExifData existing : fileHashMap.values()) {
-            // Only compare against images
-            if (existing.isImage() && existing.getPerceptualHash() != null) {
-                // Check if hashes are perceptually similar
-                if (perceptualHashService.areSimilar(fileData.getPerceptualHash(),
-                        existing.getPerceptualHash())) {
-                    return existing;
-                }
-            }
-        }
-
-        return null;
+        // Only the images within the Hamming threshold are compared, not every file in the map
+        return perceptualHashService.findSimilar(perceptualHashIndex, fileData.getPerceptualHash(),
+                fileData.getFile(), fileData.getContentHash(), ExifData::getFile, ExifData::getContentHash);
     }
 
     /**
@@ -407,20 +447,51 @@ public class MediaFileWriter implements ItemWriter<MediaFileDTO> {
         }
     }
 
+    /**
+     * Adds an original to the map and keeps the perceptual and video fingerprint indexes in step
+     */
+    private void putInMap(ContentHash hash, ExifData fileData) {
+        ExifData previous = fileHashMap.put(hash, fileData);
+        if (previous != null && previous != fileData) {
+            perceptualHashIndex.remove(previous);
+            videoFingerprintIndex.remove(previous);
+        }
+        if (fileData.isImage() && fileData.hasPerceptualHash()) {
+            perceptualHashIndex.put(fileData, fileData.getPerceptualHash());
+        }
+        if (fileData.isVideo() && fileData.getVideoFingerprint() != null) {
+            videoFingerprintIndex.put(fileData, fileData.getVideoFingerprint());
+        }
+    }
+
+    /**
+     * Removes an entry from the map by key and from the perceptual and video fingerprint indexes
+     */
+    private void removeFromMap(ContentHash hash) {
+        ExifData removed = fileHashMap.remove(hash);
+        if (removed != null) {
+            perceptualHashIndex.remove(removed);
+            videoFingerprintIndex.remove(removed);
+        }
+    }
+
     /**
      * Helper to remove an entry from the map by value
+     *
+     * @return The key the value was stored under, or null if it was not in the map
      */
-    private void removeFromMap(ExifData valueToRemove) {
-        String keyToRemove = null;
-        for (Map.Entry<String, ExifData> entry : fileHashMap.entrySet()) {
+    private ContentHash removeFromMap(ExifData valueToRemove) {
+        ContentHash keyToRemove = null;
+        for (Map.Entry<ContentHash, ExifData> entry : fileHashMap.entrySet()) {
             if (entry.getValue() == valueToRemove) {
                 keyToRemove = entry.getKey();
                 break;
             }
         }
         if (keyToRemove != null) {
-            fileHashMap.remove(keyToRemove);
+            removeFromMap(keyToRemove);
         }
+        return keyToRemove;
     }
 
     /**
@@ -4,6 +4,9 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Enhanced configuration properties for media sorting with flexible options.
  * Uses Lombok @Data to eliminate boilerplate getters/setters.
@@ -41,6 +44,12 @@ public class MediaSortingConfig {
     // Perceptual hashing
     private PerceptualHash perceptualHash = new PerceptualHash();
 
+    // Content hashing
+    private Hashing hashing = new Hashing();
+
+    // File I/O
+    private Io io = new Io();
+
     public enum DateStrategy {
         EXIF_ONLY, // Only use EXIF dates
         FILESYSTEM_FALLBACK, // Use EXIF, fall back to filesystem
@@ -89,6 +98,43 @@ public class MediaSortingConfig {
     public static class PerceptualHash {
         private boolean enabled = false;
         private double threshold = 0.95; // 0.0 to 1.0
-        private String algorithm = "PHASH"; // PHASH, DHASH, AVERAGE_HASH
+        private String algorithm = "PHASH"; // PHASH, DHASH, AVERAGE_HASH or CASCADE (dHash, verified by pHash)
+        private boolean cacheEnabled = true; // Reuse hashes of already decoded content across runs and jobs
+        private String cacheFile = "logs/perceptual-hash-cache.tsv"; // Append-only cache keyed by content hash
+    }
+
+    @Data
+    public static class Hashing {
+        private String algorithm = "SHA256"; // SHA256 or XXH64
+        private boolean confirmWithSha256 = true; // Re-check XXH64 matches with SHA-256 before moving files
+        private boolean sizePrefilter = true; // Only hash files that share their size with another file
+        private boolean partialFingerprint = true; // Key large files on sampled blocks, full hash on collision
+        private int partialBlockSize = 64 * 1024; // Bytes read per sampled block
+        private int partialSampleCount = 4; // Blocks sampled between head and tail
+        private long partialMinFileSize = 1024 * 1024; // Smaller files are always fully hashed
+        private boolean memoEnabled = true; // Reuse hashes of unchanged files across runs
+        private String memoFile = "logs/hash-memo.tsv"; // Append-only memo of computed hashes
+        private boolean treeHash = true; // Hash very large files as parallel segments
+        private long treeHashMinFileSize = 1024L * 1024 * 1024; // Smaller files are hashed sequentially
+        private long treeSegmentSize = 64L * 1024 * 1024; // Bytes per segment; changing it changes the hashes
+        private int treeHashThreads = 0; // Segment hashing threads, 0 = available processors
+    }
+
+    @Data
+    public static class Io {
+        private boolean singleRead = true; // Read each image once for hash, metadata and decoding
+        private long singleReadMaxFileSize = 64L * 1024 * 1024; // Larger files are read by each consumer
+        private boolean async = true; // Process files of a chunk concurrently under the device limits
+        private int maxThreads = 32; // Upper bound on files processed at once across all devices
+        private int maxFilesInFlight = 4; // Default per device (file store / mount)
+        private long maxBytesInFlight = 256L * 1024 * 1024; // Default per device
+        private List<DeviceLimit> devices = new ArrayList<>(); // Limits for specific mount paths
+
+        @Data
+        public static class DeviceLimit {
+            private String path; // Mount point or folder, e.g. /mnt/usb or E:/
+            private int maxFilesInFlight = 1;
+            private long maxBytesInFlight = 64L * 1024 * 1024;
+        }
     }
 }
@@ -0,0 +1,157 @@
+package com.media.sort.model;
+
+import com.media.sort.util.FileHashUtils;
+
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compact, immutable key for duplicate maps.
+ * Holds a digest of up to 32 bytes in four longs with a precomputed hashCode,
+ * about 56 bytes per key instead of roughly 180 for a 64-character hex String.
+ *
+ * The kind keeps keys from different tiers apart: a size-only key never
+ * equals a partial fingerprint or a full content hash, even if the numbers
+ * happen to match.
+ */
+public final class ContentHash {
+
+    public enum Kind {
+        SIZE("size:"), // File size only - no other file has this size
+        PARTIAL("partial:"), // Digest of size, head, tail and sampled blocks
+        FULL(""), // Full content hash with the configured algorithm
+        SHA256("sha256:"), // SHA-256 used to separate fast-hash collisions
+        UNIQUE("unique:"); // Never equal to any other key
+
+        private final String prefix;
+
+        Kind(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+    }
+
+    private static final int MAX_LENGTH = 32;
+
+    private static final AtomicLong UNIQUE_SEQUENCE = new AtomicLong();
+
+    private final Kind kind;
+    private final byte length;
+    private final long word0;
+    private final long word1;
+    private final long word2;
+    private final long word3;
+    private final int hashCode;
+
+    private ContentHash(Kind kind, int length, long word0, long word1, long word2, long word3) {
+        this.kind = kind;
+        this.length = (byte) length;
+        this.word0 = word0;
+        this.word1 = word1;
+        this.word2 = word2;
+        this.word3 = word3;
+        // Digests are already uniformly distributed; mix in case of size keys
+        long mixed = (word0 ^ word1 ^ word2 ^ word3) * 0x9E3779B97F4A7C15L;
+        this.hashCode = (int) (mixed ^ (mixed >>> 32)) * 31 + kind.ordinal();
+    }
+
+    /**
+     * Creates a key from raw digest bytes
+     *
+     * @param kind   The tier of the digest
+     * @param digest Up to 32 digest bytes
+     * @throws IllegalArgumentException If the digest is longer than 32 bytes
+     */
+    public static ContentHash of(Kind kind, byte[] digest) {
+        if (digest.length > MAX_LENGTH) {
+            throw new IllegalArgumentException("Digest longer than " + MAX_LENGTH + " bytes: " + digest.length);
+        }
+        long[] words = new long[4];
+        for (int i = 0; i < digest.length; i++) {
+            words[i / 8] |= (digest[i] & 0xFFL) << (56 - 8 * (i % 8));
+        }
+        return new ContentHash(kind, digest.length, words[0], words[1], words[2], words[3]);
+    }
+
+    /**
+     * Creates a key from a hex-encoded digest (as stored in the hash memo)
+     */
+    public static ContentHash fromHex(Kind kind, String hex) {
+        return of(kind, HexFormat.of().parseHex(hex));
+    }
+
+    /**
+     * Creates a size-only key for a file whose size is unique in the run
+     */
+    public static ContentHash ofSize(long size) {
+        return new ContentHash(Kind.SIZE, Long.BYTES, size, 0, 0, 0);
+    }
+
+    /**
+     * Creates a key that is never equal to any other key, for files whose
+     * content could not be fingerprinted
+     */
+    public static ContentHash unique() {
+        return new ContentHash(Kind.UNIQUE, Long.BYTES, UNIQUE_SEQUENCE.incrementAndGet(), 0, 0, 0);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Digest bytes in their original order
+     */
+    public byte[] toBytes() {
+        byte[] bytes = new byte[length];
+        long[] words = { word0, word1, word2, word3 };
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (words[i / 8] >>> (56 - 8 * (i % 8)));
+        }
+        return bytes;
+    }
+
+    /**
+     * Lowercase hex of the digest bytes, without the kind prefix
+     */
+    public String toHex() {
+        return FileHashUtils.toHex(toBytes());
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ContentHash that)) {
+            return false;
+        }
+        return hashCode == that.hashCode
+                && kind == that.kind
+                && length == that.length
+                && word0 == that.word0
+                && word1 == that.word1
+                && word2 == that.word2
+                && word3 == that.word3;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    /**
+     * Same format as the former String keys: "size:N", "partial:hex", plain
+     * hex for full hashes, "sha256:hex"
+     */
+    @Override
+    public String toString() {
+        return switch (kind) {
+            case SIZE, UNIQUE -> kind.getPrefix() + word0;
+            default -> kind.getPrefix() + toHex();
+        };
+    }
+}
@@ -13,8 +13,13 @@ import com.media.sort.service.ImageMetadataService;
 import com.media.sort.service.ProgressTracker;
 import com.media.sort.service.VideoMetadataService;
 import com.media.sort.service.VideoQualityComparator;
+import com.media.sort.service.video.VideoFingerprint;
 import com.media.sort.util.DuplicatePatternUtils;
+import com.media.sort.util.FileContent;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.File;
@@ -44,7 +49,9 @@ public class ExifData {
     private VideoMetadataService videoMetadataService;
     private VideoQualityComparator videoQualityComparator;
 
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
+    // SimpleDateFormat is not thread-safe and files are processed concurrently
+    private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT = ThreadLocal
+            .withInitial(() -> new SimpleDateFormat("yyyy-MM-dd"));
 
     // File properties
     private File file;
@@ -59,12 +66,21 @@ public class ExifData {
     private String folderDate;
     private String extension;
 
-    // Perceptual duplicate detection
-    private String perceptualHash; // pHash for images
+    // Perceptual duplicate detection: 64-bit pHash for images, valid if hasPerceptualHash
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE) // Custom accessors below
+    private long perceptualHash;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean hasPerceptualHash;
+    private VideoFingerprint videoFingerprint; // Container fingerprint of MP4-family videos, null otherwise
     private Integer imageWidth; // For quality comparison
     private Integer imageHeight;
     private Long fileSize; // File size in bytes
 
+    // Exact duplicate detection
+    private ContentHash contentHash; // Resolved duplicate map key, set by the writer
+
     // Default constructor - trackers will be initialized via ProgressTrackerFactory
     public ExifData() {
         // Trackers will be set via setProgressTrackers method when
@@ -77,6 +93,25 @@ public class ExifData {
         processFile(file);
     }
 
+    /**
+     * Whether a perceptual hash has been computed for this image
+     */
+    public boolean hasPerceptualHash() {
+        return hasPerceptualHash;
+    }
+
+    /**
+     * The 64 bits of the perceptual hash; only meaningful if hasPerceptualHash()
+     */
+    public long getPerceptualHash() {
+        return perceptualHash;
+    }
+
+    public void setPerceptualHash(long perceptualHash) {
+        this.perceptualHash = perceptualHash;
+        this.hasPerceptualHash = true;
+    }
+
     /**
      * Initialize progress trackers using ProgressTrackerFactory
      * This method should be called by services that have access to
@@ -112,13 +147,24 @@ public class ExifData {
     }
 
     public void processFile(File file) {
+        processFile(file, null);
+    }
+
+    /**
+     * Extracts metadata, parsing image metadata from bytes the caller has
+     * already read when available
+     *
+     * @param file    The media file
+     * @param content The file's bytes, or null to read from disk
+     */
+    public void processFile(File file, FileContent content) {
         try {
             this.file = file;
             this.fileSize = file.length(); // Capture file size for quality comparison
             setImageExifDataType();
 
             if (isImage() && imageMetadataService != null) {
-                imageMetadataService.processImageFile(this);
+                imageMetadataService.processImageFile(this, content);
             } else if (isVideo() && videoMetadataService != null) {
                 videoMetadataService.processVideoFile(this);
             }
@@ -230,7 +276,7 @@ public class ExifData {
 
         try {
             // Reject dates before 2000 (likely corrupted - 1970, 1980 defaults)
-            Date minDate = DATE_FORMAT.parse("2000-01-01");
+            Date minDate = DATE_FORMAT.get().parse("2000-01-01");
             // Reject dates in the future (camera clock wrong)
             Date maxDate = new Date(System.currentTimeMillis() + (365L * 24 * 60 * 60 * 1000)); // +1 year
 
@@ -450,7 +496,7 @@ public class ExifData {
     public void reorderDates() {
         List<Date> dates = new ArrayList<>();
         try {
-            Date thresholdDate = DATE_FORMAT.parse("2006-01-01");
+            Date thresholdDate = DATE_FORMAT.get().parse("2006-01-01");
 
             if (dateTaken != null && !dateTaken.before(thresholdDate)) {
                 dates.add(dateTaken);
@@ -555,7 +601,7 @@ public class ExifData {
         Date earliestDate = getEarliestDate();
 
         if (earliestDate != null) {
-            folderDate = DATE_FORMAT.format(earliestDate);
+            folderDate = DATE_FORMAT.get().format(earliestDate);
         }
     }
 
@@ -1,6 +1,7 @@
 package com.media.sort.service;
 
 import com.media.sort.model.ExifData;
+import com.media.sort.util.FileContent;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -34,6 +35,17 @@ public class ExifDataFactory {
      * @return ExifData instance with metadata extracted
      */
     public ExifData createExifData(File file) {
+        return createExifData(file, null);
+    }
+
+    /**
+     * Create an ExifData instance from bytes that were already read
+     *
+     * @param file    The media file to process
+     * @param content The file's bytes, or null to read the file from disk
+     * @return ExifData instance with metadata extracted
+     */
+    public ExifData createExifData(File file, FileContent content) {
         ExifData exifData = new ExifData();
 
         // Inject metadata extraction services
@@ -48,7 +60,7 @@ public class ExifDataFactory {
                 progressTrackerFactory.getFileComparisonTracker());
 
         // Process the file
-        exifData.processFile(file);
+        exifData.processFile(file, content);
 
         return exifData;
     }
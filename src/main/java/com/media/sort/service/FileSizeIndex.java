@@ -0,0 +1,73 @@
+package com.media.sort.service;
+
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Run-wide index of file sizes used to skip content hashing.
+ * A file whose byte length is unique among all scanned files (new files,
+ * pre-scanned originals and reference folders) cannot have an exact
+ * duplicate, so its bytes never need to be read for hashing.
+ *
+ * Populated by SizeIndexTasklet at the start of each job. When the index is
+ * empty (pre-pass disabled or not run) every file is treated as having peers.
+ */
+@Component
+public class FileSizeIndex {
+
+    private final ConcurrentHashMap<Long, AtomicInteger> sizeCounts = new ConcurrentHashMap<>();
+    private final AtomicInteger registeredFiles = new AtomicInteger(0);
+
+    /**
+     * Record one file of the given size
+     */
+    public void register(long size) {
+        sizeCounts.computeIfAbsent(size, s -> new AtomicInteger(0)).incrementAndGet();
+        registeredFiles.incrementAndGet();
+    }
+
+    /**
+     * Record a file's current size
+     */
+    public void register(File file) {
+        register(file.length());
+    }
+
+    /**
+     * Check if at least one other scanned file has the same byte length.
+     * Returns true when nothing has been registered so callers fall back to
+     * hashing every file.
+     */
+    public boolean hasSizePeers(long size) {
+        if (sizeCounts.isEmpty()) {
+            return true;
+        }
+        AtomicInteger count = sizeCounts.get(size);
+        return count == null || count.get() > 1;
+    }
+
+    /**
+     * Number of registered files that share their size with another file
+     */
+    public int getFilesWithPeers() {
+        int total = 0;
+        for (AtomicInteger count : sizeCounts.values()) {
+            if (count.get() > 1) {
+                total += count.get();
+            }
+        }
+        return total;
+    }
+
+    public int getRegisteredFiles() {
+        return registeredFiles.get();
+    }
+
+    public void clear() {
+        sizeCounts.clear();
+        registeredFiles.set(0);
+    }
+}
@@ -1,6 +1,7 @@
 package com.media.sort.service;
 
 import com.media.sort.MediaSortingProperties;
+import com.media.sort.model.ContentHash;
 
 import lombok.Getter;
 import lombok.Setter;
@@ -17,6 +18,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 @Service
@@ -33,7 +35,7 @@ public class FolderComparisonService {
     @Autowired
     private MediaFileService mediaFileService;
 
-    private final ConcurrentHashMap<String, Path> folder2Files = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ContentHash, Path> folder2Files = new ConcurrentHashMap<>();
 
     /**
      * Main method to compare two folders and move duplicate files
@@ -133,7 +135,8 @@ public class FolderComparisonService {
 
     private void addToMap(Path file) {
         try {
-            String fileHash = mediaFileService.calculateHash(file);
+            ContentHash fileHash = mediaFileService.resolveFingerprint(folder2Files,
+                    mediaFileService.calculateFingerprint(file), file, Function.identity());
             folder2Files.put(fileHash, file);
             progressTracker.saveProgress("folder2_progress: " + file + ":" + fileHash);
         } catch (NoSuchAlgorithmException | IOException e) {
@@ -145,7 +148,8 @@ public class FolderComparisonService {
 
     private void compareAndMove(Path file, ComparisonResult result) {
         try {
-            String fileHash = mediaFileService.calculateHash(file);
+            ContentHash fileHash = mediaFileService.resolveFingerprint(folder2Files,
+                    mediaFileService.calculateFingerprint(file), file, Function.identity());
             progressTracker.saveProgress("folder1_progress: " + file.toString() + ":" + fileHash);
 
             Path folder2File = folder2Files.get(fileHash);
@@ -0,0 +1,344 @@
+package com.media.sort.service;
+
+import com.media.sort.config.MediaSortingConfig;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent memo of content hashes so unchanged files are never re-hashed
+ * across runs.
+ *
+ * Each entry is keyed by hash kind and absolute path and is valid while the
+ * file's size, modification time and file key (inode, where the platform has
+ * one) are unchanged. A secondary index on file key finds files that were
+ * moved or renamed outside the application.
+ *
+ * Stored as an append-only tab-separated file (media.hashing.memo-file), one
+ * line per computed hash:
+ * kind, size, mtime millis, file key, hash, absolute path.
+ * Later lines win; the file is compacted on load when most lines are stale.
+ */
+@Service
+public class HashMemoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HashMemoService.class);
+
+    /**
+     * Appended lines are flushed to disk after this many records
+     */
+    private static final int FLUSH_INTERVAL = 500;
+
+    @Autowired(required = false)
+    private MediaSortingConfig config;
+
+    private final Map<String, MemoEntry> entriesByPath = new ConcurrentHashMap<>();
+    private final Map<String, MemoEntry> entriesByFileKey = new ConcurrentHashMap<>();
+    private final Set<String> kinds = ConcurrentHashMap.newKeySet();
+
+    private Path memoFile;
+    private BufferedWriter writer;
+    private int pendingWrites;
+    private volatile boolean loaded;
+
+    public HashMemoService() {
+        // Memo file is loaded on first use
+    }
+
+    /**
+     * Creates a memo backed by a specific file, used by tests
+     */
+    HashMemoService(Path memoFile) {
+        this.memoFile = memoFile;
+    }
+
+    /**
+     * Memo entry for one hash of one file
+     */
+    record MemoEntry(String kind, long size, long lastModified, String fileKey, String hash, String path) {
+
+        boolean matches(BasicFileAttributes attributes) {
+            return size == attributes.size()
+                    && lastModified == attributes.lastModifiedTime().toMillis()
+                    && (fileKey == null || fileKey.equals(fileKeyOf(attributes)));
+        }
+
+        String toLine() {
+            return String.join("\t", kind, Long.toString(size), Long.toString(lastModified),
+                    fileKey != null ? fileKey : "", hash, path);
+        }
+
+        static MemoEntry fromLine(String line) {
+            String[] parts = line.split("\t", 6);
+            if (parts.length < 6) {
+                return null;
+            }
+            try {
+                return new MemoEntry(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]),
+                        parts[3].isEmpty() ? null : parts[3], parts[4], parts[5]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Returns the memoized hash of a file if its size, mtime and file key are
+     * unchanged since the hash was recorded
+     *
+     * @param kind       Hash kind (algorithm and parameters)
+     * @param file       The file to look up
+     * @param attributes Current attributes of the file
+     * @return The memoized hash, or null if it must be recomputed
+     */
+    public String lookup(String kind, Path file, BasicFileAttributes attributes) {
+        if (!isEnabled()) {
+            return null;
+        }
+        ensureLoaded();
+
+        String path = file.toAbsolutePath().toString();
+        MemoEntry entry = entriesByPath.get(pathKey(kind, path));
+        if (entry != null && entry.matches(attributes)) {
+            return entry.hash();
+        }
+
+        // Same inode under a new name - moved or renamed outside the application
+        String fileKey = fileKeyOf(attributes);
+        if (fileKey != null) {
+            entry = entriesByFileKey.get(fileKeyIndex(kind, fileKey));
+            if (entry != null && entry.matches(attributes)) {
+                record(kind, file, attributes, entry.hash());
+                return entry.hash();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the last hash recorded for a file even if the file has changed
+     * since, for integrity checks that compare old and current content
+     *
+     * @param kind Hash kind (algorithm and parameters)
+     * @param file The file to look up
+     * @return The recorded hash, or null if none was recorded
+     */
+    public String find(String kind, Path file) {
+        if (!isEnabled()) {
+            return null;
+        }
+        ensureLoaded();
+
+        MemoEntry entry = entriesByPath.get(pathKey(kind, file.toAbsolutePath().toString()));
+        return entry != null ? entry.hash() : null;
+    }
+
+    /**
+     * Records a freshly computed hash
+     *
+     * @param kind       Hash kind (algorithm and parameters)
+     * @param file       The hashed file
+     * @param attributes Attributes of the file read before hashing
+     * @param hash       The computed hash
+     */
+    public void record(String kind, Path file, BasicFileAttributes attributes, String hash) {
+        if (!isEnabled()) {
+            return;
+        }
+        ensureLoaded();
+
+        MemoEntry entry = new MemoEntry(kind, attributes.size(), attributes.lastModifiedTime().toMillis(),
+                fileKeyOf(attributes), hash, file.toAbsolutePath().toString());
+        put(entry);
+        append(entry);
+    }
+
+    /**
+     * Carries every memoized hash of a file over to its new path after a move
+     *
+     * @param source      Path before the move
+     * @param destination Path after the move
+     */
+    public void recordMove(Path source, Path destination) {
+        if (!isEnabled()) {
+            return;
+        }
+        ensureLoaded();
+
+        String oldPath = source.toAbsolutePath().toString();
+        String newPath = destination.toAbsolutePath().toString();
+        for (String kind : kinds) {
+            MemoEntry entry = entriesByPath.remove(pathKey(kind, oldPath));
+            if (entry != null) {
+                MemoEntry moved = new MemoEntry(kind, entry.size(), entry.lastModified(), entry.fileKey(),
+                        entry.hash(), newPath);
+                put(moved);
+                append(moved);
+            }
+        }
+    }
+
+    /**
+     * Number of memoized hashes currently loaded
+     */
+    public int size() {
+        return entriesByPath.size();
+    }
+
+    /**
+     * Flushes appended entries to disk
+     */
+    @PreDestroy
+    public synchronized void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close hash memo file: {}", memoFile, e);
+            }
+            writer = null;
+        }
+    }
+
+    private boolean isEnabled() {
+        return config == null || config.getHashing().isMemoEnabled();
+    }
+
+    private void put(MemoEntry entry) {
+        kinds.add(entry.kind());
+        entriesByPath.put(pathKey(entry.kind(), entry.path()), entry);
+        if (entry.fileKey() != null) {
+            entriesByFileKey.put(fileKeyIndex(entry.kind(), entry.fileKey()), entry);
+        }
+    }
+
+    private synchronized void append(MemoEntry entry) {
+        if (writer == null || entry.path().indexOf('\n') >= 0) {
+            return;
+        }
+        try {
+            writer.write(entry.toLine());
+            writer.newLine();
+            if (++pendingWrites >= FLUSH_INTERVAL) {
+                writer.flush();
+                pendingWrites = 0;
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to append to hash memo file {}, memo disabled for this run: {}", memoFile,
+                    e.getMessage());
+            close();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            if (memoFile == null) {
+                memoFile = Paths.get(config != null ? config.getHashing().getMemoFile() : "logs/hash-memo.tsv");
+            }
+            int lines = load();
+            if (lines > 2 * entriesByPath.size() + FLUSH_INTERVAL) {
+                compact();
+            }
+            openWriter();
+            loaded = true;
+        }
+    }
+
+    private int load() {
+        if (!Files.exists(memoFile)) {
+            return 0;
+        }
+        int lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(memoFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                MemoEntry entry = MemoEntry.fromLine(line);
+                if (entry != null) {
+                    put(entry);
+                }
+                lines++;
+            }
+            logger.info("Loaded {} memoized hashes from {}", entriesByPath.size(), memoFile);
+        } catch (IOException e) {
+            logger.warn("Failed to read hash memo file {}, starting empty: {}", memoFile, e.getMessage());
+            entriesByPath.clear();
+            entriesByFileKey.clear();
+            kinds.clear();
+        }
+        return lines;
+    }
+
+    /**
+     * Rewrites the memo file with only the current entry of each path
+     */
+    private void compact() {
+        Path tempFile = memoFile.resolveSibling(memoFile.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            for (MemoEntry entry : entriesByPath.values()) {
+                out.write(entry.toLine());
+                out.newLine();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to compact hash memo file {}: {}", memoFile, e.getMessage());
+            return;
+        }
+        try {
+            Files.move(tempFile, memoFile, StandardCopyOption.REPLACE_EXISTING);
+            logger.info("Compacted hash memo file {} to {} entries", memoFile, entriesByPath.size());
+        } catch (IOException e) {
+            logger.warn("Failed to replace hash memo file {}: {}", memoFile, e.getMessage());
+        }
+    }
+
+    private void openWriter() {
+        try {
+            Path parent = memoFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            writer = Files.newBufferedWriter(memoFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            logger.warn("Failed to open hash memo file {}, hashes will not be persisted: {}", memoFile,
+                    e.getMessage());
+        }
+    }
+
+    private static String pathKey(String kind, String path) {
+        return kind + '\t' + path;
+    }
+
+    private static String fileKeyIndex(String kind, String fileKey) {
+        return kind + '\t' + fileKey;
+    }
+
+    /**
+     * Platform file identity (device and inode on Unix), null where unsupported
+     */
+    private static String fileKeyOf(BasicFileAttributes attributes) {
+        Object fileKey = attributes.fileKey();
+        return fileKey != null ? fileKey.toString().replace('\t', ' ') : null;
+    }
+}
@@ -8,6 +8,9 @@ import com.drew.metadata.Tag;
 import com.drew.metadata.exif.ExifSubIFDDirectory;
 import com.drew.metadata.exif.GpsDirectory;
 import com.media.sort.model.ExifData;
+import com.media.sort.util.FileContent;
+import com.media.sort.util.ImageDimensions;
+import com.media.sort.util.JpegExif;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,6 +23,7 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Set;
 
 /**
  * Service for extracting metadata from image files.
@@ -29,7 +33,11 @@ import java.util.Date;
 public class ImageMetadataService {
 
     private static final Logger logger = LoggerFactory.getLogger(ImageMetadataService.class);
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
+    // SimpleDateFormat is not thread-safe and files are processed concurrently
+    private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT = ThreadLocal
+            .withInitial(() -> new SimpleDateFormat("yyyy-MM-dd"));
+
+    private static final Set<String> JPEG_EXTENSIONS = Set.of("jpg", "jpeg", "jpe");
 
     @Autowired
     private ProgressTrackerFactory progressTrackerFactory;
@@ -46,13 +54,22 @@ public class ImageMetadataService {
      * Extract metadata from an image file
      */
     public void processImageFile(ExifData exifData) throws IOException, ImageProcessingException {
+        processImageFile(exifData, null);
+    }
+
+    /**
+     * Extract metadata from an image file whose bytes may already be in memory
+     *
+     * @param exifData The image's metadata holder
+     * @param content  The file's bytes, or null to read the file from disk
+     */
+    public void processImageFile(ExifData exifData, FileContent content)
+            throws IOException, ImageProcessingException {
         initializeTracker();
 
         File file = exifData.getFile();
         logger.debug("Processing image file: {} ({})", file.getName(), exifData.getExtension());
 
-        Metadata metadata = ImageMetadataReader.readMetadata(file);
-
         BasicFileAttributes attr = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
         exifData.setDateCreated(new Date(attr.creationTime().toMillis()));
         exifData.setDateModified(new Date(attr.lastModifiedTime().toMillis()));
@@ -60,6 +77,89 @@ public class ImageMetadataService {
         logger.debug("  Initial dates - Created: {}, Modified: {}",
                 exifData.getDateCreated(), exifData.getDateModified());
 
+        // JPEG: read the EXIF segment alone, and only parse every segment if it lacks the tags
+        if (!JPEG_EXTENSIONS.contains(exifData.getExtension().toLowerCase()) || !readJpegExif(exifData, content)) {
+            readMetadata(exifData, content);
+        }
+
+        // Log extraction results
+        if (exifData.getDateTaken() != null) {
+            logger.info(" Extracted DateTaken for {}: {}", file.getName(), exifData.getDateTaken());
+        } else {
+            logger.warn(" No DateTaken found for image: {} - will use filesystem dates", file.getName());
+            imageErrorTracker.saveProgress("No Date processImageFile file: " + file);
+        }
+
+        // Log final date situation
+        Date earliestDate = exifData.getEarliestDate();
+        if (earliestDate != null) {
+            logger.debug("  Final earliest date for {}: {} (source: {})",
+                    file.getName(),
+                    earliestDate,
+                    earliestDate.equals(exifData.getDateTaken()) ? "EXIF" : "filesystem");
+        } else {
+            logger.error("  CRITICAL: No date available for image: {}", file.getName());
+        }
+    }
+
+    /**
+     * Takes the date, device, location and dimensions of a JPEG file from its
+     * APP1 EXIF and SOF segments, if they have a valid DateTimeOriginal or
+     * DateTimeDigitized and the dimensions. Sets nothing otherwise, leaving
+     * the file to the full parser and its date waterfall (GPS, XMP).
+     *
+     * @return Whether the fast path found the tags
+     */
+    private boolean readJpegExif(ExifData exifData, FileContent content) {
+        JpegExif exif;
+        try {
+            exif = content != null ? JpegExif.read(content.asByteBuffer()) : JpegExif.read(exifData.getFile());
+        } catch (IOException | RuntimeException e) {
+            logger.debug("EXIF segment not readable for {}: {}", exifData.getFile().getName(), e.getMessage());
+            return false;
+        }
+        if (exif == null || exif.width() <= 0 || exif.height() <= 0) {
+            return false;
+        }
+        Date dateTaken = isValidDate(exif.dateTimeOriginal()) ? exif.dateTimeOriginal()
+                : isValidDate(exif.dateTimeDigitized()) ? exif.dateTimeDigitized() : null;
+        if (dateTaken == null) {
+            return false;
+        }
+
+        exifData.setDateTaken(dateTaken);
+        exifData.setImageWidth(exif.width());
+        exifData.setImageHeight(exif.height());
+        if (exif.make() != null && exifData.getDeviceName() == null) {
+            exifData.setDeviceName(exif.make().trim());
+        }
+        if (exif.model() != null && exifData.getDeviceModel() == null) {
+            exifData.setDeviceModel(exif.model().trim());
+        }
+        if (exif.latitude() != null) {
+            exifData.setLatitude(exif.latitude());
+            exifData.setLongitude(exif.longitude());
+        }
+        return true;
+    }
+
+    /**
+     * Reads the metadata of any image format with metadata-extractor,
+     * parsing every segment or box of the file
+     */
+    private void readMetadata(ExifData exifData, FileContent content) throws IOException, ImageProcessingException {
+        File file = exifData.getFile();
+        Metadata metadata = content != null
+                ? ImageMetadataReader.readMetadata(content.newInputStream(), content.length())
+                : ImageMetadataReader.readMetadata(file);
+
+        // Dimensions from the parsed headers, so nothing has to decode the image for them
+        ImageDimensions.Size size = ImageDimensions.fromMetadata(metadata);
+        if (size != null) {
+            exifData.setImageWidth(size.width());
+            exifData.setImageHeight(size.height());
+        }
+
         // Track additional date candidates for validation
         Date exifDateOriginal = null;
         Date exifDateDigitized = null;
@@ -95,25 +195,6 @@ public class ImageMetadataService {
         if (exifData.getDateTaken() == null) {
             selectBestDate(exifData, exifDateOriginal, exifDateDigitized, gpsDate, quickTimeDate, xmpDate);
         }
-
-        // Log extraction results
-        if (exifData.getDateTaken() != null) {
-            logger.info(" Extracted DateTaken for {}: {}", file.getName(), exifData.getDateTaken());
-        } else {
-            logger.warn(" No DateTaken found for image: {} - will use filesystem dates", file.getName());
-            imageErrorTracker.saveProgress("No Date processImageFile file: " + file);
-        }
-
-        // Log final date situation
-        Date earliestDate = exifData.getEarliestDate();
-        if (earliestDate != null) {
-            logger.debug("  Final earliest date for {}: {} (source: {})",
-                    file.getName(),
-                    earliestDate,
-                    earliestDate.equals(exifData.getDateTaken()) ? "EXIF" : "filesystem");
-        } else {
-            logger.error("  CRITICAL: No date available for image: {}", file.getName());
-        }
     }
 
     /**
@@ -170,7 +251,7 @@ public class ImageMetadataService {
 
         try {
             // Reject dates before 2000 (likely corrupted - 1970, 1980 defaults)
-            Date minDate = DATE_FORMAT.parse("2000-01-01");
+            Date minDate = DATE_FORMAT.get().parse("2000-01-01");
             // Reject dates in the future (camera clock wrong)
             Date maxDate = new Date(System.currentTimeMillis() + (365L * 24 * 60 * 60 * 1000)); // +1 year
 
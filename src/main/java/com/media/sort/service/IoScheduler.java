@@ -0,0 +1,372 @@
+package com.media.sort.service;
+
+import com.media.sort.config.MediaSortingConfig;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Schedules file reads (hashing, metadata extraction, decoding) with
+ * per-device limits on files and bytes in flight instead of a single global
+ * thread count.
+ *
+ * Each file is assigned to a device queue: the longest matching path in
+ * media.io.devices, otherwise the file store (mount) that holds it with the
+ * default limits. A task only starts once its device has a free file slot and
+ * enough byte budget for the file, so a fast NVMe array can run many reads at
+ * once while a USB disk on the same run keeps a queue depth of one or two.
+ *
+ * Tasks wait in their device's queue, not on a pool thread: a task is handed
+ * to the pool only once its device has granted it capacity, so files queued
+ * for a slow disk never hold the threads a fast one could use.
+ */
+@Component
+public class IoScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(IoScheduler.class);
+
+    /**
+     * Byte budgets are counted in KB so they fit in an int
+     */
+    private static final int BYTE_UNIT = 1024;
+
+    @Autowired(required = false)
+    private MediaSortingConfig config;
+
+    private final Map<Object, DeviceQueue> queues = new ConcurrentHashMap<>();
+    private final Map<Path, DeviceQueue> queuesByDirectory = new ConcurrentHashMap<>();
+
+    private volatile ExecutorService executor;
+
+    public IoScheduler() {
+        // Limits are read from MediaSortingConfig on first use
+    }
+
+    /**
+     * Creates a scheduler with explicit limits, used by tests
+     */
+    IoScheduler(MediaSortingConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Work that reads one file
+     */
+    @FunctionalInterface
+    public interface IoTask<T> {
+        T call() throws Exception;
+    }
+
+    /**
+     * Concurrency limits of one device and the tasks waiting for them
+     */
+    static final class DeviceQueue {
+
+        private final String name;
+        private final int byteUnits;
+        private final Deque<Waiter> waiting = new ArrayDeque<>();
+        private int freeFiles;
+        private int freeUnits;
+
+        /**
+         * A task waiting for a file slot and its byte units
+         */
+        private static final class Waiter {
+
+            private final int units;
+            private final IntConsumer start;
+
+            Waiter(int units, IntConsumer start) {
+                this.units = units;
+                this.start = start;
+            }
+        }
+
+        DeviceQueue(String name, int maxFiles, long maxBytes) {
+            this.name = name;
+            this.byteUnits = (int) Math.min(Integer.MAX_VALUE, Math.max(1, maxBytes / BYTE_UNIT));
+            this.freeFiles = Math.max(1, maxFiles);
+            this.freeUnits = byteUnits;
+        }
+
+        /**
+         * Queues a task for a file of the given size. Tasks are granted a file
+         * slot and the file's byte budget together, in arrival order, so
+         * nothing is held while a task waits. A file larger than the whole
+         * budget takes all of it and runs alone.
+         *
+         * @param start Called with the granted byte units, to hand back to
+         *              release, once the task may run; on the calling
+         *              thread if capacity is free, otherwise on the thread
+         *              that releases it
+         */
+        Waiter enqueue(long size, IntConsumer start) {
+            int units = (int) Math.min(byteUnits, Math.max(1, (size + BYTE_UNIT - 1) / BYTE_UNIT));
+            Waiter waiter = new Waiter(units, start);
+            List<Waiter> granted;
+            synchronized (this) {
+                waiting.add(waiter);
+                granted = grant();
+            }
+            granted.forEach(next -> next.start.accept(next.units));
+            return waiter;
+        }
+
+        /**
+         * Blocks until a file slot and the file's byte budget are granted
+         *
+         * @return Byte units to hand back to release
+         */
+        int acquire(long size) throws InterruptedException {
+            CountDownLatch granted = new CountDownLatch(1);
+            Waiter waiter = enqueue(size, units -> granted.countDown());
+            try {
+                granted.await();
+            } catch (InterruptedException e) {
+                if (!cancel(waiter)) {
+                    release(waiter.units); // Granted while being interrupted
+                }
+                throw e;
+            }
+            return waiter.units;
+        }
+
+        void release(int units) {
+            List<Waiter> granted;
+            synchronized (this) {
+                freeFiles++;
+                freeUnits += units;
+                granted = grant();
+            }
+            granted.forEach(next -> next.start.accept(next.units));
+        }
+
+        /**
+         * Removes a task that has not been granted capacity yet
+         *
+         * @return False if the task was already granted
+         */
+        private synchronized boolean cancel(Waiter waiter) {
+            return waiting.removeIf(queued -> queued == waiter);
+        }
+
+        /**
+         * Takes capacity for the waiting tasks at the head of the queue that
+         * fit; the caller starts them after leaving the lock
+         */
+        private List<Waiter> grant() {
+            List<Waiter> granted = new ArrayList<>(1);
+            while (!waiting.isEmpty() && freeFiles > 0 && freeUnits >= waiting.peek().units) {
+                Waiter next = waiting.poll();
+                freeFiles--;
+                freeUnits -= next.units;
+                granted.add(next);
+            }
+            return granted;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        synchronized int getAvailableFiles() {
+            return freeFiles;
+        }
+    }
+
+    /**
+     * Runs a task on the scheduler's pool once the file's device has capacity.
+     * With media.io.async disabled the task runs on the calling thread and the
+     * returned future is already complete.
+     *
+     * @param file The file the task reads
+     * @param task The work to run
+     * @return The task's result
+     */
+    public <T> CompletableFuture<T> submit(Path file, IoTask<T> task) {
+        if (!getIoConfig().isAsync()) {
+            try {
+                return CompletableFuture.completedFuture(run(file, task));
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        DeviceQueue queue = queueFor(file);
+        ExecutorService pool = getExecutor();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        // The task only reaches the pool once its device has granted it capacity
+        queue.enqueue(sizeOf(file), units -> {
+            try {
+                pool.execute(() -> {
+                    try {
+                        future.complete(task.call());
+                    } catch (Exception | Error e) {
+                        future.completeExceptionally(e);
+                    } finally {
+                        queue.release(units);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                queue.release(units);
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Runs a task on the calling thread once the file's device has capacity
+     *
+     * @param file The file the task reads
+     * @param task The work to run
+     * @return The task's result
+     */
+    public <T> T run(Path file, IoTask<T> task) throws Exception {
+        DeviceQueue queue = queueFor(file);
+        int units = queue.acquire(sizeOf(file));
+        try {
+            return task.call();
+        } finally {
+            queue.release(units);
+        }
+    }
+
+    /**
+     * Chunk size for a step whose processor submits its reads here. Every item
+     * of a chunk is submitted before the writer waits on the first one, so the
+     * chunk caps the reads in flight; it is raised to media.io.max-threads so
+     * the pool and the per-device limits are what bound them.
+     *
+     * @param defaultSize The step's chunk size without asynchronous reads
+     * @return The chunk size to configure the step with
+     */
+    public int chunkSize(int defaultSize) {
+        MediaSortingConfig.Io io = getIoConfig();
+        return io.isAsync() ? Math.max(defaultSize, io.getMaxThreads()) : defaultSize;
+    }
+
+    /**
+     * Name of the device queue a file is scheduled on
+     */
+    public String getDeviceName(Path file) {
+        return queueFor(file).getName();
+    }
+
+    DeviceQueue queueFor(Path file) {
+        Path absolute = file.toAbsolutePath().normalize();
+        Path directory = absolute.getParent() != null ? absolute.getParent() : absolute;
+        return queuesByDirectory.computeIfAbsent(directory, this::resolveQueue);
+    }
+
+    private DeviceQueue resolveQueue(Path directory) {
+        MediaSortingConfig.Io io = getIoConfig();
+
+        // Explicit limits: longest configured path that contains the file
+        MediaSortingConfig.Io.DeviceLimit limit = io.getDevices().stream()
+                .filter(device -> device.getPath() != null && !device.getPath().isBlank())
+                .filter(device -> directory.startsWith(Paths.get(device.getPath()).toAbsolutePath().normalize()))
+                .max(Comparator.comparingInt(device -> device.getPath().length()))
+                .orElse(null);
+        if (limit != null) {
+            return queues.computeIfAbsent(limit, key -> newQueue(limit.getPath(), limit.getMaxFilesInFlight(),
+                    limit.getMaxBytesInFlight()));
+        }
+
+        // Default limits per file store (mount point / volume)
+        Object store;
+        String name;
+        try {
+            FileStore fileStore = Files.getFileStore(existingAncestor(directory));
+            store = fileStore;
+            name = fileStore.toString();
+        } catch (IOException e) {
+            store = directory.getRoot() != null ? directory.getRoot() : directory;
+            name = store.toString();
+        }
+        String queueName = name;
+        return queues.computeIfAbsent(store,
+                key -> newQueue(queueName, io.getMaxFilesInFlight(), io.getMaxBytesInFlight()));
+    }
+
+    private DeviceQueue newQueue(String name, int maxFiles, long maxBytes) {
+        logger.info("I/O queue for {}: up to {} files and {} MB in flight", name, maxFiles,
+                maxBytes / (1024 * 1024));
+        return new DeviceQueue(name, maxFiles, maxBytes);
+    }
+
+    private static Path existingAncestor(Path path) {
+        Path current = path;
+        while (current != null && !Files.exists(current)) {
+            current = current.getParent();
+        }
+        return current != null ? current : path;
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private MediaSortingConfig.Io getIoConfig() {
+        return config != null ? config.getIo() : new MediaSortingConfig.Io();
+    }
+
+    private ExecutorService getExecutor() {
+        ExecutorService pool = executor;
+        if (pool == null) {
+            synchronized (this) {
+                pool = executor;
+                if (pool == null) {
+                    // Platform threads so per-thread read buffers are reused across files
+                    AtomicInteger threadNumber = new AtomicInteger();
+                    pool = Executors.newFixedThreadPool(Math.max(1, getIoConfig().getMaxThreads()), runnable -> {
+                        Thread thread = new Thread(runnable, "media-io-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    executor = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Device queues created so far, for logging and tests
+     */
+    List<DeviceQueue> getQueues() {
+        return List.copyOf(queues.values());
+    }
+}
@@ -1,28 +1,52 @@
 package com.media.sort.service;
 
+import com.media.sort.config.MediaSortingConfig;
+import com.media.sort.model.ContentHash;
 import com.media.sort.model.ExifData;
+import com.media.sort.service.hash.ContentHasher;
+import com.media.sort.service.hash.Sha256ContentHasher;
+import com.media.sort.service.hash.TreeHasher;
 import com.media.sort.util.DuplicatePatternUtils;
+import com.media.sort.util.FileContent;
+import com.media.sort.util.FileHashUtils;
 import com.media.sort.util.FileOperationUtils;
+import com.media.sort.util.ImageDimensions;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.security.MessageDigest;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class MediaFileService {
 
     private static final Logger logger = LoggerFactory.getLogger(MediaFileService.class);
 
+    /**
+     * Memo kind suffix for the segment digests of a tree-hashed file
+     */
+    private static final String SEGMENTS_KIND_SUFFIX = "-SEGMENTS";
+
     private ProgressTracker mediaErrorTracker;
 
     @Autowired
@@ -34,10 +58,32 @@ public class MediaFileService {
     @Autowired
     private FileQualityComparator fileQualityComparator;
 
+    @Autowired(required = false)
+    private FileSizeIndex fileSizeIndex;
+
+    @Autowired(required = false)
+    private MediaSortingConfig mediaSortingConfig;
+
+    @Autowired(required = false)
+    private HashMemoService hashMemoService;
+
+    @Autowired(required = false)
+    private OriginalContentIndex originalContentIndex;
+
+    private volatile ExecutorService treeHashExecutor;
+
     public MediaFileService() {
         // mediaErrorTracker will be initialized through initializeTracker method
     }
 
+    /**
+     * Creates a service with explicit hashing settings and memo, used by tests
+     */
+    MediaFileService(MediaSortingConfig mediaSortingConfig, HashMemoService hashMemoService) {
+        this.mediaSortingConfig = mediaSortingConfig;
+        this.hashMemoService = hashMemoService;
+    }
+
     private void initializeTracker() {
         if (progressTrackerFactory != null && mediaErrorTracker == null) {
             this.mediaErrorTracker = progressTrackerFactory.getMediaErrorTracker();
@@ -50,7 +96,7 @@ public class MediaFileService {
     public void processFile(ExifData fileData, PhotoOrganizerService photoOrganizerService) {
         initializeTracker(); // Ensure tracker is initialized
         try {
-            String key = calculateHash(fileData.getFile().toPath());
+            ContentHash key = calculateContentHash(fileData.getFile().toPath());
             photoOrganizerService.moveImageOrVideoFile(fileData, key);
         } catch (IOException | NoSuchAlgorithmException e) {
             logger.error("Failed to process file: {}", fileData.getFile().getAbsolutePath(), e);
@@ -59,42 +105,404 @@ public class MediaFileService {
     }
 
     /**
-     * Calculates the SHA-256 hash of a file.
+     * Calculates the content hash of a file with the configured algorithm
+     * (media.hashing.algorithm, SHA-256 by default).
      *
      * @param filePath The path of the file to hash.
-     * @return The SHA-256 hash of the file.
+     * @return The hex-encoded content hash of the file.
      * @throws IOException              If an I/O error occurs.
      * @throws NoSuchAlgorithmException If the SHA-256 algorithm is not available.
      */
     public String calculateHash(Path filePath) throws IOException, NoSuchAlgorithmException {
-        MessageDigest digest;
+        return calculateHash(filePath, null);
+    }
+
+    /**
+     * Calculates the content hash of a file, digesting bytes the caller has
+     * already read instead of reading the file again.
+     *
+     * @param filePath The path of the file to hash.
+     * @param content  The file's bytes, or null to read them from disk.
+     */
+    private String calculateHash(Path filePath, FileContent content) throws IOException {
         try {
-            digest = MessageDigest.getInstance("SHA-256");
-        } catch (NoSuchAlgorithmException e) {
-            logger.error("SHA-256 algorithm not available for file: {}", filePath, e);
-            mediaErrorTracker.saveProgress("CalculateHash processing file: " + filePath);
-            throw new NoSuchAlgorithmException("SHA-256 algorithm not available", e);
-        }
-
-        try (InputStream inputStream = new FileInputStream(filePath.toFile())) {
-            byte[] buffer = new byte[8192]; // 8KB buffer
-            int bytesRead;
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                digest.update(buffer, 0, bytesRead);
+            ContentHasher hasher = getContentHasher();
+            if (isTreeHashed(filePath)) {
+                return calculateTreeHash(hasher, filePath);
             }
+            return memoized(hasher.getAlgorithm(), filePath, () -> {
+                if (content == null) {
+                    return FileHashUtils.toHex(hasher.hash(filePath));
+                }
+                ContentHasher.Session session = hasher.newSession();
+                session.update(content.asByteBuffer());
+                return FileHashUtils.toHex(session.digest());
+            });
         } catch (IOException e) {
             logger.error("Error reading file while calculating hash: {}", filePath, e);
-            mediaErrorTracker.saveProgress("CalculateHash file:: " + filePath);
+            if (mediaErrorTracker != null) {
+                mediaErrorTracker.saveProgress("CalculateHash file:: " + filePath);
+            }
             throw new IOException("Error reading file while calculating hash", e);
         }
+    }
+
+    /**
+     * Calculates the full content hash of a file as a compact map key.
+     *
+     * @param filePath The path of the file to hash.
+     * @return The content hash of the file.
+     * @throws IOException              If an I/O error occurs.
+     * @throws NoSuchAlgorithmException If the SHA-256 algorithm is not available.
+     */
+    public ContentHash calculateContentHash(Path filePath) throws IOException, NoSuchAlgorithmException {
+        return ContentHash.fromHex(ContentHash.Kind.FULL, calculateHash(filePath));
+    }
+
+    private ContentHash calculateContentHash(Path filePath, FileContent content) throws IOException {
+        return ContentHash.fromHex(ContentHash.Kind.FULL, calculateHash(filePath, content));
+    }
+
+    /**
+     * Calculates the SHA-256 hash of a file regardless of the configured
+     * algorithm. Used to confirm matches found by a non-cryptographic hash.
+     *
+     * @param filePath The path of the file to hash.
+     * @return The hex-encoded SHA-256 hash of the file.
+     * @throws IOException If an I/O error occurs.
+     */
+    public String calculateSha256(Path filePath) throws IOException {
+        if (isTreeHashed(filePath)) {
+            return calculateTreeHash(ContentHasher.forAlgorithm(Sha256ContentHasher.ALGORITHM), filePath);
+        }
+        return memoized(Sha256ContentHasher.ALGORITHM, filePath,
+                () -> FileHashUtils.toHex(FileHashUtils.sha256(filePath)));
+    }
+
+    /**
+     * True when a file is large enough to be hashed as parallel segments
+     * (media.hashing.tree-hash-min-file-size). Equal content always has equal
+     * size, so two files are never compared across hashing modes.
+     */
+    private boolean isTreeHashed(Path filePath) throws IOException {
+        MediaSortingConfig.Hashing hashing = getHashingConfig();
+        return hashing.isTreeHash() && Files.size(filePath) >= hashing.getTreeHashMinFileSize();
+    }
+
+    /**
+     * Calculates the Merkle-style root hash of a very large file. Segments are
+     * hashed in parallel on a dedicated pool and their digests are recorded in
+     * the hash memo next to the root, for later corruption checks (see
+     * verifySegments).
+     */
+    private String calculateTreeHash(ContentHasher hasher, Path filePath) throws IOException {
+        String kind = treeHashKind(hasher);
+        return memoized(kind, filePath, () -> {
+            BasicFileAttributes attributes = hashMemoService != null
+                    ? Files.readAttributes(filePath, BasicFileAttributes.class) : null;
+            long start = System.nanoTime();
+            TreeHasher.Result result = newTreeHasher(hasher).hash(filePath);
+            logger.debug("Tree-hashed {} ({} segments) in {} ms", filePath, result.segments().size(),
+                    (System.nanoTime() - start) / 1_000_000);
+            if (hashMemoService != null) {
+                hashMemoService.record(kind + SEGMENTS_KIND_SUFFIX, filePath, attributes,
+                        result.segments().stream().map(FileHashUtils::toHex).collect(Collectors.joining(",")));
+            }
+            return FileHashUtils.toHex(result.root());
+        });
+    }
+
+    /**
+     * Re-hashes a tree-hashed file segment by segment and compares each segment
+     * with the digest recorded when the file was last hashed, so a partially
+     * corrupted file can be located without a known-good copy. The digests
+     * follow the file when it is moved (HashMemoService.recordMove).
+     *
+     * @param filePath The path of the file to check.
+     * @return Indexes of segments that no longer match; empty if the file is intact.
+     * @throws IOException If an I/O error occurs or no segment digests are
+     *                     recorded for the file.
+     */
+    public List<Integer> verifySegments(Path filePath) throws IOException {
+        ContentHasher hasher = getContentHasher();
+        String recorded = hashMemoService != null
+                ? hashMemoService.find(treeHashKind(hasher) + SEGMENTS_KIND_SUFFIX, filePath)
+                : null;
+        if (recorded == null) {
+            throw new IOException("No segment digests recorded for " + filePath);
+        }
+        List<byte[]> expected = new ArrayList<>();
+        for (String segment : recorded.split(",")) {
+            expected.add(HexFormat.of().parseHex(segment));
+        }
+        List<Integer> mismatches = newTreeHasher(hasher).verify(filePath, expected);
+        if (!mismatches.isEmpty()) {
+            logger.warn("{} of {} segments of {} do not match their recorded digests: {}", mismatches.size(),
+                    expected.size(), filePath, mismatches);
+        }
+        return mismatches;
+    }
+
+    private String treeHashKind(ContentHasher hasher) {
+        return hasher.getAlgorithm() + "-TREE-" + getHashingConfig().getTreeSegmentSize();
+    }
+
+    private TreeHasher newTreeHasher(ContentHasher hasher) {
+        return new TreeHasher(hasher, getHashingConfig().getTreeSegmentSize(), getTreeHashExecutor());
+    }
+
+    /**
+     * Dedicated pool for segment hashing, so a single huge file can use every
+     * core while the batch threads wait on it
+     */
+    private ExecutorService getTreeHashExecutor() {
+        ExecutorService executor = treeHashExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = treeHashExecutor;
+                if (executor == null) {
+                    int threads = getHashingConfig().getTreeHashThreads();
+                    if (threads <= 0) {
+                        threads = Runtime.getRuntime().availableProcessors();
+                    }
+                    AtomicInteger threadNumber = new AtomicInteger();
+                    executor = Executors.newFixedThreadPool(threads, runnable -> {
+                        Thread thread = new Thread(runnable, "tree-hash-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    treeHashExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
 
-        byte[] hashBytes = digest.digest();
-        StringBuilder hashBuilder = new StringBuilder();
-        for (byte hashByte : hashBytes) {
-            hashBuilder.append(String.format("%02x", hashByte));
+    @PreDestroy
+    public void shutdown() {
+        if (treeHashExecutor != null) {
+            treeHashExecutor.shutdownNow();
         }
-        String hash = hashBuilder.toString();
-        return hash;
+    }
+
+    /**
+     * Computes a hash, or returns it from the persistent memo when the file's
+     * size, mtime and file key are unchanged since it was last hashed.
+     * Attributes are read before hashing so a file modified mid-hash is
+     * recomputed on the next run.
+     *
+     * @param kind     Hash kind recorded in the memo (algorithm and parameters).
+     * @param filePath The path of the file to hash.
+     * @param hash     Computes the hash on a memo miss.
+     */
+    private String memoized(String kind, Path filePath, HashComputation hash) throws IOException {
+        if (hashMemoService == null) {
+            return hash.compute();
+        }
+        BasicFileAttributes attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+        String memo = hashMemoService.lookup(kind, filePath, attributes);
+        if (memo != null) {
+            return memo;
+        }
+        String computed = hash.compute();
+        hashMemoService.record(kind, filePath, attributes, computed);
+        return computed;
+    }
+
+    @FunctionalInterface
+    private interface HashComputation {
+        String compute() throws IOException;
+    }
+
+    /**
+     * Hasher selected by media.hashing.algorithm
+     */
+    private ContentHasher getContentHasher() {
+        return ContentHasher.forAlgorithm(getHashingConfig().getAlgorithm());
+    }
+
+    private MediaSortingConfig.Hashing getHashingConfig() {
+        return mediaSortingConfig != null ? mediaSortingConfig.getHashing() : new MediaSortingConfig.Hashing();
+    }
+
+    /**
+     * True when matches must be re-checked with SHA-256 before files are moved
+     */
+    private boolean isSha256ConfirmationRequired() {
+        return getHashingConfig().isConfirmWithSha256() && !getContentHasher().isCryptographic();
+    }
+
+    /**
+     * Calculates the duplicate-detection key of a file.
+     * Files whose byte length is unique in the run cannot have an exact
+     * duplicate, so they get a size-only key and their content is never read.
+     * All other files are keyed by their tiered fingerprint.
+     *
+     * @param filePath The path of the file.
+     * @return The size-only key or the fingerprint of the file.
+     * @throws IOException              If an I/O error occurs.
+     * @throws NoSuchAlgorithmException If the SHA-256 algorithm is not available.
+     */
+    public ContentHash calculateHashKey(Path filePath) throws IOException, NoSuchAlgorithmException {
+        return calculateHashKey(filePath, null);
+    }
+
+    /**
+     * Calculates the duplicate-detection key of a file whose bytes were
+     * already read for other consumers, so hashing does not read it again.
+     *
+     * @param filePath The path of the file.
+     * @param content  The file's bytes, or null to read them from disk.
+     * @return The size-only key or the fingerprint of the file.
+     * @throws IOException              If an I/O error occurs.
+     * @throws NoSuchAlgorithmException If the SHA-256 algorithm is not available.
+     */
+    public ContentHash calculateHashKey(Path filePath, FileContent content)
+            throws IOException, NoSuchAlgorithmException {
+        if (fileSizeIndex != null) {
+            long size = Files.size(filePath);
+            if (!fileSizeIndex.hasSizePeers(size)) {
+                logger.debug("Skipping hash for {} - no other file has size {}", filePath, size);
+                return ContentHash.ofSize(size);
+            }
+        }
+        return calculateFingerprint(filePath, content);
+    }
+
+    /**
+     * Calculates the tiered fingerprint of a file.
+     * Large files are keyed by a digest of their size, first and last blocks and
+     * a few evenly spaced sampled blocks. Small files, where reading the whole
+     * file costs about the same, are keyed by their full content hash.
+     *
+     * A partial fingerprint only proves that two files are probably equal; map
+     * lookups must go through resolveFingerprint to confirm byte-for-byte.
+     *
+     * @param filePath The path of the file.
+     * @return The partial fingerprint or the full content hash of the file.
+     * @throws IOException              If an I/O error occurs.
+     * @throws NoSuchAlgorithmException If the SHA-256 algorithm is not available.
+     */
+    public ContentHash calculateFingerprint(Path filePath) throws IOException, NoSuchAlgorithmException {
+        return calculateFingerprint(filePath, null);
+    }
+
+    private ContentHash calculateFingerprint(Path filePath, FileContent content) throws IOException {
+        MediaSortingConfig.Hashing hashing = getHashingConfig();
+        if (!hashing.isPartialFingerprint() || Files.size(filePath) < hashing.getPartialMinFileSize()) {
+            return calculateContentHash(filePath, content);
+        }
+        String kind = "PARTIAL-" + getContentHasher().getAlgorithm() + "-" + hashing.getPartialBlockSize() + "x"
+                + hashing.getPartialSampleCount();
+        return ContentHash.fromHex(ContentHash.Kind.PARTIAL, memoized(kind, filePath,
+                () -> calculatePartialHash(filePath, hashing.getPartialBlockSize(), hashing.getPartialSampleCount(),
+                        content)));
+    }
+
+    /**
+     * Calculates a digest over the file size, the first and last block and
+     * sampleCount blocks spaced evenly in between.
+     */
+    private String calculatePartialHash(Path filePath, int blockSize, int sampleCount, FileContent content)
+            throws IOException {
+        ContentHasher.Session session = getContentHasher().newSession();
+
+        if (content != null) {
+            long size = content.length();
+            session.update(ByteBuffer.allocate(Long.BYTES).putLong(0, size));
+            long lastOffset = Math.max(0, size - blockSize);
+            for (int i = 0; i <= sampleCount + 1; i++) {
+                session.update(content.slice(lastOffset * i / (sampleCount + 1), blockSize));
+            }
+            return FileHashUtils.toHex(session.digest());
+        }
+
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            session.update(ByteBuffer.allocate(Long.BYTES).putLong(0, size));
+
+            long lastOffset = Math.max(0, size - blockSize);
+            for (int i = 0; i <= sampleCount + 1; i++) {
+                long offset = lastOffset * i / (sampleCount + 1);
+                FileHashUtils.read(channel, offset, blockSize, session::update);
+            }
+        } catch (IOException e) {
+            logger.error("Error reading file while calculating partial hash: {}", filePath, e);
+            throw new IOException("Error reading file while calculating partial hash", e);
+        }
+
+        return FileHashUtils.toHex(session.digest());
+    }
+
+    /**
+     * Resolves the key a file should use in a duplicate map.
+     * When a partial fingerprint is already taken by a different file, both files
+     * are hashed in full. Equal hashes confirm an exact duplicate and the shared
+     * partial key is returned; otherwise the file is keyed by its full hash so
+     * it never matches the colliding entry. With a non-cryptographic algorithm
+     * and media.hashing.confirm-with-sha256, full-hash matches are re-checked
+     * with SHA-256 the same way. Size keys are returned unchanged.
+     *
+     * @param map         The duplicate map the key will be used with.
+     * @param fingerprint The key returned by calculateHashKey or
+     *                    calculateFingerprint.
+     * @param filePath    The path of the file being looked up or inserted.
+     * @param pathOf      Extracts the file path from a map value.
+     * @return The key to use for the file in the map.
+     * @throws IOException              If an I/O error occurs.
+     * @throws NoSuchAlgorithmException If the SHA-256 algorithm is not available.
+     */
+    public <V> ContentHash resolveFingerprint(Map<ContentHash, V> map, ContentHash fingerprint, Path filePath,
+            Function<V, Path> pathOf) throws IOException, NoSuchAlgorithmException {
+        if (fingerprint == null || (fingerprint.getKind() != ContentHash.Kind.PARTIAL
+                && fingerprint.getKind() != ContentHash.Kind.FULL)) {
+            return fingerprint;
+        }
+        boolean partial = fingerprint.getKind() == ContentHash.Kind.PARTIAL;
+        if (!partial && !isSha256ConfirmationRequired()) {
+            return fingerprint;
+        }
+        V existing = map.get(fingerprint);
+        if (existing == null) {
+            return fingerprint;
+        }
+        Path existingPath = pathOf.apply(existing);
+        // A missing entry file is handled as stale by the caller
+        if (existingPath == null || !Files.exists(existingPath) || existingPath.equals(filePath)) {
+            return fingerprint;
+        }
+
+        if (partial) {
+            ContentHash fullHash = calculateContentHash(filePath);
+            if (!fullHash.equals(calculateContentHash(existingPath))) {
+                logger.debug("Partial fingerprint collision between {} and {} - using full hash", filePath,
+                        existingPath);
+                // The full hash may itself be taken, so resolve it again
+                return resolveFingerprint(map, fullHash, filePath, pathOf);
+            }
+        }
+
+        if (isSha256ConfirmationRequired()) {
+            String sha256 = calculateSha256(filePath);
+            if (!sha256.equals(calculateSha256(existingPath))) {
+                logger.warn("{} hash collision between {} and {} - using SHA-256", getContentHasher().getAlgorithm(),
+                        filePath, existingPath);
+                return ContentHash.fromHex(ContentHash.Kind.SHA256, sha256);
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Checks if two files with equal content hashes really hold the same bytes.
+     * Only reads the files when the configured algorithm requires SHA-256
+     * confirmation; otherwise equal hashes are trusted.
+     */
+    private boolean confirmSameContent(Path first, Path second) throws IOException {
+        if (!isSha256ConfirmationRequired()) {
+            return true;
+        }
+        return calculateSha256(first).equals(calculateSha256(second));
     }
 
     /**
@@ -168,14 +576,15 @@ public class MediaFileService {
                         File existingFile = destinationPath.toFile();
 
                         try {
-                            String currentHash = calculateHash(currentFile.toPath());
-                            String existingHash = calculateHash(existingFile.toPath());
+                            // The existing file was indexed when it was placed in Original, so its
+                            // hash, dimensions and dates are already known
+                            ExifData indexedFileData = originalContentIndex != null
+                                    ? originalContentIndex.get(destinationPath)
+                                    : null;
 
-                            if (!currentHash.equals(existingHash)) {
+                            if (!isSameContent(fileData, existingFile.toPath(), indexedFileData)) {
                                 // DIFFERENT FILES with same name - just add number suffix
-                                logger.info("Files have different hashes - these are DIFFERENT files, not duplicates");
-                                logger.info("  Current hash:  {}", currentHash.substring(0, 16) + "...");
-                                logger.info("  Existing hash: {}", existingHash.substring(0, 16) + "...");
+                                logger.info("Files have different content - these are DIFFERENT files, not duplicates");
                                 logger.info("Adding number suffix to create unique filename");
 
                                 // Find unique filename with number suffix
@@ -183,19 +592,20 @@ public class MediaFileService {
                             } else {
                                 // SAME FILE (identical hash) - this is a TRUE duplicate
                                 logger.info("Files have SAME hash - TRUE duplicate detected");
-                                logger.info("  Hash: {}", currentHash.substring(0, 16) + "...");
 
-                                // Load existing file's metadata to compare quality
-                                ExifData existingFileData = exifDataFactory.createExifData(existingFile);
+                                // Load existing file's metadata only if it was not indexed
+                                ExifData existingFileData = indexedFileData != null
+                                        ? indexedFileData
+                                        : exifDataFactory.createExifData(existingFile);
 
-                                // Extract image dimensions directly from the file (EXIF may not contain
-                                // resolution)
-                                if (existingFileData.isImage()) {
+                                // Read image dimensions from the file header if the metadata had none;
+                                // no pixels are decoded
+                                if (existingFileData.isImage() && existingFileData.getImageWidth() == null) {
                                     try {
-                                        java.awt.image.BufferedImage img = javax.imageio.ImageIO.read(existingFile);
-                                        if (img != null) {
-                                            existingFileData.setImageWidth(img.getWidth());
-                                            existingFileData.setImageHeight(img.getHeight());
+                                        ImageDimensions.Size size = ImageDimensions.fromHeader(existingFile);
+                                        if (size != null) {
+                                            existingFileData.setImageWidth(size.width());
+                                            existingFileData.setImageHeight(size.height());
                                         }
                                     } catch (Exception e) {
                                         logger.warn("Failed to extract dimensions for existing file: {}",
@@ -245,6 +655,10 @@ public class MediaFileService {
                                     Path duplicatePath = duplicateFolder.toPath().resolve(cleanFileName);
                                     duplicatePath = FileOperationUtils.findUniqueFileName(duplicatePath);
                                     Files.move(existingFile.toPath(), duplicatePath);
+                                    recordMove(existingFile.toPath(), duplicatePath);
+                                    if (indexedFileData != null) {
+                                        indexedFileData.setFile(duplicatePath.toFile());
+                                    }
                                     logger.info("Moved existing file to Duplicates: {}", duplicatePath);
                                 }
                             }
@@ -258,7 +672,11 @@ public class MediaFileService {
                 }
 
                 Path path = Files.move(currentFile.toPath(), destinationPath, StandardCopyOption.REPLACE_EXISTING);
+                recordMove(currentFile.toPath(), path);
                 fileData.setFile(path.toFile());
+                if (!isDuplicate && originalContentIndex != null) {
+                    originalContentIndex.put(fileData);
+                }
                 fileData.logFileDetails("Moved to " + destinationPath);
                 logger.info("Successfully moved file {} to {}", currentFile.getAbsolutePath(), destinationPath);
             }
@@ -268,6 +686,77 @@ public class MediaFileService {
         }
     }
 
+    /**
+     * Keeps memoized hashes attached to a file that was moved and drops it from
+     * the Original index; the caller re-indexes it if it was moved into Original
+     */
+    private void recordMove(Path source, Path destination) {
+        if (hashMemoService != null) {
+            hashMemoService.recordMove(source, destination);
+        }
+        if (originalContentIndex != null) {
+            originalContentIndex.remove(source);
+        }
+    }
+
+    /**
+     * Records a file found in an Original folder by the pre-scan so later
+     * name conflicts with it are resolved from the index
+     */
+    public void registerOriginal(ExifData fileData) {
+        if (originalContentIndex != null && fileData.getFile() != null) {
+            originalContentIndex.put(fileData);
+        }
+    }
+
+    /**
+     * Decides whether a file and an existing file with the same name hold the
+     * same bytes, reading from disk only what the known hashes cannot settle.
+     * Hashes of the same kind that differ prove different content; equal
+     * partial fingerprints are confirmed with full hashes.
+     *
+     * @param fileData         The file being moved, with the key set by the writer
+     * @param existingPath     The file already at the destination
+     * @param existingFileData Indexed metadata of the existing file, or null
+     */
+    private boolean isSameContent(ExifData fileData, Path existingPath, ExifData existingFileData)
+            throws IOException, NoSuchAlgorithmException {
+        Path currentPath = fileData.getFile().toPath();
+        if (Files.size(currentPath) != Files.size(existingPath)) {
+            return false;
+        }
+
+        ContentHash currentHash = fileData.getContentHash();
+        ContentHash existingHash = existingFileData != null ? existingFileData.getContentHash() : null;
+        if (currentHash != null && existingHash != null && currentHash.getKind() == existingHash.getKind()) {
+            switch (currentHash.getKind()) {
+                case SHA256:
+                    return currentHash.equals(existingHash);
+                case FULL:
+                    return currentHash.equals(existingHash) && confirmSameContent(currentPath, existingPath);
+                case PARTIAL:
+                    if (!currentHash.equals(existingHash)) {
+                        return false;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        ContentHash currentFull = fullHashOf(currentHash, currentPath);
+        ContentHash existingFull = fullHashOf(existingHash, existingPath);
+        logger.debug("Comparing full hashes: {} vs {}", currentFull, existingFull);
+        return currentFull.equals(existingFull) && confirmSameContent(currentPath, existingPath);
+    }
+
+    private ContentHash fullHashOf(ContentHash key, Path filePath) throws IOException, NoSuchAlgorithmException {
+        if (key != null && key.getKind() == ContentHash.Kind.FULL) {
+            return key;
+        }
+        return calculateContentHash(filePath);
+    }
+
     /**
      * Determines the appropriate duplicate folder based on file type and current
      * destination.
@@ -0,0 +1,77 @@
+package com.media.sort.service;
+
+import com.media.sort.model.ExifData;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Destination-side index of every file placed in an Original folder.
+ * Holds the metadata already extracted for the file (content hash, dimensions,
+ * dates) so a clean-name conflict in MediaFileService.executeMove can be
+ * resolved without re-reading the existing file from disk.
+ *
+ * Maintained by the writers: MediaFileService adds files it moves into Original
+ * and drops files it moves out, HashMapPopulatorWriter adds files found by the
+ * pre-scan. An entry is only returned while the file's size and modification
+ * time are unchanged, so files edited or replaced outside the application are
+ * read again.
+ */
+@Component
+public class OriginalContentIndex {
+
+    private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+
+    private record Entry(ExifData exifData, long size, long lastModified) {
+    }
+
+    /**
+     * Records the metadata of a file now stored in an Original folder
+     *
+     * @param exifData Metadata of the file; its file must point at the final location
+     */
+    public void put(ExifData exifData) {
+        File file = exifData.getFile();
+        entries.put(keyOf(file.toPath()), new Entry(exifData, file.length(), file.lastModified()));
+    }
+
+    /**
+     * Returns the indexed metadata of a file, or null if the file is not indexed
+     * or has changed since it was indexed
+     */
+    public ExifData get(Path path) {
+        Path key = keyOf(path);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        File file = key.toFile();
+        if (file.length() != entry.size() || file.lastModified() != entry.lastModified()) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.exifData();
+    }
+
+    /**
+     * Forgets a file that was moved out of its Original folder
+     */
+    public void remove(Path path) {
+        entries.remove(keyOf(path));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    private static Path keyOf(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+}
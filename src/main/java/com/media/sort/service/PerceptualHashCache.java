@@ -0,0 +1,328 @@
+package com.media.sort.service;
+
+import com.media.sort.config.MediaSortingConfig;
+import com.media.sort.model.ContentHash;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Persistent store of perceptual hashes so the bytes of an image are decoded
+ * for hashing at most once, across runs, jobs and paths.
+ *
+ * Entries are keyed by hash kind (algorithm and the parameters that affect
+ * its bits) and content hash, so identical bytes share one entry wherever
+ * they are. Files without a full content hash fall back to the path-based
+ * HashMemoService, valid while the file's size, mtime and file key are
+ * unchanged: a size key (the size is unique, so the content was never
+ * hashed) or a partial fingerprint, which only samples a few blocks and can
+ * be shared by different images.
+ *
+ * Stored as an append-only tab-separated file
+ * (media.perceptual-hash.cache-file), one line per computed hash:
+ * kind, content key, hash (hex), width, height.
+ * The file is compacted on load when most lines are duplicates.
+ */
+@Service
+public class PerceptualHashCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PerceptualHashCache.class);
+
+    /**
+     * Appended lines are flushed to disk after this many records
+     */
+    private static final int FLUSH_INTERVAL = 500;
+
+    /**
+     * Prefix of the kinds recorded in the hash memo for files without a content key
+     */
+    private static final String MEMO_KIND_PREFIX = "phash-";
+
+    @Autowired(required = false)
+    private MediaSortingConfig config;
+
+    @Autowired(required = false)
+    private HashMemoService hashMemoService;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private Path cacheFile;
+    private BufferedWriter writer;
+    private int pendingWrites;
+    private volatile boolean loaded;
+
+    public PerceptualHashCache() {
+        // Cache file is loaded on first use
+    }
+
+    /**
+     * Creates a cache backed by a specific file and path memo, used by tests
+     */
+    PerceptualHashCache(Path cacheFile, HashMemoService hashMemoService) {
+        this.cacheFile = cacheFile;
+        this.hashMemoService = hashMemoService;
+    }
+
+    /**
+     * Cached hash of one content
+     */
+    record Entry(String kind, String key, long hash, int width, int height) {
+
+        PerceptualHashService.ImageHash toImageHash() {
+            return new PerceptualHashService.ImageHash(hash, width, height);
+        }
+
+        String toLine() {
+            return String.join("\t", kind, key, Long.toHexString(hash),
+                    Integer.toString(width), Integer.toString(height));
+        }
+
+        static Entry fromLine(String line) {
+            String[] parts = line.split("\t", 5);
+            if (parts.length < 5) {
+                return null;
+            }
+            try {
+                return new Entry(parts[0], parts[1], Long.parseUnsignedLong(parts[2], 16),
+                        Integer.parseInt(parts[3]), Integer.parseInt(parts[4]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Returns the cached hash of an image, computing and recording it on a miss
+     *
+     * @param kind        Hash kind (algorithm and parameters)
+     * @param contentHash The image's duplicate map key, or null if unknown
+     * @param file        The image file
+     * @param compute     Decodes and hashes the image; may return null
+     * @return The hash, or null if it could not be computed
+     */
+    public PerceptualHashService.ImageHash computeIfAbsent(String kind, ContentHash contentHash, File file,
+            Supplier<PerceptualHashService.ImageHash> compute) {
+        if (!isEnabled()) {
+            return compute.get();
+        }
+        String key = contentKey(contentHash);
+        if (key != null) {
+            ensureLoaded();
+            Entry entry = entries.get(entryKey(kind, key));
+            if (entry != null) {
+                return entry.toImageHash();
+            }
+            PerceptualHashService.ImageHash computed = compute.get();
+            if (computed != null) {
+                Entry created = new Entry(kind, key, computed.hash(), computed.width(), computed.height());
+                entries.put(entryKey(kind, key), created);
+                append(created);
+            }
+            return computed;
+        }
+        return computeByPath(kind, file, compute);
+    }
+
+    /**
+     * Number of cached hashes currently loaded
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Flushes appended entries to disk
+     */
+    @PreDestroy
+    public synchronized void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close perceptual hash cache file: {}", cacheFile, e);
+            }
+            writer = null;
+        }
+    }
+
+    /**
+     * Keys that identify content: a full hash or a SHA-256. Partial
+     * fingerprints, size and unique keys do not.
+     */
+    private static String contentKey(ContentHash contentHash) {
+        if (contentHash == null) {
+            return null;
+        }
+        return switch (contentHash.getKind()) {
+            case FULL, SHA256 -> contentHash.toString();
+            case PARTIAL, SIZE, UNIQUE -> null;
+        };
+    }
+
+    private PerceptualHashService.ImageHash computeByPath(String kind, File file,
+            Supplier<PerceptualHashService.ImageHash> compute) {
+        if (hashMemoService == null) {
+            return compute.get();
+        }
+        Path path = file.toPath();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return compute.get();
+        }
+        String memo = hashMemoService.lookup(MEMO_KIND_PREFIX + kind, path, attributes);
+        PerceptualHashService.ImageHash memoized = memo != null ? fromMemo(memo) : null;
+        if (memoized != null) {
+            return memoized;
+        }
+        PerceptualHashService.ImageHash computed = compute.get();
+        if (computed != null) {
+            hashMemoService.record(MEMO_KIND_PREFIX + kind, path, attributes, toMemo(computed));
+        }
+        return computed;
+    }
+
+    /**
+     * Hash memo value: hash (hex), width and height separated by commas
+     */
+    private static String toMemo(PerceptualHashService.ImageHash imageHash) {
+        return Long.toHexString(imageHash.hash()) + "," + imageHash.width() + "," + imageHash.height();
+    }
+
+    private static PerceptualHashService.ImageHash fromMemo(String memo) {
+        String[] parts = memo.split(",", 3);
+        if (parts.length < 3) {
+            return null;
+        }
+        try {
+            return new PerceptualHashService.ImageHash(Long.parseUnsignedLong(parts[0], 16),
+                    Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private boolean isEnabled() {
+        return config == null || config.getPerceptualHash().isCacheEnabled();
+    }
+
+    private synchronized void append(Entry entry) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write(entry.toLine());
+            writer.newLine();
+            if (++pendingWrites >= FLUSH_INTERVAL) {
+                writer.flush();
+                pendingWrites = 0;
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to append to perceptual hash cache file {}, cache not persisted for this run: {}",
+                    cacheFile, e.getMessage());
+            close();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            if (cacheFile == null) {
+                cacheFile = Paths.get(config != null
+                        ? config.getPerceptualHash().getCacheFile() : "logs/perceptual-hash-cache.tsv");
+            }
+            int lines = load();
+            if (lines > 2 * entries.size() + FLUSH_INTERVAL) {
+                compact();
+            }
+            openWriter();
+            loaded = true;
+        }
+    }
+
+    private int load() {
+        if (!Files.exists(cacheFile)) {
+            return 0;
+        }
+        int lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Entry entry = Entry.fromLine(line);
+                if (entry != null) {
+                    entries.put(entryKey(entry.kind(), entry.key()), entry);
+                }
+                lines++;
+            }
+            logger.info("Loaded {} cached perceptual hashes from {}", entries.size(), cacheFile);
+        } catch (IOException e) {
+            logger.warn("Failed to read perceptual hash cache file {}, starting empty: {}", cacheFile,
+                    e.getMessage());
+            entries.clear();
+        }
+        return lines;
+    }
+
+    /**
+     * Rewrites the cache file with one line per entry
+     */
+    private void compact() {
+        Path tempFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            for (Entry entry : entries.values()) {
+                out.write(entry.toLine());
+                out.newLine();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to compact perceptual hash cache file {}: {}", cacheFile, e.getMessage());
+            return;
+        }
+        try {
+            Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            logger.info("Compacted perceptual hash cache file {} to {} entries", cacheFile, entries.size());
+        } catch (IOException e) {
+            logger.warn("Failed to replace perceptual hash cache file {}: {}", cacheFile, e.getMessage());
+        }
+    }
+
+    private void openWriter() {
+        try {
+            Path parent = cacheFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            writer = Files.newBufferedWriter(cacheFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            logger.warn("Failed to open perceptual hash cache file {}, hashes will not be persisted: {}",
+                    cacheFile, e.getMessage());
+        }
+    }
+
+    private static String entryKey(String kind, String key) {
+        return kind + '\t' + key;
+    }
+}
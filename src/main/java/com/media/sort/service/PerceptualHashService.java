@@ -1,19 +1,28 @@
 package com.media.sort.service;
 
+import com.media.sort.model.ContentHash;
+import com.media.sort.service.phash.DctKernel;
+import com.media.sort.service.phash.GrayscaleDownscaler;
+import com.media.sort.service.phash.PerceptualHashIndex;
+import com.media.sort.service.phash.ReducedImageDecoder;
+import com.media.sort.util.FileContent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import javax.imageio.ImageIO;
-import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
+import java.util.function.Function;
 
 /**
- * Service for computing perceptual hashes (pHash) of images.
- * Uses Discrete Cosine Transform (DCT) based perceptual hashing.
+ * Service for computing perceptual hashes of images.
+ * Supports the DCT-based pHash, the gradient dHash and the average aHash,
+ * selected with media.perceptual-hash.algorithm, and a CASCADE mode that
+ * indexes the cheap dHash and verifies candidates with pHash.
  * 
  * This detects visually similar images regardless of:
  * - Different resolutions
@@ -27,47 +36,136 @@ public class PerceptualHashService {
     private static final Logger logger = LoggerFactory.getLogger(PerceptualHashService.class);
 
     @Value("${media.perceptual-hash.hash-size:32}")
-    private int hashSize;
+    private int hashSize = 32;
 
     @Value("${media.perceptual-hash.small-size:32}")
-    private int smallSize;
+    private int smallSize = 32;
 
     @Value("${media.perceptual-hash.hamming-threshold:12}")
-    private int similarityThreshold;
+    private int similarityThreshold = 12;
 
     @Value("${media.perceptual-hash.dct-size:8}")
-    private int dctSize;
+    private int dctSize = 8;
+
+    @Value("${media.perceptual-hash.use-thumbnail:true}")
+    private boolean useThumbnail = true;
+
+    @Value("${media.perceptual-hash.thumbnail-min-size:96}")
+    private int thumbnailMinSize = 96;
+
+    @Value("${media.perceptual-hash.decode-min-size:256}")
+    private int decodeMinSize = 256;
+
+    @Value("${media.perceptual-hash.algorithm:PHASH}")
+    private Algorithm algorithm = Algorithm.PHASH;
+
+    @Value("${media.perceptual-hash.cascade-threshold:14}")
+    private int cascadeThreshold = 14;
 
     /**
-     * Compute perceptual hash for an image file
+     * dHash and aHash only sample an 8-pixel grid, so their images are decoded
+     * down to this short side at most
      */
-    public String computeHash(File imageFile) {
-        try {
-            BufferedImage image = ImageIO.read(imageFile);
-            if (image == null) {
-                logger.warn("Failed to read image: {}", imageFile.getAbsolutePath());
-                return null;
-            }
+    private static final int GRID_HASH_DECODE_MIN_SIZE = 64;
+
+    @Autowired(required = false)
+    private PerceptualHashCache cache;
 
-            // Step 1: Reduce size
-            BufferedImage smallImage = resize(image, smallSize, smallSize);
+    private final ThreadLocal<Workspace> workspaces = new ThreadLocal<>();
+
+    public PerceptualHashService() {
+        // Settings are injected from media.perceptual-hash.*
+    }
 
-            // Step 2: Convert to grayscale
-            double[][] grayPixels = toGrayscale(smallImage);
+    /**
+     * Creates a service with the default settings, the given algorithm and
+     * cache, used by tests
+     */
+    PerceptualHashService(Algorithm algorithm, PerceptualHashCache cache) {
+        this.algorithm = algorithm;
+        this.cache = cache;
+    }
 
-            // Step 3: Compute DCT
-            double[][] dctVals = applyDCT(grayPixels);
+    /**
+     * Perceptual hash algorithms
+     */
+    public enum Algorithm {
+        /** DCT of a 32x32 grayscale image, low frequencies compared to their mean */
+        PHASH,
+        /** Horizontal gradients of a 9x8 grayscale image */
+        DHASH,
+        /** 8x8 grayscale image compared to its mean */
+        AVERAGE_HASH,
+        /** dHash in the index, candidates verified by pHash */
+        CASCADE
+    }
 
-            // Step 4: Reduce DCT
-            double[][] reducedDCT = reduceDCT(dctVals, dctSize);
+    /**
+     * Perceptual hash of an image together with its full-resolution dimensions
+     */
+    public record ImageHash(long hash, int width, int height) {
+    }
 
-            // Step 5: Compute average value
-            double avg = computeAverage(reducedDCT);
+    /**
+     * Compute the perceptual hash and dimensions of an image file, decoding it
+     * only at the resolution the hash needs (EXIF thumbnail or subsampled)
+     *
+     * @param imageFile The image file
+     * @param content   The file's bytes if already read, otherwise null
+     * @return The hash used for the duplicate index (the dHash with CASCADE)
+     *         and dimensions, or null if the image cannot be decoded
+     */
+    public ImageHash hashImage(File imageFile, FileContent content) {
+        return hashImage(imageFile, content, indexAlgorithm());
+    }
 
-            // Step 6: Generate hash based on average
-            long hash = computeHash(reducedDCT, avg);
+    /**
+     * Like hashImage(File, FileContent), but served from the persistent cache
+     * when the same content has been hashed before
+     *
+     * @param contentHash The file's duplicate map key, or null if unknown
+     */
+    public ImageHash hashImage(File imageFile, FileContent content, ContentHash contentHash) {
+        return cachedHash(imageFile, content, contentHash, indexAlgorithm());
+    }
 
-            return Long.toHexString(hash);
+    private ImageHash cachedHash(File imageFile, FileContent content, ContentHash contentHash,
+            Algorithm hashAlgorithm) {
+        if (cache == null) {
+            return hashImage(imageFile, content, hashAlgorithm);
+        }
+        return cache.computeIfAbsent(hashKind(hashAlgorithm), contentHash, imageFile,
+                () -> hashImage(imageFile, content, hashAlgorithm));
+    }
+
+    /**
+     * Cache kind of a hash: the algorithm and every setting that changes its bits
+     */
+    private String hashKind(Algorithm hashAlgorithm) {
+        String thumbnail = useThumbnail ? "t" + thumbnailMinSize : "full";
+        return switch (hashAlgorithm) {
+            case PHASH -> "phash:" + smallSize + ":" + dctSize + ":" + thumbnail + ":" + decodeMinSize;
+            case DHASH, CASCADE -> "dhash:" + thumbnail + ":" + decodeMinSize(hashAlgorithm);
+            case AVERAGE_HASH -> "ahash:" + thumbnail + ":" + decodeMinSize(hashAlgorithm);
+        };
+    }
+
+    private int decodeMinSize(Algorithm hashAlgorithm) {
+        return hashAlgorithm == Algorithm.PHASH
+                ? decodeMinSize : Math.min(decodeMinSize, GRID_HASH_DECODE_MIN_SIZE);
+    }
+
+    private ImageHash hashImage(File imageFile, FileContent content, Algorithm hashAlgorithm) {
+        try {
+            ReducedImageDecoder.DecodedImage decoded = new ReducedImageDecoder(decodeMinSize(hashAlgorithm),
+                    thumbnailMinSize, useThumbnail).decode(imageFile, content);
+            if (decoded == null) {
+                logger.warn("Failed to read image: {}", imageFile.getAbsolutePath());
+                return null;
+            }
+            logger.debug("Hashing {} from {} {}x{}", imageFile.getName(),
+                    decoded.thumbnail() ? "thumbnail" : "image", decoded.image().getWidth(), decoded.image().getHeight());
+            return new ImageHash(computeHash(decoded.image(), hashAlgorithm), decoded.width(), decoded.height());
 
         } catch (IOException e) {
             logger.error("Error computing perceptual hash for: {}", imageFile.getAbsolutePath(), e);
@@ -79,14 +177,133 @@ public class PerceptualHashService {
     }
 
     /**
-     * Check if two images are perceptually similar
+     * Compute the 64-bit hash used for the duplicate index of an image that
+     * has already been decoded
+     */
+    public long computeHash(BufferedImage image) {
+        return computeHash(image, indexAlgorithm());
+    }
+
+    /**
+     * Compute a 64-bit perceptual hash of an image that has already been decoded
+     */
+    public long computeHash(BufferedImage image, Algorithm hashAlgorithm) {
+        return switch (hashAlgorithm) {
+            case PHASH -> dctHash(image);
+            case DHASH, CASCADE -> differenceHash(image);
+            case AVERAGE_HASH -> averageHash(image);
+        };
+    }
+
+    /**
+     * Finds the indexed image most similar to an image, within the similarity
+     * threshold.
+     *
+     * With CASCADE the index holds dHashes: the images within
+     * cascade-threshold dHash bits are only candidates, and the closest one
+     * whose pHash is within the similarity threshold is returned. Both files
+     * are decoded again for the pHash unless it is cached, which only happens
+     * for the few images that have a candidate.
+     *
+     * @param index         The duplicate index, keyed by hashImage hashes
+     * @param hash          The image's hashImage hash
+     * @param file          The image file
+     * @param contentHash   The image's duplicate map key, or null if unknown
+     * @param fileOf        The file of an indexed value
+     * @param contentHashOf The duplicate map key of an indexed value
+     * @return The most similar indexed value, or null if there is none
+     */
+    public <T> T findSimilar(PerceptualHashIndex<T> index, long hash, File file, ContentHash contentHash,
+            Function<T, File> fileOf, Function<T, ContentHash> contentHashOf) {
+        if (algorithm != Algorithm.CASCADE) {
+            return index.findNearest(hash, similarityThreshold);
+        }
+        List<T> candidates = index.findWithin(hash, cascadeThreshold);
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        ImageHash pHash = cachedHash(file, null, contentHash, Algorithm.PHASH);
+        if (pHash == null) {
+            return null;
+        }
+
+        T best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        for (T candidate : candidates) {
+            ImageHash candidateHash = cachedHash(fileOf.apply(candidate), null, contentHashOf.apply(candidate),
+                    Algorithm.PHASH);
+            if (candidateHash != null) {
+                int distance = calculateHammingDistance(pHash.hash(), candidateHash.hash());
+                if (distance <= similarityThreshold && distance < bestDistance) {
+                    best = candidate;
+                    bestDistance = distance;
+                }
+            }
+        }
+        logger.debug("{} dHash candidates for {}, pHash match: {}", candidates.size(), file.getName(), best != null);
+        return best;
+    }
+
+    /**
+     * Algorithm of the hashes in the duplicate index
      */
-    public boolean areSimilar(String hash1, String hash2) {
-        if (hash1 == null || hash2 == null) {
-            return false;
+    private Algorithm indexAlgorithm() {
+        return algorithm == Algorithm.CASCADE ? Algorithm.DHASH : algorithm;
+    }
+
+    private long dctHash(BufferedImage image) {
+        Workspace workspace = workspace();
+
+        // Step 1: Reduce size and convert to grayscale in one pass
+        workspace.downscaler.downscale(image, workspace.gray);
+
+        // Step 2: Compute the low-frequency block of the DCT
+        workspace.kernel.transform(workspace.gray, workspace.coefficients);
+
+        // Step 3: Compute average value
+        double avg = computeAverage(workspace.coefficients);
+
+        // Step 4: Generate hash based on average
+        return computeHash(workspace.coefficients, avg);
+    }
+
+    /**
+     * One bit per horizontally adjacent pair of a 9x8 grid: set if the left
+     * cell is brighter
+     */
+    private long differenceHash(BufferedImage image) {
+        Workspace workspace = workspace();
+        double[] gray = workspace.gradientGray;
+        workspace.gradientDownscaler.downscale(image, gray);
+
+        long hash = 0;
+        int bitIndex = 0;
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                if (gray[y * 9 + x] > gray[y * 9 + x + 1]) {
+                    hash |= 1L << bitIndex;
+                }
+                bitIndex++;
+            }
         }
+        return hash;
+    }
 
-        if (hash1.equals(hash2)) {
+    /**
+     * One bit per cell of an 8x8 grid: set if the cell is brighter than the mean
+     */
+    private long averageHash(BufferedImage image) {
+        Workspace workspace = workspace();
+        double[] gray = workspace.averageGray;
+        workspace.averageDownscaler.downscale(image, gray);
+        return computeHash(gray, computeAverage(gray));
+    }
+
+    /**
+     * Check if two images are perceptually similar
+     */
+    public boolean areSimilar(long hash1, long hash2) {
+        if (hash1 == hash2) {
             return true; // Exact match
         }
 
@@ -100,113 +317,71 @@ public class PerceptualHashService {
         return similar;
     }
 
+    /**
+     * Largest Hamming distance at which two images count as similar
+     */
+    public int getSimilarityThreshold() {
+        return similarityThreshold;
+    }
+
     /**
      * Calculate Hamming distance between two hashes
      */
-    public int calculateHammingDistance(String hash1, String hash2) {
-        try {
-            long val1 = Long.parseUnsignedLong(hash1, 16);
-            long val2 = Long.parseUnsignedLong(hash2, 16);
-            long xor = val1 ^ val2;
-            return Long.bitCount(xor);
-        } catch (NumberFormatException e) {
-            logger.error("Invalid hash format", e);
-            return Integer.MAX_VALUE;
-        }
+    public static int calculateHammingDistance(long hash1, long hash2) {
+        return Long.bitCount(hash1 ^ hash2);
     }
 
     // Helper methods
 
-    private BufferedImage resize(BufferedImage image, int width, int height) {
-        Image tmp = image.getScaledInstance(width, height, Image.SCALE_SMOOTH);
-        BufferedImage resized = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g2d = resized.createGraphics();
-        g2d.drawImage(tmp, 0, 0, null);
-        g2d.dispose();
-        return resized;
-    }
-
-    private double[][] toGrayscale(BufferedImage image) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        double[][] gray = new double[height][width];
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int rgb = image.getRGB(x, y);
-                int r = (rgb >> 16) & 0xFF;
-                int g = (rgb >> 8) & 0xFF;
-                int b = rgb & 0xFF;
-                // Standard RGB to grayscale conversion
-                gray[y][x] = 0.299 * r + 0.587 * g + 0.114 * b;
-            }
+    private double computeAverage(double[] values) {
+        double sum = 0.0;
+        for (double val : values) {
+            sum += val;
         }
-
-        return gray;
+        return sum / values.length;
     }
 
-    private double[][] applyDCT(double[][] input) {
-        int N = input.length;
-        double[][] output = new double[N][N];
-
-        for (int u = 0; u < N; u++) {
-            for (int v = 0; v < N; v++) {
-                double sum = 0.0;
-                for (int i = 0; i < N; i++) {
-                    for (int j = 0; j < N; j++) {
-                        sum += input[i][j] *
-                                Math.cos(((2 * i + 1) / (2.0 * N)) * u * Math.PI) *
-                                Math.cos(((2 * j + 1) / (2.0 * N)) * v * Math.PI);
-                    }
-                }
+    private long computeHash(double[] values, double avg) {
+        long hash = 0;
+        int bits = Math.min(values.length, 64); // Limit to 64 bits
 
-                double cu = (u == 0) ? 1 / Math.sqrt(2.0) : 1.0;
-                double cv = (v == 0) ? 1 / Math.sqrt(2.0) : 1.0;
-                output[u][v] = 0.25 * cu * cv * sum;
+        for (int bitIndex = 0; bitIndex < bits; bitIndex++) {
+            if (values[bitIndex] > avg) {
+                hash |= (1L << bitIndex);
             }
         }
 
-        return output;
-    }
-
-    private double[][] reduceDCT(double[][] dct, int size) {
-        double[][] reduced = new double[size][size];
-        for (int i = 0; i < size; i++) {
-            System.arraycopy(dct[i], 0, reduced[i], 0, size);
-        }
-        return reduced;
+        return hash;
     }
 
-    private double computeAverage(double[][] values) {
-        double sum = 0.0;
-        int count = 0;
-
-        for (double[] row : values) {
-            for (double val : row) {
-                sum += val;
-                count++;
-            }
+    /**
+     * Per-thread downscaler, DCT kernel and buffers, sized from the configuration on first use
+     */
+    private Workspace workspace() {
+        Workspace workspace = workspaces.get();
+        if (workspace == null || workspace.kernel.getSize() != smallSize
+                || workspace.kernel.getBlockSize() != dctSize) {
+            workspace = new Workspace(smallSize, dctSize);
+            workspaces.set(workspace);
         }
-
-        return sum / count;
+        return workspace;
     }
 
-    private long computeHash(double[][] values, double avg) {
-        long hash = 0;
-        int bitIndex = 0;
-
-        for (double[] row : values) {
-            for (double val : row) {
-                if (val > avg) {
-                    hash |= (1L << bitIndex);
-                }
-                bitIndex++;
-                if (bitIndex >= 64) {
-                    return hash; // Limit to 64 bits
-                }
-            }
+    private static final class Workspace {
+        private final GrayscaleDownscaler downscaler;
+        private final DctKernel kernel;
+        private final double[] gray;
+        private final double[] coefficients;
+        private final GrayscaleDownscaler gradientDownscaler = new GrayscaleDownscaler(9, 8);
+        private final double[] gradientGray = new double[9 * 8];
+        private final GrayscaleDownscaler averageDownscaler = new GrayscaleDownscaler(8);
+        private final double[] averageGray = new double[8 * 8];
+
+        private Workspace(int size, int blockSize) {
+            this.downscaler = new GrayscaleDownscaler(size);
+            this.kernel = new DctKernel(size, blockSize);
+            this.gray = new double[size * size];
+            this.coefficients = new double[blockSize * blockSize];
         }
-
-        return hash;
     }
 }
@@ -1,6 +1,7 @@
 package com.media.sort.service;
 
 import com.media.sort.MediaSortingProperties;
+import com.media.sort.model.ContentHash;
 import com.media.sort.model.ExifData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,7 +25,7 @@ public class PhotoOrganizerService {
     private static final Logger logger = LoggerFactory.getLogger(PhotoOrganizerService.class);
 
     private ProgressTracker poErrorTracker;
-    private final Map<String, ExifData> fileHash = new HashMap<>();
+    private final Map<ContentHash, ExifData> fileHash = new HashMap<>();
     private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
 
     @Autowired
@@ -125,10 +126,20 @@ public class PhotoOrganizerService {
         logger.info("Completed photo organization for folder: {}", sourceFolder);
     }
 
-    public void moveImageOrVideoFile(ExifData fileData, String key) {
+    public void moveImageOrVideoFile(ExifData fileData, ContentHash key) {
         boolean isImage = fileData.isImage();
         String folderDate = fileData.getFolderDate();
 
+        // Confirm fast-hash matches with SHA-256 before treating the file as a duplicate
+        try {
+            key = mediaFileService.resolveFingerprint(fileHash, key, fileData.getFile().toPath(),
+                    existing -> existing.getFile().toPath());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            logger.error("Failed to confirm hash for {}, treating as unique", fileData.getFile().getName(), e);
+            key = ContentHash.unique();
+        }
+        fileData.setContentHash(key);
+
         if (fileHash.containsKey(key)) {
             // File with the same hash - it's a duplicate
             ExifData originalFileData = fileHash.get(key);
@@ -244,7 +255,7 @@ public class PhotoOrganizerService {
             if (file.isFile()) {
                 try {
                     ExifData fileData = exifDataFactory.createExifData(file);
-                    String key = mediaFileService.calculateHash(fileData.getFile().toPath());
+                    ContentHash key = mediaFileService.calculateContentHash(fileData.getFile().toPath());
                     if (fileHash.containsKey(key)) {
                         String originalName = fileHash.get(key).getFile().getName();
                         Path originalPath = file.toPath().getParent().resolve(originalName);
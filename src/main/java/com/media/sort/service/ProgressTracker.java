@@ -89,7 +89,7 @@ public class ProgressTracker {
         }
     }
 
-    public void saveProgress(String processedFilePath) {
+    public synchronized void saveProgress(String processedFilePath) {
         try (BufferedWriter writer = Files.newBufferedWriter(currentFile, StandardOpenOption.APPEND)) {
             writer.write(processedFilePath);
             writer.newLine();
@@ -0,0 +1,75 @@
+package com.media.sort.service;
+
+import com.media.sort.service.video.Mp4Movie;
+import com.media.sort.service.video.VideoFingerprint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Computes VideoFingerprints of MP4-family videos from their container
+ * (moov box and embedded cover art), without ffmpeg or any video decoder,
+ * so re-encoded copies of a clip can be detected like perceptual image
+ * duplicates.
+ */
+@Service
+public class VideoFingerprintService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VideoFingerprintService.class);
+
+    @Value("${media.perceptual-hash.video-fingerprint:false}")
+    private boolean enabled = false;
+
+    @Autowired(required = false)
+    private PerceptualHashService perceptualHashService;
+
+    /**
+     * Whether videos are fingerprinted, so their sample size tables are needed
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Fingerprints a movie parsed with its sample size tables
+     *
+     * @param file  The video file, for logging
+     * @param movie The parsed movie
+     * @return The fingerprint, or null if disabled or the movie has no video track
+     */
+    public VideoFingerprint fingerprint(File file, Mp4Movie movie) {
+        if (!enabled) {
+            return null;
+        }
+        VideoFingerprint fingerprint = VideoFingerprint.of(movie);
+        if (fingerprint == null || movie.getCoverArt() == null || perceptualHashService == null) {
+            return fingerprint;
+        }
+        try {
+            BufferedImage poster = ImageIO.read(new ByteArrayInputStream(movie.getCoverArt()));
+            if (poster != null) {
+                // Always pHash, whichever algorithm the image index uses, so posters stay comparable
+                return fingerprint.withPosterHash(
+                        perceptualHashService.computeHash(poster, PerceptualHashService.Algorithm.PHASH));
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Could not decode cover art of {}: {}", file.getName(), e.getMessage());
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Largest Hamming distance between the cover art hashes of the same clip
+     */
+    public int getPosterThreshold() {
+        return perceptualHashService != null ? perceptualHashService.getSimilarityThreshold() : 12;
+    }
+}
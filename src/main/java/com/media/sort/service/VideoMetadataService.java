@@ -1,30 +1,31 @@
 package com.media.sort.service;
 
-import com.drew.imaging.ImageMetadataReader;
-import com.drew.imaging.ImageProcessingException;
-import com.drew.metadata.Directory;
-import com.drew.metadata.Metadata;
-import com.drew.metadata.Tag;
-import com.drew.metadata.mov.QuickTimeDirectory;
 import com.media.sort.model.ExifData;
+import com.media.sort.service.video.AsfParser;
+import com.media.sort.service.video.EbmlParser;
+import com.media.sort.service.video.IsoBmffParser;
+import com.media.sort.service.video.Mp4Movie;
+import com.media.sort.service.video.RiffParser;
+import com.media.sort.service.video.VideoFingerprint;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.parser.AutoDetectParser;
 import org.apache.tika.parser.ParseContext;
-import org.apache.tika.parser.mp4.MP4Parser;
-import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.parser.Parser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 
 @Service
@@ -45,11 +46,48 @@ public class VideoMetadataService {
             "dcterms:created"
     };
 
+    /**
+     * Reads the creation date from the header of a container format
+     */
+    @FunctionalInterface
+    private interface HeaderDateReader {
+        Date readCreationDate(File file) throws IOException;
+    }
+
+    private static final Map<String, HeaderDateReader> HEADER_DATE_READERS = headerDateReaders();
+
+    /**
+     * Tika parsers are thread-safe, so one detector and parser chain serves every file
+     */
+    private static final AutoDetectParser TIKA_PARSER = new AutoDetectParser();
+
+    /**
+     * Only metadata is used: the text and XHTML content Tika extracts are dropped as they are produced
+     */
+    private static final DefaultHandler DISCARD_CONTENT = new DefaultHandler();
+
+    private final Parser tikaParser;
+
+    @Value("${media.io.tika-max-read-bytes:16777216}")
+    private long tikaMaxReadBytes = 16L * 1024 * 1024;
+
     @Autowired
     private ProgressTrackerFactory progressTrackerFactory;
 
+    @Autowired(required = false)
+    private VideoFingerprintService videoFingerprintService;
+
     public VideoMetadataService() {
         // Trackers will be initialized through initializeTrackers method
+        this.tikaParser = TIKA_PARSER;
+    }
+
+    /**
+     * Creates a service with its own Tika parser and read limit, used by tests
+     */
+    VideoMetadataService(Parser tikaParser, long tikaMaxReadBytes) {
+        this.tikaParser = tikaParser;
+        this.tikaMaxReadBytes = tikaMaxReadBytes;
     }
 
     private void initializeTrackers() {
@@ -81,19 +119,15 @@ public class VideoMetadataService {
                 exifData.getDateCreated(), exifData.getDateModified());
 
         try {
-            // Try format-specific metadata extraction
-            if ("mov".equals(extension)) {
-                extractQuickTimeMetadata(exifData);
-            }
-            if (Arrays.asList("mp4", "m4v").contains(extension) || exifData.getDateTaken() == null) {
-                extractMp4Metadata(exifData);
-            }
-            if ("3gp".equals(extension) || exifData.getDateTaken() == null) {
-                extract3gpMetadata(exifData);
-            }
-            if (Arrays.asList("avi", "mkv", "dat", "wlmp", "mpg", "wmv").contains(extension) ||
-                    exifData.getDateTaken() == null) {
-                extractOtherVideoMetadata(exifData);
+            // Parse the container once: the box parser for ISO base media files,
+            // a header parser for AVI, Matroska and ASF, and Tika for other
+            // containers or if the native parser cannot read the file
+            if (IsoBmffParser.EXTENSIONS.contains(extension)) {
+                extractIsoMetadata(exifData, isoErrorTracker(extension));
+            } else if (HEADER_DATE_READERS.containsKey(extension)) {
+                extractHeaderMetadata(exifData, HEADER_DATE_READERS.get(extension), otherErrorTracker);
+            } else {
+                extractTikaMetadata(exifData, otherErrorTracker);
             }
 
             // Log extracted date
@@ -125,165 +159,157 @@ public class VideoMetadataService {
         }
     }
 
-    private void extractOtherVideoMetadata(ExifData exifData) {
+    /**
+     * Tracker of the ISO base media format of a file
+     */
+    private ProgressTracker isoErrorTracker(String extension) {
+        return switch (extension) {
+            case "mov" -> qtErrorTracker;
+            case "3gp", "3g2" -> tgpErrorTracker;
+            default -> mp4ErrorTracker;
+        };
+    }
+
+    /**
+     * Reads the creation date, device, location and dimensions of an MP4, MOV
+     * or 3GP file from its moov box, and fingerprints it from the same parse.
+     * The sample size tables are only read when fingerprinting is enabled.
+     */
+    private void extractIsoMetadata(ExifData exifData, ProgressTracker errorTracker) {
         File file = exifData.getFile();
-        try (InputStream input = new FileInputStream(file)) {
-            BodyContentHandler handler = new BodyContentHandler();
-            org.apache.tika.metadata.Metadata metadata = new org.apache.tika.metadata.Metadata();
-            AutoDetectParser parser = new AutoDetectParser();
-            ParseContext parseContext = new ParseContext();
-            parser.parse(input, handler, metadata, parseContext);
-
-            for (String key : POSSIBLE_CREATION_DATE_KEYS) {
-                String creationDate = metadata.get(key);
-                if (creationDate != null) {
-                    SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
-                    exifData.setDateTaken(sdf.parse(creationDate));
-                    break;
-                }
-            }
+        boolean fingerprint = videoFingerprintService != null && videoFingerprintService.isEnabled();
+        Mp4Movie movie;
+        try {
+            movie = IsoBmffParser.parse(file, fingerprint);
+        } catch (IOException e) {
+            logger.debug("Could not read boxes of {}: {}", file.getName(), e.getMessage());
+            movie = null;
+        }
+        if (movie == null) {
+            // No moov box or a corrupt file - Tika may still read it
+            logger.debug("ISO metadata not available for: {} (will try Tika)", file.getName());
+            errorTracker.saveProgress("extractIsoMetadata file: " + file);
+            extractTikaMetadata(exifData, errorTracker);
+            return;
+        }
 
-            if (exifData.getDateTaken() == null) {
-                otherErrorTracker.saveProgress("No Date extractOtherVideoMetadata file: " + file);
-            }
-        } catch (IOException | ParseException | TikaException | SAXException e) {
-            logger.error("Failed to extract other video metadata for file: {}", file.getAbsolutePath(), e);
-            otherErrorTracker.saveProgress("extractOtherVideoMetadata file: " + file);
+        exifData.setDateTaken(movie.getCreationDate());
+        setDevice(exifData, "Make", movie.getMake());
+        setDevice(exifData, "Model", movie.getModel());
+        if (exifData.getLatitude() == null && movie.getLatitude() != null) {
+            exifData.setLatitude(movie.getLatitude());
+            exifData.setLongitude(movie.getLongitude());
         }
+        Mp4Movie.Track video = movie.getTrack("vide");
+        if (exifData.getImageWidth() == null && video != null && video.getWidth() > 0 && video.getHeight() > 0) {
+            exifData.setImageWidth(video.getWidth());
+            exifData.setImageHeight(video.getHeight());
+        }
+        if (fingerprint) {
+            fingerprintVideo(exifData, movie);
+        }
+
+        if (exifData.getDateTaken() == null) {
+            errorTracker.saveProgress("No Date extractIsoMetadata file: " + file);
+        }
+    }
+
+    /**
+     * Fingerprints the parsed container for re-encoded copy detection
+     */
+    private void fingerprintVideo(ExifData exifData, Mp4Movie movie) {
+        VideoFingerprint fingerprint = videoFingerprintService.fingerprint(exifData.getFile(), movie);
+        if (fingerprint == null) {
+            return;
+        }
+        exifData.setVideoFingerprint(fingerprint);
+        logger.debug("  Fingerprint: {} ms, {} frames, {}x{}, poster: {}", fingerprint.durationMillis(),
+                fingerprint.frameCount(), fingerprint.width(), fingerprint.height(), fingerprint.hasPosterHash());
     }
 
-    private void extractQuickTimeMetadata(ExifData exifData) throws IOException {
+    /**
+     * Reads the creation date of an AVI, Matroska or ASF file from its
+     * header. These formats carry no device tags Tika would find, so Tika is
+     * only tried if the file is not of the format its extension says.
+     */
+    private void extractHeaderMetadata(ExifData exifData, HeaderDateReader reader, ProgressTracker errorTracker) {
         File file = exifData.getFile();
         try {
-            Metadata drewMetadata = ImageMetadataReader.readMetadata(file);
-            QuickTimeDirectory directory = drewMetadata.getFirstDirectoryOfType(QuickTimeDirectory.class);
-
-            if (directory != null) {
-                exifData.setDateTaken(directory.getDate(QuickTimeDirectory.TAG_CREATION_TIME));
-
-                // Extract device information (Make and Model)
-                for (Tag tag : directory.getTags()) {
-                    String tagName = tag.getTagName();
-                    if ("Make".equalsIgnoreCase(tagName) && exifData.getDeviceName() == null) {
-                        String make = tag.getDescription();
-                        if (make != null && !make.trim().isEmpty()) {
-                            exifData.setDeviceName(make.trim());
-                        }
-                    } else if ("Model".equalsIgnoreCase(tagName) && exifData.getDeviceModel() == null) {
-                        String model = tag.getDescription();
-                        if (model != null && !model.trim().isEmpty()) {
-                            exifData.setDeviceModel(model.trim());
-                        }
-                    }
-                }
-            }
+            exifData.setDateTaken(reader.readCreationDate(file));
+        } catch (IOException e) {
+            logger.debug("Header not readable for: {} ({}), will try Tika", file.getName(), e.getMessage());
+            errorTracker.saveProgress("extractHeaderMetadata file: " + file);
+            extractTikaMetadata(exifData, errorTracker);
+            return;
+        }
 
-            if (exifData.getDateTaken() == null) {
-                qtErrorTracker.saveProgress("No Date extractQuickTimeMetadata file: " + file);
-            }
-        } catch (ImageProcessingException e) {
-            // Expected for many MOV files - fallback methods will be used
-            logger.debug("QuickTime metadata not available for: {} (will try fallback methods)", file.getName());
-            qtErrorTracker.saveProgress("extractQuickTimeMetadata file: " + file);
+        if (exifData.getDateTaken() == null) {
+            errorTracker.saveProgress("No Date extractHeaderMetadata file: " + file);
         }
     }
 
-    private void extractMp4Metadata(ExifData exifData) {
+    private static Map<String, HeaderDateReader> headerDateReaders() {
+        Map<String, HeaderDateReader> readers = new HashMap<>();
+        RiffParser.EXTENSIONS.forEach(extension -> readers.put(extension, RiffParser::readCreationDate));
+        EbmlParser.EXTENSIONS.forEach(extension -> readers.put(extension, EbmlParser::readCreationDate));
+        AsfParser.EXTENSIONS.forEach(extension -> readers.put(extension, AsfParser::readCreationDate));
+        return Collections.unmodifiableMap(readers);
+    }
+
+    /**
+     * Reads the creation date and device of a file with one metadata-only
+     * Tika parse of at most tikaMaxReadBytes. A parse cut short by the limit
+     * or a damaged file keeps the metadata read up to that point.
+     */
+    void extractTikaMetadata(ExifData exifData, ProgressTracker errorTracker) {
         File file = exifData.getFile();
-        try (InputStream input = new FileInputStream(file)) {
-            Metadata drewMetadata = ImageMetadataReader.readMetadata(file);
-
-            for (Directory directory : drewMetadata.getDirectories()) {
-                if ("MP4".equals(directory.getName())) {
-                    for (Tag tag : directory.getTags()) {
-                        String tagName = tag.getTagName();
-                        if ("Creation Time".equals(tagName)) {
-                            DateTimeFormatter formatter = DateTimeFormatter
-                                    .ofPattern("EEE MMM dd HH:mm:ss zzz yyyy", Locale.ENGLISH);
-                            ZonedDateTime dateTime = ZonedDateTime.parse(tag.getDescription(), formatter);
-                            exifData.setDateTaken(Date.from(dateTime.toInstant()));
-                        } else if ("Make".equalsIgnoreCase(tagName) && exifData.getDeviceName() == null) {
-                            String make = tag.getDescription();
-                            if (make != null && !make.trim().isEmpty()) {
-                                exifData.setDeviceName(make.trim());
-                            }
-                        } else if ("Model".equalsIgnoreCase(tagName) && exifData.getDeviceModel() == null) {
-                            String model = tag.getDescription();
-                            if (model != null && !model.trim().isEmpty()) {
-                                exifData.setDeviceModel(model.trim());
-                            }
-                        }
-                    }
-                }
-                if (exifData.getDateTaken() != null) {
-                    break;
-                }
-            }
+        org.apache.tika.metadata.Metadata metadata = new org.apache.tika.metadata.Metadata();
+        boolean failed = false;
+        // The bounded stream reports the end of the file after the limit, so Tika
+        // reads no further into a file than the headers it needs
+        try (InputStream input = TikaInputStream.get(
+                new BoundedInputStream(Files.newInputStream(file.toPath()), tikaMaxReadBytes))) {
+            // The parse context is mutable and per call; the parser and handler are shared
+            tikaParser.parse(input, DISCARD_CONTENT, metadata, new ParseContext());
+        } catch (IOException | TikaException | SAXException e) {
+            logger.debug("Tika parse incomplete for {}: {}", file.getName(), e.getMessage());
+            failed = true;
+        }
 
-            // Also try extracting from Tika metadata as fallback
-            if (exifData.getDeviceName() == null || exifData.getDeviceModel() == null) {
+        setDevice(exifData, "Make", metadata.get("Make"));
+        setDevice(exifData, "Model", metadata.get("Model"));
+        for (String key : POSSIBLE_CREATION_DATE_KEYS) {
+            String creationDate = metadata.get(key);
+            if (creationDate != null) {
                 try {
-                    BodyContentHandler handler = new BodyContentHandler();
-                    org.apache.tika.metadata.Metadata tikaMetadata = new org.apache.tika.metadata.Metadata();
-                    AutoDetectParser parser = new AutoDetectParser();
-                    ParseContext parseContext = new ParseContext();
-
-                    try (InputStream tikaInput = new FileInputStream(file)) {
-                        parser.parse(tikaInput, handler, tikaMetadata, parseContext);
-
-                        if (exifData.getDeviceName() == null) {
-                            String make = tikaMetadata.get("Make");
-                            if (make != null && !make.trim().isEmpty()) {
-                                exifData.setDeviceName(make.trim());
-                            }
-                        }
-
-                        if (exifData.getDeviceModel() == null) {
-                            String model = tikaMetadata.get("Model");
-                            if (model != null && !model.trim().isEmpty()) {
-                                exifData.setDeviceModel(model.trim());
-                            }
-                        }
-                    }
-                } catch (Exception e) {
-                    logger.debug("Could not extract device info from Tika for: {}", file.getName());
+                    SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+                    exifData.setDateTaken(sdf.parse(creationDate));
+                } catch (ParseException e) {
+                    logger.debug("Unparseable creation date '{}' in {}", creationDate, file.getName());
                 }
+                break;
             }
+        }
 
-            if (exifData.getDateTaken() == null) {
-                mp4ErrorTracker.saveProgress("No Date extractMp4Metadata file: " + file);
-            }
-        } catch (IOException | ImageProcessingException e) {
-            // Expected for many video files - fallback methods will be used
-            logger.debug("MP4 metadata not available for: {} (will try fallback methods)", file.getName());
-            mp4ErrorTracker.saveProgress("extractMp4Metadata file: " + file);
+        if (exifData.getDateTaken() == null && failed) {
+            logger.error("Failed to extract video metadata for file: {}", file.getAbsolutePath());
+            errorTracker.saveProgress("extractTikaMetadata file: " + file);
+        } else if (exifData.getDateTaken() == null) {
+            errorTracker.saveProgress("No Date extractTikaMetadata file: " + file);
         }
     }
 
-    private void extract3gpMetadata(ExifData exifData) {
-        File file = exifData.getFile();
-        try (InputStream input = new FileInputStream(file)) {
-            BodyContentHandler handler = new BodyContentHandler();
-            org.apache.tika.metadata.Metadata tikaMetadata = new org.apache.tika.metadata.Metadata();
-            MP4Parser parser = new MP4Parser();
-            ParseContext parseCtx = new ParseContext();
-            parser.parse(input, handler, tikaMetadata, parseCtx);
-
-            for (String key : POSSIBLE_CREATION_DATE_KEYS) {
-                String creationDate = tikaMetadata.get(key);
-                if (creationDate != null) {
-                    SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
-                    exifData.setDateTaken(sdf.parse(creationDate));
-                    break;
-                }
-            }
-
-            if (exifData.getDateTaken() == null) {
-                tgpErrorTracker.saveProgress("No Date extract3gpMetadata file: " + file);
-            }
-        } catch (IOException | SAXException | TikaException | ParseException e) {
-            logger.error("Failed to extract 3GP metadata for file: {}", file.getAbsolutePath(), e);
-            tgpErrorTracker.saveProgress("extract3gpMetadata file: " + file);
+    /**
+     * Sets the device name or model from a Make or Model value, keeping the first one found
+     */
+    private void setDevice(ExifData exifData, String name, String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return;
+        }
+        if ("Make".equalsIgnoreCase(name) && exifData.getDeviceName() == null) {
+            exifData.setDeviceName(value.trim());
+        } else if ("Model".equalsIgnoreCase(name) && exifData.getDeviceModel() == null) {
+            exifData.setDeviceModel(value.trim());
         }
     }
-}
\ No newline at end of file
+}
@@ -1,8 +1,11 @@
 package com.media.sort.service;
 
 import com.media.sort.model.ExifData;
+import com.media.sort.service.video.VideoFingerprint;
+import com.media.sort.service.video.VideoFingerprintIndex;
 import com.media.sort.util.DuplicatePatternUtils;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.text.SimpleDateFormat;
@@ -21,11 +24,53 @@ import java.util.Date;
  * 2. File size (larger is usually better for same codec)
  * 3. Resolution (higher is better)
  * 4. Copy pattern (tiebreaker)
+ *
+ * It also decides whether two videos with different bytes are the same clip
+ * (an original and its re-encoded copy) from their VideoFingerprints. For
+ * such a pair the durations agree, so the larger file has the higher bitrate.
  */
 @Slf4j
 @Service
 public class VideoQualityComparator {
 
+    @Autowired(required = false)
+    private VideoFingerprintService videoFingerprintService;
+
+    /**
+     * Whether two videos are the same clip, e.g. an original and a
+     * recompressed copy sent through a messenger
+     */
+    public boolean isSameClip(ExifData video1, ExifData video2) {
+        VideoFingerprint fingerprint1 = video1.getVideoFingerprint();
+        VideoFingerprint fingerprint2 = video2.getVideoFingerprint();
+        return fingerprint1 != null && fingerprint2 != null && fingerprint1.matches(fingerprint2, posterThreshold());
+    }
+
+    /**
+     * Finds an indexed video that is the same clip as a video
+     *
+     * @param index The fingerprints of the original videos
+     * @param video The video to check
+     * @return The indexed video with the closest duration whose file still
+     *         exists, or null if there is none
+     */
+    public ExifData findSameClip(VideoFingerprintIndex<ExifData> index, ExifData video) {
+        VideoFingerprint fingerprint = video.getVideoFingerprint();
+        if (fingerprint == null) {
+            return null;
+        }
+        for (ExifData candidate : index.findMatches(fingerprint, posterThreshold())) {
+            if (candidate != video && candidate.getFile().exists()) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private int posterThreshold() {
+        return videoFingerprintService != null ? videoFingerprintService.getPosterThreshold() : 12;
+    }
+
     /**
      * Compare two video files and determine which is better quality
      * 
@@ -71,6 +116,9 @@ public class VideoQualityComparator {
         // Start comparison logging
         log.info("[VIDEO-QUALITY] ========================================================================");
         log.info("[VIDEO-QUALITY] Comparing: {}  vs  {}", file1Path, file2Path);
+        if (isSameClip(video1, video2)) {
+            log.info("[VIDEO-QUALITY] Same clip by container fingerprint (re-encoded copy)");
+        }
         log.info("[VIDEO-QUALITY] ------------------------------------------------------------------------");
 
         boolean result;
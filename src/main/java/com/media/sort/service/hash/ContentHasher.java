@@ -0,0 +1,79 @@
+package com.media.sort.service.hash;
+
+import com.media.sort.util.FileHashUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Algorithm used to fingerprint file content for exact duplicate detection.
+ * Selected with media.hashing.algorithm; SHA-256 is the default and the
+ * reference used to confirm matches found by faster, non-cryptographic
+ * algorithms.
+ */
+public interface ContentHasher {
+
+    /**
+     * Configuration name of the algorithm (e.g. SHA256, XXH64)
+     */
+    String getAlgorithm();
+
+    /**
+     * True for algorithms whose collisions can be ignored for deduplication
+     */
+    boolean isCryptographic();
+
+    /**
+     * Starts hashing a new piece of content
+     */
+    Session newSession();
+
+    /**
+     * Hashes a whole file
+     *
+     * @param file The file to hash
+     * @return The raw digest bytes
+     */
+    default byte[] hash(Path file) throws IOException {
+        Session session = newSession();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            FileHashUtils.read(channel, 0, channel.size(), session::update);
+        }
+        return session.digest();
+    }
+
+    /**
+     * Returns the hasher for a configured algorithm name
+     *
+     * @param algorithm SHA256 or XXH64 (case-insensitive, dashes ignored)
+     * @throws IllegalArgumentException If the algorithm is not supported
+     */
+    static ContentHasher forAlgorithm(String algorithm) {
+        String name = algorithm == null ? "" : algorithm.replace("-", "").toUpperCase(Locale.ROOT);
+        return switch (name) {
+            case "", Sha256ContentHasher.ALGORITHM -> Sha256ContentHasher.INSTANCE;
+            case XxHash64ContentHasher.ALGORITHM -> XxHash64ContentHasher.INSTANCE;
+            default -> throw new IllegalArgumentException("Unsupported content hash algorithm: " + algorithm);
+        };
+    }
+
+    /**
+     * Incremental hash computation over one piece of content
+     */
+    interface Session {
+
+        /**
+         * Consumes the remaining bytes of the buffer
+         */
+        void update(ByteBuffer buffer);
+
+        /**
+         * Completes the computation and returns the digest bytes
+         */
+        byte[] digest();
+    }
+}
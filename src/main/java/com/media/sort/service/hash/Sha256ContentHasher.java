@@ -0,0 +1,46 @@
+package com.media.sort.service.hash;
+
+import com.media.sort.util.FileHashUtils;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+/**
+ * SHA-256 content hasher backed by the per-thread digest in FileHashUtils.
+ * Only one session per thread may be open at a time.
+ */
+public final class Sha256ContentHasher implements ContentHasher {
+
+    public static final String ALGORITHM = "SHA256";
+
+    static final Sha256ContentHasher INSTANCE = new Sha256ContentHasher();
+
+    private Sha256ContentHasher() {
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return ALGORITHM;
+    }
+
+    @Override
+    public boolean isCryptographic() {
+        return true;
+    }
+
+    @Override
+    public Session newSession() {
+        MessageDigest digest = FileHashUtils.sha256Digest();
+        return new Session() {
+            @Override
+            public void update(ByteBuffer buffer) {
+                digest.update(buffer);
+            }
+
+            @Override
+            public byte[] digest() {
+                return digest.digest();
+            }
+        };
+    }
+}
@@ -0,0 +1,136 @@
+package com.media.sort.service.hash;
+
+import com.media.sort.util.FileHashUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Two-level Merkle-style hash for very large files.
+ *
+ * The file is split into fixed-size segments that are hashed in parallel on
+ * the given executor; the root digest is the hash of the file size followed
+ * by every segment digest in order. Equal content always gives an equal root,
+ * but the root differs from a plain hash of the file, so both must never be
+ * mixed for the same file size.
+ *
+ * Segment digests are returned alongside the root so they can be stored and
+ * used later to locate corrupted regions without a known-good copy.
+ */
+public final class TreeHasher {
+
+    private final ContentHasher hasher;
+    private final long segmentSize;
+    private final ExecutorService executor;
+
+    /**
+     * Root digest and the digest of each segment in file order
+     */
+    public record Result(byte[] root, List<byte[]> segments) {
+    }
+
+    public TreeHasher(ContentHasher hasher, long segmentSize, ExecutorService executor) {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("Segment size must be positive: " + segmentSize);
+        }
+        this.hasher = hasher;
+        this.segmentSize = segmentSize;
+        this.executor = executor;
+    }
+
+    /**
+     * Hashes every segment of a file in parallel and combines the digests
+     *
+     * @param file The file to hash
+     * @return The root digest and the segment digests
+     */
+    public Result hash(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<byte[]> segments = hashSegments(channel, size);
+            return new Result(combine(size, segments), segments);
+        }
+    }
+
+    /**
+     * Re-hashes a file segment by segment and compares against stored digests
+     *
+     * @param file     The file to check
+     * @param expected Segment digests recorded when the file was hashed
+     * @return Indexes of segments whose content no longer matches, including
+     *         segments added or removed by a size change
+     */
+    public List<Integer> verify(Path file, List<byte[]> expected) throws IOException {
+        List<byte[]> actual;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            actual = hashSegments(channel, channel.size());
+        }
+        List<Integer> mismatches = new ArrayList<>();
+        for (int i = 0; i < Math.max(actual.size(), expected.size()); i++) {
+            if (i >= actual.size() || i >= expected.size()
+                    || !Arrays.equals(actual.get(i), expected.get(i))) {
+                mismatches.add(i);
+            }
+        }
+        return mismatches;
+    }
+
+    /**
+     * Root digest over the file size and the segment digests
+     */
+    public byte[] combine(long size, List<byte[]> segments) {
+        ContentHasher.Session session = hasher.newSession();
+        session.update(ByteBuffer.allocate(Long.BYTES).putLong(0, size));
+        for (byte[] segment : segments) {
+            session.update(ByteBuffer.wrap(segment));
+        }
+        return session.digest();
+    }
+
+    /**
+     * Number of segments a file of the given size is split into
+     */
+    public int segmentCount(long size) {
+        return (int) Math.max(1, (size + segmentSize - 1) / segmentSize);
+    }
+
+    private List<byte[]> hashSegments(FileChannel channel, long size) throws IOException {
+        // Positional reads on a shared FileChannel are safe from several threads
+        List<Future<byte[]>> futures = new ArrayList<>();
+        for (int i = 0; i < segmentCount(size); i++) {
+            long position = i * segmentSize;
+            long length = Math.min(segmentSize, size - position);
+            futures.add(executor.submit(() -> hashSegment(channel, position, length)));
+        }
+
+        List<byte[]> segments = new ArrayList<>(futures.size());
+        try {
+            for (Future<byte[]> future : futures) {
+                segments.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while hashing segments", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw new IOException("Failed to hash segment", e.getCause());
+        }
+        return segments;
+    }
+
+    private byte[] hashSegment(FileChannel channel, long position, long length) throws IOException {
+        ContentHasher.Session session = hasher.newSession();
+        FileHashUtils.read(channel, position, length, session::update);
+        return session.digest();
+    }
+}
@@ -0,0 +1,138 @@
+package com.media.sort.service.hash;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Pure-Java xxHash64 (seed 0) content hasher.
+ * Several times faster than SHA-256 per core but not collision resistant, so
+ * matches should be confirmed with SHA-256 before files are moved
+ * (media.hashing.confirm-with-sha256).
+ */
+public final class XxHash64ContentHasher implements ContentHasher {
+
+    public static final String ALGORITHM = "XXH64";
+
+    static final XxHash64ContentHasher INSTANCE = new XxHash64ContentHasher();
+
+    private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME64_3 = 0x165667B19E3779F9L;
+    private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+
+    private static final int STRIPE_SIZE = 32;
+
+    private XxHash64ContentHasher() {
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return ALGORITHM;
+    }
+
+    @Override
+    public boolean isCryptographic() {
+        return false;
+    }
+
+    @Override
+    public Session newSession() {
+        return new XxHash64Session();
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME64_2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME64_1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * PRIME64_1 + PRIME64_4;
+    }
+
+    /**
+     * Streaming state; buffers a partial 32-byte stripe between updates
+     */
+    private static final class XxHash64Session implements Session {
+
+        private long v1 = PRIME64_1 + PRIME64_2;
+        private long v2 = PRIME64_2;
+        private long v3 = 0;
+        private long v4 = -PRIME64_1;
+        private long totalLength;
+
+        private final ByteBuffer pending = ByteBuffer.allocate(STRIPE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            ByteBuffer input = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+            buffer.position(buffer.limit());
+            totalLength += input.remaining();
+
+            // Complete a stripe left over from the previous update
+            if (pending.position() > 0) {
+                while (pending.hasRemaining() && input.hasRemaining()) {
+                    pending.put(input.get());
+                }
+                if (pending.hasRemaining()) {
+                    return;
+                }
+                pending.flip();
+                processStripe(pending);
+                pending.clear();
+            }
+
+            while (input.remaining() >= STRIPE_SIZE) {
+                processStripe(input);
+            }
+            pending.put(input);
+        }
+
+        private void processStripe(ByteBuffer input) {
+            v1 = round(v1, input.getLong());
+            v2 = round(v2, input.getLong());
+            v3 = round(v3, input.getLong());
+            v4 = round(v4, input.getLong());
+        }
+
+        @Override
+        public byte[] digest() {
+            long hash;
+            if (totalLength >= STRIPE_SIZE) {
+                hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7)
+                        + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+                hash = mergeRound(hash, v1);
+                hash = mergeRound(hash, v2);
+                hash = mergeRound(hash, v3);
+                hash = mergeRound(hash, v4);
+            } else {
+                hash = PRIME64_5;
+            }
+            hash += totalLength;
+
+            pending.flip();
+            while (pending.remaining() >= 8) {
+                hash ^= round(0, pending.getLong());
+                hash = Long.rotateLeft(hash, 27) * PRIME64_1 + PRIME64_4;
+            }
+            if (pending.remaining() >= 4) {
+                hash ^= (pending.getInt() & 0xFFFFFFFFL) * PRIME64_1;
+                hash = Long.rotateLeft(hash, 23) * PRIME64_2 + PRIME64_3;
+            }
+            while (pending.hasRemaining()) {
+                hash ^= (pending.get() & 0xFFL) * PRIME64_5;
+                hash = Long.rotateLeft(hash, 11) * PRIME64_1;
+            }
+
+            hash ^= hash >>> 33;
+            hash *= PRIME64_2;
+            hash ^= hash >>> 29;
+            hash *= PRIME64_3;
+            hash ^= hash >>> 32;
+
+            return ByteBuffer.allocate(Long.BYTES).putLong(hash).array();
+        }
+    }
+}
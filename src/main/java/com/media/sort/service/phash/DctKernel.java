@@ -0,0 +1,97 @@
+package com.media.sort.service.phash;
+
+/**
+ * Separable, table-driven 2D DCT-II that computes only the low-frequency
+ * block used by the perceptual hash.
+ *
+ * Produces the same coefficients as the direct formula previously used by
+ * PerceptualHashService.applyDCT,
+ * 0.25 * c(u) * c(v) * sum(input[i][j] * cos((2i+1)u pi / 2N) * cos((2j+1)v pi / 2N)),
+ * up to floating-point rounding. The cosines are precomputed once and the
+ * transform runs as a row pass (N x N x K) followed by a column pass
+ * (K x N x K) instead of N^4 multiply-adds with two Math.cos calls each.
+ *
+ * Instances hold scratch space and are not thread-safe; use one per thread.
+ */
+public final class DctKernel {
+
+    private final int size;
+    private final int blockSize;
+
+    /**
+     * cos((2i+1) u pi / 2N) for u < blockSize, row-major [u][i]
+     */
+    private final double[] cosines;
+
+    /**
+     * Row pass output, row-major [i][v]
+     */
+    private final double[] rowPass;
+
+    /**
+     * @param size      Width and height N of the square input
+     * @param blockSize Width and height K of the low-frequency block to compute
+     */
+    public DctKernel(int size, int blockSize) {
+        if (size <= 0 || blockSize <= 0 || blockSize > size) {
+            throw new IllegalArgumentException("Invalid DCT size " + size + " / block " + blockSize);
+        }
+        this.size = size;
+        this.blockSize = blockSize;
+        this.cosines = new double[blockSize * size];
+        this.rowPass = new double[size * blockSize];
+
+        for (int u = 0; u < blockSize; u++) {
+            for (int i = 0; i < size; i++) {
+                // Same expression as the direct formula so the table values match exactly
+                cosines[u * size + i] = Math.cos(((2 * i + 1) / (2.0 * size)) * u * Math.PI);
+            }
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Computes the K x K low-frequency DCT coefficients of an N x N input
+     *
+     * @param input  N x N values, row-major
+     * @param output Receives K x K coefficients, row-major [u][v]
+     */
+    public void transform(double[] input, double[] output) {
+        final int n = size;
+        final int k = blockSize;
+
+        // Row pass: rowPass[i][v] = sum_j input[i][j] * cos(j, v)
+        for (int i = 0; i < n; i++) {
+            int inputRow = i * n;
+            for (int v = 0; v < k; v++) {
+                int cosRow = v * n;
+                double sum = 0.0;
+                for (int j = 0; j < n; j++) {
+                    sum += input[inputRow + j] * cosines[cosRow + j];
+                }
+                rowPass[i * k + v] = sum;
+            }
+        }
+
+        // Column pass: output[u][v] = sum_i cos(i, u) * rowPass[i][v]
+        for (int u = 0; u < k; u++) {
+            int cosRow = u * n;
+            double cu = (u == 0) ? 1 / Math.sqrt(2.0) : 1.0;
+            for (int v = 0; v < k; v++) {
+                double sum = 0.0;
+                for (int i = 0; i < n; i++) {
+                    sum += cosines[cosRow + i] * rowPass[i * k + v];
+                }
+                double cv = (v == 0) ? 1 / Math.sqrt(2.0) : 1.0;
+                output[u * k + v] = 0.25 * cu * cv * sum;
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.media.sort.service.phash;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Locates the JPEG thumbnail that cameras embed in the EXIF IFD1 of a JPEG
+ * file, by walking the markers up to the APP1 segment and following the
+ * TIFF structure to JPEGInterchangeFormat / JPEGInterchangeFormatLength.
+ *
+ * Only the start of the file is needed: APP1 is limited to 64 KB and comes
+ * before the image data.
+ */
+public final class ExifThumbnail {
+
+    /**
+     * Bytes from the start of the file that can contain APP0, APP1 and the thumbnail
+     */
+    public static final int HEAD_SIZE = 128 * 1024;
+
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_EOI = 0xD9;
+    private static final int MARKER_APP1 = 0xE1;
+
+    private static final int TAG_COMPRESSION = 0x0103;
+    private static final int TAG_THUMBNAIL_OFFSET = 0x0201;
+    private static final int TAG_THUMBNAIL_LENGTH = 0x0202;
+    private static final int COMPRESSION_JPEG = 6;
+
+    private ExifThumbnail() {
+    }
+
+    /**
+     * Position of the thumbnail in the file
+     *
+     * @param offset Byte offset from the start of the file
+     * @param length Length of the embedded JPEG stream
+     */
+    public record Location(int offset, int length) {
+    }
+
+    /**
+     * Finds the IFD1 thumbnail in the first bytes of a JPEG file
+     *
+     * @param head The start of the file, positioned at offset 0
+     * @return The thumbnail's location if it lies within head, otherwise null
+     */
+    public static Location locate(ByteBuffer head) {
+        ByteBuffer buffer = head.duplicate().order(ByteOrder.BIG_ENDIAN);
+        int limit = buffer.limit();
+        if (limit < 4 || (buffer.get(0) & 0xFF) != 0xFF || (buffer.get(1) & 0xFF) != 0xD8) {
+            return null;
+        }
+
+        int position = 2;
+        while (position + 4 <= limit) {
+            if ((buffer.get(position) & 0xFF) != 0xFF) {
+                return null; // Not at a marker, corrupt header
+            }
+            int marker = buffer.get(position + 1) & 0xFF;
+            if (marker == 0xFF) {
+                position++; // Fill byte
+                continue;
+            }
+            if (marker == MARKER_SOS || marker == MARKER_EOI) {
+                return null; // Image data reached without an EXIF segment
+            }
+            int segmentLength = buffer.getShort(position + 2) & 0xFFFF;
+            int dataStart = position + 4;
+            if (marker == MARKER_APP1 && isExifHeader(buffer, dataStart, limit)) {
+                // TIFF offsets are relative to the byte order mark after "Exif\0\0"
+                return locateInTiff(buffer, dataStart + 6, Math.min(limit, position + 2 + segmentLength));
+            }
+            position += 2 + segmentLength;
+        }
+        return null;
+    }
+
+    private static boolean isExifHeader(ByteBuffer buffer, int start, int limit) {
+        return start + 6 <= limit
+                && buffer.get(start) == 'E' && buffer.get(start + 1) == 'x'
+                && buffer.get(start + 2) == 'i' && buffer.get(start + 3) == 'f'
+                && buffer.get(start + 4) == 0 && buffer.get(start + 5) == 0;
+    }
+
+    private static Location locateInTiff(ByteBuffer buffer, int tiffStart, int segmentEnd) {
+        if (tiffStart + 8 > segmentEnd) {
+            return null;
+        }
+        ByteBuffer tiff = buffer.duplicate();
+        int byteOrder = tiff.getShort(tiffStart) & 0xFFFF;
+        if (byteOrder == 0x4949) {
+            tiff.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (byteOrder != 0x4D4D) {
+            return null;
+        }
+        if ((tiff.getShort(tiffStart + 2) & 0xFFFF) != 42) {
+            return null;
+        }
+
+        // IFD0 only matters for the offset of IFD1 that follows its entries
+        long ifd0 = tiff.getInt(tiffStart + 4) & 0xFFFFFFFFL;
+        long ifd0Entries = tiffStart + ifd0;
+        if (ifd0 < 8 || ifd0Entries + 2 > segmentEnd) {
+            return null;
+        }
+        int ifd0Count = tiff.getShort((int) ifd0Entries) & 0xFFFF;
+        long nextPointer = ifd0Entries + 2 + 12L * ifd0Count;
+        if (nextPointer + 4 > segmentEnd) {
+            return null;
+        }
+        long ifd1 = tiff.getInt((int) nextPointer) & 0xFFFFFFFFL;
+        long ifd1Entries = tiffStart + ifd1;
+        if (ifd1 < 8 || ifd1Entries + 2 > segmentEnd) {
+            return null;
+        }
+
+        int count = tiff.getShort((int) ifd1Entries) & 0xFFFF;
+        long offset = -1;
+        long length = -1;
+        for (int i = 0; i < count; i++) {
+            long entry = ifd1Entries + 2 + 12L * i;
+            if (entry + 12 > segmentEnd) {
+                return null;
+            }
+            int tag = tiff.getShort((int) entry) & 0xFFFF;
+            int type = tiff.getShort((int) entry + 2) & 0xFFFF;
+            long value = type == 3
+                    ? tiff.getShort((int) entry + 8) & 0xFFFF // SHORT
+                    : tiff.getInt((int) entry + 8) & 0xFFFFFFFFL; // LONG
+            if (tag == TAG_COMPRESSION && value != COMPRESSION_JPEG) {
+                return null; // Uncompressed (TIFF strip) thumbnail
+            } else if (tag == TAG_THUMBNAIL_OFFSET) {
+                offset = value;
+            } else if (tag == TAG_THUMBNAIL_LENGTH) {
+                length = value;
+            }
+        }
+
+        if (offset <= 0 || length <= 0 || tiffStart + offset + length > segmentEnd) {
+            return null;
+        }
+        int start = (int) (tiffStart + offset);
+        if ((tiff.get(start) & 0xFF) != 0xFF || (tiff.get(start + 1) & 0xFF) != 0xD8) {
+            return null; // Does not point at a JPEG stream
+        }
+        return new Location(start, (int) length);
+    }
+}
@@ -0,0 +1,302 @@
+package com.media.sort.service.phash;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.Arrays;
+
+/**
+ * Shrinks an image straight to a small luminance array for the perceptual
+ * hashes (N x N for pHash and aHash, 9 x 8 for dHash), in one pass over the
+ * source pixels.
+ *
+ * Uses the same area averaging as Image.SCALE_SMOOTH (every source pixel
+ * contributes in proportion to how much of each target cell it covers) but in
+ * integer arithmetic: luminance is kept in thousandths (299 R + 587 G + 114 B)
+ * and coverage is measured on a grid of sourceWidth x targetWidth units, so
+ * all weights are exact integers. The common BufferedImage layouts are read
+ * directly from their DataBuffer; other images go through getRGB one row at a
+ * time. Transparent pixels are blended over black, as drawing onto a fresh
+ * TYPE_INT_RGB image did.
+ *
+ * Instances hold scratch space and are not thread-safe; use one per thread.
+ */
+public final class GrayscaleDownscaler {
+
+    /**
+     * Sum of the luminance weights, the scale of a per-pixel luminance value
+     */
+    private static final int LUMA_SCALE = 1000;
+
+    private final int columns;
+    private final int rows;
+
+    /**
+     * Weighted luminance per target cell, row-major
+     */
+    private final long[] cells;
+
+    /**
+     * Weighted luminance per target column for the current source row
+     */
+    private final long[] rowCells;
+
+    /**
+     * Luminance of the current source row
+     */
+    private int[] rowLuma = new int[0];
+
+    /**
+     * ARGB pixels of the current source row, for the getRGB path
+     */
+    private int[] rowArgb = new int[0];
+
+    /**
+     * Per source column when shrinking: the first target column it covers and
+     * its coverage of that column; the rest of its columns units go to the next one
+     */
+    private int[] columnCells = new int[0];
+    private int[] columnWeights = new int[0];
+    private int columnsWidth = -1;
+
+    /**
+     * @param size Width and height N of the output
+     */
+    public GrayscaleDownscaler(int size) {
+        this(size, size);
+    }
+
+    /**
+     * @param columns Width of the output
+     * @param rows    Height of the output
+     */
+    public GrayscaleDownscaler(int columns, int rows) {
+        if (columns <= 0 || rows <= 0) {
+            throw new IllegalArgumentException("Invalid output size " + columns + " x " + rows);
+        }
+        this.columns = columns;
+        this.rows = rows;
+        this.cells = new long[columns * rows];
+        this.rowCells = new long[columns];
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Area-averages an image down (or up) to columns x rows luminance values in 0..255
+     *
+     * @param image  Source image
+     * @param output Receives columns x rows values, row-major
+     */
+    public void downscale(BufferedImage image, double[] output) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (rowLuma.length < width) {
+            rowLuma = new int[width];
+        }
+        Arrays.fill(cells, 0L);
+
+        RowReader reader = rowReaderFor(image);
+        for (int y = 0; y < height; y++) {
+            reader.read(y, width, rowLuma);
+            accumulateRow(rowLuma, width);
+            distributeRow(y, height);
+        }
+
+        // Every cell is covered by exactly width x height units of source area
+        double scale = (double) LUMA_SCALE * width * height;
+        for (int i = 0; i < cells.length; i++) {
+            output[i] = cells[i] / scale;
+        }
+    }
+
+    /**
+     * Spreads one row of luminance across the target columns
+     */
+    private void accumulateRow(int[] luma, int width) {
+        Arrays.fill(rowCells, 0L);
+        if (width >= columns) {
+            // Each source column covers at most two target columns
+            prepareColumns(width);
+            for (int x = 0; x < width; x++) {
+                int cell = columnCells[x];
+                int weight = columnWeights[x];
+                rowCells[cell] += (long) luma[x] * weight;
+                if (weight < columns) {
+                    rowCells[cell + 1] += (long) luma[x] * (columns - weight);
+                }
+            }
+            return;
+        }
+
+        // Source column x spans [x * columns, (x + 1) * columns), target column tx spans [tx * width, (tx + 1) * width)
+        for (int x = 0; x < width; x++) {
+            long start = (long) x * columns;
+            long end = start + columns;
+            int tx = (int) (start / width);
+            long cellStart = (long) tx * width;
+            while (cellStart < end) {
+                long cellEnd = cellStart + width;
+                long overlap = Math.min(end, cellEnd) - Math.max(start, cellStart);
+                rowCells[tx] += luma[x] * overlap;
+                tx++;
+                cellStart = cellEnd;
+            }
+        }
+    }
+
+    private void prepareColumns(int width) {
+        if (columnsWidth == width) {
+            return;
+        }
+        if (columnCells.length < width) {
+            columnCells = new int[width];
+            columnWeights = new int[width];
+        }
+        for (int x = 0; x < width; x++) {
+            long start = (long) x * columns;
+            int cell = (int) (start / width);
+            long cellEnd = (long) (cell + 1) * width;
+            columnCells[x] = cell;
+            columnWeights[x] = (int) Math.min(columns, cellEnd - start);
+        }
+        columnsWidth = width;
+    }
+
+    /**
+     * Adds the current row's column sums to the target rows it overlaps
+     */
+    private void distributeRow(int y, int height) {
+        long start = (long) y * rows;
+        long end = start + rows;
+        int ty = (int) (start / height);
+        long cellStart = (long) ty * height;
+        while (cellStart < end) {
+            long cellEnd = cellStart + height;
+            long overlap = Math.min(end, cellEnd) - Math.max(start, cellStart);
+            int offset = ty * columns;
+            for (int tx = 0; tx < columns; tx++) {
+                cells[offset + tx] += rowCells[tx] * overlap;
+            }
+            ty++;
+            cellStart = cellEnd;
+        }
+    }
+
+    /**
+     * Luminance in thousandths, blended over black by alpha
+     */
+    private static int luma(int r, int g, int b, int alpha) {
+        int luma = 299 * r + 587 * g + 114 * b;
+        return alpha == 255 ? luma : luma * alpha / 255;
+    }
+
+    /**
+     * Reads the luminance of one source row
+     */
+    @FunctionalInterface
+    private interface RowReader {
+        void read(int y, int width, int[] luma);
+    }
+
+    private RowReader rowReaderFor(BufferedImage image) {
+        Raster raster = image.getRaster();
+        SampleModel sampleModel = raster.getSampleModel();
+        DataBuffer dataBuffer = raster.getDataBuffer();
+        int translateX = raster.getSampleModelTranslateX();
+        int translateY = raster.getSampleModelTranslateY();
+
+        switch (image.getType()) {
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR:
+                if (sampleModel instanceof ComponentSampleModel model && dataBuffer instanceof DataBufferByte bytes
+                        && dataBuffer.getNumBanks() == 1) {
+                    return byteInterleavedReader(model, bytes, translateX, translateY,
+                            image.getType() == BufferedImage.TYPE_4BYTE_ABGR);
+                }
+                break;
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_BGR:
+                if (sampleModel instanceof SinglePixelPackedSampleModel model && dataBuffer instanceof DataBufferInt ints) {
+                    return intPackedReader(model, ints, translateX, translateY, image.getType());
+                }
+                break;
+            default:
+                break;
+        }
+        return rgbReader(image);
+    }
+
+    private static RowReader byteInterleavedReader(ComponentSampleModel model, DataBufferByte buffer,
+                                                   int translateX, int translateY, boolean hasAlpha) {
+        byte[] data = buffer.getData();
+        int base = buffer.getOffset();
+        int pixelStride = model.getPixelStride();
+        int scanlineStride = model.getScanlineStride();
+        int[] bandOffsets = model.getBandOffsets();
+        int red = bandOffsets[0];
+        int green = bandOffsets[1];
+        int blue = bandOffsets[2];
+        int alpha = hasAlpha ? bandOffsets[3] : -1;
+
+        return (y, width, luma) -> {
+            // Start of the row's first pixel; band offsets are added per sample
+            int index = base + (y - translateY) * scanlineStride - translateX * pixelStride;
+            for (int x = 0; x < width; x++, index += pixelStride) {
+                luma[x] = luma(data[index + red] & 0xFF, data[index + green] & 0xFF, data[index + blue] & 0xFF,
+                        alpha < 0 ? 255 : data[index + alpha] & 0xFF);
+            }
+        };
+    }
+
+    private static RowReader intPackedReader(SinglePixelPackedSampleModel model, DataBufferInt buffer,
+                                             int translateX, int translateY, int type) {
+        int[] data = buffer.getData();
+        int base = buffer.getOffset();
+
+        return (y, width, luma) -> {
+            int index = base + model.getOffset(-translateX, y - translateY);
+            for (int x = 0; x < width; x++) {
+                int pixel = data[index + x];
+                int first = (pixel >> 16) & 0xFF;
+                int g = (pixel >> 8) & 0xFF;
+                int last = pixel & 0xFF;
+                if (type == BufferedImage.TYPE_INT_BGR) {
+                    luma[x] = luma(last, g, first, 255);
+                } else {
+                    luma[x] = luma(first, g, last, type == BufferedImage.TYPE_INT_ARGB ? pixel >>> 24 : 255);
+                }
+            }
+        };
+    }
+
+    /**
+     * Any other layout (grayscale, indexed, premultiplied, custom), converted to
+     * sRGB by the image's color model
+     */
+    private RowReader rgbReader(BufferedImage image) {
+        boolean hasAlpha = image.getColorModel().hasAlpha();
+        return (y, width, luma) -> {
+            if (rowArgb.length < width) {
+                rowArgb = new int[width];
+            }
+            image.getRGB(0, y, width, 1, rowArgb, 0, width);
+            for (int x = 0; x < width; x++) {
+                int argb = rowArgb[x];
+                luma[x] = luma((argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF, hasAlpha ? argb >>> 24 : 255);
+            }
+        };
+    }
+}
@@ -0,0 +1,327 @@
+package com.media.sort.service.phash;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hamming-space index of 64-bit perceptual hashes for near-duplicate lookup
+ * without comparing against every indexed image.
+ *
+ * Multi-index hashing: each hash is split into five chunks of 13 (the last
+ * 12) bits and filed under its chunk value in five tables. If two hashes
+ * differ in at most d bits, at least one chunk differs in at most d / 5 bits,
+ * so a query only probes the chunk values within that radius (92 per table
+ * for the default threshold of 12) and checks the full distance of the
+ * entries found there. Above a chunk radius of MAX_CHUNK_RADIUS probing would
+ * cost more than a scan, and the hash column is scanned directly instead.
+ *
+ * The hash column holds only live entries: a long[] of hashes next to an
+ * int[] of the slots they belong to, compacted on removal, so a scan is a
+ * Long.bitCount loop over contiguous memory that never touches the values.
+ *
+ * Five short chunks rather than four 16-bit ones: at the default threshold
+ * random bucket probes, not distance checks, dominate the lookup cost.
+ *
+ * Values are identified by reference so callers can keep the index in step
+ * with the duplicate map they maintain: put when an entry is added, remove
+ * when it is replaced or removed. Methods are synchronized; the tables are
+ * shared by the processor threads that query and the writer that updates.
+ */
+public final class PerceptualHashIndex<T> {
+
+    private static final int CHUNKS = 5;
+    private static final int CHUNK_BITS = 13;
+    private static final int CHUNK_VALUES = 1 << CHUNK_BITS;
+    private static final int MAX_CHUNK_RADIUS = 3;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int NONE = -1;
+
+    /**
+     * All 13-bit masks ordered by bit count, so the masks within radius r are
+     * the first MASKS_WITHIN[r]
+     */
+    private static final int[] MASKS;
+    private static final int[] MASKS_WITHIN = new int[MAX_CHUNK_RADIUS + 1];
+
+    static {
+        MASKS = new int[CHUNK_VALUES];
+        int count = 0;
+        for (int bits = 0; bits <= CHUNK_BITS; bits++) {
+            for (int mask = 0; mask < CHUNK_VALUES; mask++) {
+                if (Integer.bitCount(mask) == bits) {
+                    MASKS[count++] = mask;
+                }
+            }
+            if (bits <= MAX_CHUNK_RADIUS) {
+                MASKS_WITHIN[bits] = count;
+            }
+        }
+    }
+
+    /**
+     * Per table and chunk value, the hashes filed there and their slots.
+     * Hashes are stored in the bucket itself so probing reads contiguous memory.
+     */
+    private final long[][][] bucketHashes = new long[CHUNKS][][];
+    private final int[][][] bucketSlots = new int[CHUNKS][][];
+    private final int[][] bucketSizes = new int[CHUNKS][];
+
+    /**
+     * Columnar store of the live entries: hashes[i] belongs to slots ids[i],
+     * for i below the index size
+     */
+    private long[] hashes;
+    private int[] ids;
+
+    /**
+     * Columns indexed by slot; positions[slot] is the slot's entry in hashes
+     */
+    private int[] positions;
+    private long[] sequence;
+    private Object[] values;
+
+    private final Map<T, Integer> slots = new IdentityHashMap<>();
+    private int[] freeSlots;
+    private int freeCount;
+    private int usedSlots;
+    private long nextSequence;
+
+    public PerceptualHashIndex() {
+        clear();
+    }
+
+    /**
+     * Indexes a value under its hash, replacing its previous hash if it was
+     * already indexed
+     */
+    public synchronized void put(T value, long hash) {
+        Integer existing = slots.get(value);
+        if (existing != null) {
+            int position = positions[existing];
+            if (hashes[position] == hash) {
+                return;
+            }
+            unlink(existing, hashes[position]);
+            hashes[position] = hash;
+        } else {
+            existing = allocateSlot();
+            int position = slots.size();
+            slots.put(value, existing);
+            values[existing] = value;
+            sequence[existing] = nextSequence++;
+            hashes[position] = hash;
+            ids[position] = existing;
+            positions[existing] = position;
+        }
+        link(existing, hash);
+    }
+
+    /**
+     * Removes a value from the index
+     *
+     * @return Whether the value was indexed
+     */
+    public synchronized boolean remove(T value) {
+        Integer slot = slots.remove(value);
+        if (slot == null) {
+            return false;
+        }
+        int position = positions[slot];
+        unlink(slot, hashes[position]);
+
+        // Move the last entry into the gap so the hash column stays dense
+        int last = slots.size();
+        hashes[position] = hashes[last];
+        ids[position] = ids[last];
+        positions[ids[position]] = position;
+
+        values[slot] = null;
+        freeSlots[freeCount++] = slot;
+        return true;
+    }
+
+    /**
+     * Finds the indexed value closest to a hash
+     *
+     * @param hash        The hash to look up
+     * @param maxDistance Largest Hamming distance that counts as a match
+     * @return The value with the smallest distance (the earliest indexed on
+     *         ties), or null if none is within maxDistance
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized T findNearest(long hash, int maxDistance) {
+        if (maxDistance < 0 || slots.isEmpty()) {
+            return null;
+        }
+        // Best slot and its distance
+        int[] best = {NONE, Integer.MAX_VALUE};
+        scan(hash, maxDistance, (slot, distance) -> {
+            if (isBetter(slot, distance, best[0], best[1])) {
+                best[0] = slot;
+                best[1] = distance;
+            }
+        });
+        return best[0] == NONE ? null : (T) values[best[0]];
+    }
+
+    /**
+     * Finds all indexed values within a distance of a hash, for callers that
+     * verify candidates with a second, more precise hash
+     *
+     * @param hash        The hash to look up
+     * @param maxDistance Largest Hamming distance that counts as a candidate
+     * @return The values within maxDistance, nearest first (the earliest
+     *         indexed on ties)
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized List<T> findWithin(long hash, int maxDistance) {
+        if (maxDistance < 0 || slots.isEmpty()) {
+            return List.of();
+        }
+        // A value can sit in several probed buckets
+        Map<Integer, Integer> distances = new HashMap<>();
+        scan(hash, maxDistance, distances::put);
+
+        List<Integer> found = new ArrayList<>(distances.keySet());
+        found.sort(Comparator.<Integer>comparingInt(distances::get).thenComparingLong(slot -> sequence[slot]));
+        List<T> result = new ArrayList<>(found.size());
+        for (int slot : found) {
+            result.add((T) values[slot]);
+        }
+        return result;
+    }
+
+    public synchronized int size() {
+        return slots.size();
+    }
+
+    public synchronized void clear() {
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            bucketHashes[chunk] = new long[CHUNK_VALUES][];
+            bucketSlots[chunk] = new int[CHUNK_VALUES][];
+            bucketSizes[chunk] = new int[CHUNK_VALUES];
+        }
+        hashes = new long[INITIAL_CAPACITY];
+        ids = new int[INITIAL_CAPACITY];
+        positions = new int[INITIAL_CAPACITY];
+        sequence = new long[INITIAL_CAPACITY];
+        values = new Object[INITIAL_CAPACITY];
+        freeSlots = new int[INITIAL_CAPACITY];
+        slots.clear();
+        freeCount = 0;
+        usedSlots = 0;
+        nextSequence = 0;
+    }
+
+    /**
+     * Receives each slot found within the distance, possibly more than once
+     */
+    @FunctionalInterface
+    private interface SlotVisitor {
+        void visit(int slot, int distance);
+    }
+
+    private void scan(long hash, int maxDistance, SlotVisitor visitor) {
+        int chunkRadius = maxDistance / CHUNKS;
+        if (chunkRadius > MAX_CHUNK_RADIUS) {
+            int size = slots.size();
+            for (int i = 0; i < size; i++) {
+                int distance = Long.bitCount(hashes[i] ^ hash);
+                if (distance <= maxDistance) {
+                    visitor.visit(ids[i], distance);
+                }
+            }
+            return;
+        }
+
+        int probes = MASKS_WITHIN[chunkRadius];
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            int key = chunkOf(hash, chunk);
+            long[][] tableHashes = bucketHashes[chunk];
+            int[] tableSizes = bucketSizes[chunk];
+            for (int probe = 0; probe < probes; probe++) {
+                int bucket = key ^ MASKS[probe];
+                int size = tableSizes[bucket];
+                if (size == 0) {
+                    continue;
+                }
+                long[] candidates = tableHashes[bucket];
+                for (int i = 0; i < size; i++) {
+                    int distance = Long.bitCount(candidates[i] ^ hash);
+                    if (distance <= maxDistance) {
+                        visitor.visit(bucketSlots[chunk][bucket][i], distance);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isBetter(int slot, int distance, int best, int bestDistance) {
+        return best == NONE || distance < bestDistance
+                || (distance == bestDistance && sequence[slot] < sequence[best]);
+    }
+
+    /**
+     * Bits [13 * chunk, 13 * chunk + 13) of the hash; the last chunk only has 12
+     */
+    private static int chunkOf(long hash, int chunk) {
+        return (int) (hash >>> (chunk * CHUNK_BITS)) & (CHUNK_VALUES - 1);
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (usedSlots == hashes.length) {
+            int capacity = hashes.length * 2;
+            hashes = Arrays.copyOf(hashes, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            sequence = Arrays.copyOf(sequence, capacity);
+            values = Arrays.copyOf(values, capacity);
+            freeSlots = Arrays.copyOf(freeSlots, capacity);
+        }
+        return usedSlots++;
+    }
+
+    private void link(int slot, long hash) {
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            int bucket = chunkOf(hash, chunk);
+            int size = bucketSizes[chunk][bucket];
+            long[] bucketHash = bucketHashes[chunk][bucket];
+            if (bucketHash == null || bucketHash.length == size) {
+                int capacity = Math.max(2, size * 2);
+                bucketHashes[chunk][bucket] = bucketHash = bucketHash == null
+                        ? new long[capacity] : Arrays.copyOf(bucketHash, capacity);
+                int[] slotArray = bucketSlots[chunk][bucket];
+                bucketSlots[chunk][bucket] = slotArray == null
+                        ? new int[capacity] : Arrays.copyOf(slotArray, capacity);
+            }
+            bucketHash[size] = hash;
+            bucketSlots[chunk][bucket][size] = slot;
+            bucketSizes[chunk][bucket] = size + 1;
+        }
+    }
+
+    private void unlink(int slot, long hash) {
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            int bucket = chunkOf(hash, chunk);
+            int[] slotArray = bucketSlots[chunk][bucket];
+            int last = bucketSizes[chunk][bucket] - 1;
+            for (int i = 0; i <= last; i++) {
+                if (slotArray[i] == slot) {
+                    // Move the last entry into the gap
+                    slotArray[i] = slotArray[last];
+                    bucketHashes[chunk][bucket][i] = bucketHashes[chunk][bucket][last];
+                    bucketSizes[chunk][bucket] = last;
+                    break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.media.sort.service.phash;
+
+import com.media.sort.util.FileContent;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageInputStreamImpl;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+/**
+ * Decodes an image at the lowest resolution the perceptual hash can use
+ * instead of at full size.
+ *
+ * For JPEGs with an EXIF thumbnail of the same aspect ratio and at least
+ * thumbnailMinSize pixels on its short side, only the thumbnail is decoded.
+ * Otherwise the image is read with source subsampling so its short side ends
+ * up at no less than decodeMinSize pixels; a 50 MP photo then decodes to a
+ * raster of about a hundred KB instead of 150 MB. The full-resolution
+ * dimensions are taken from the image header either way.
+ *
+ * Immutable and thread-safe.
+ */
+public final class ReducedImageDecoder {
+
+    /**
+     * Largest relative difference between thumbnail and image aspect ratios;
+     * letterboxed thumbnails would change the hash
+     */
+    private static final double MAX_ASPECT_DIFFERENCE = 0.02;
+
+    private final int decodeMinSize;
+    private final int thumbnailMinSize;
+    private final boolean useThumbnail;
+
+    /**
+     * @param decodeMinSize    Smallest short side to subsample an image down to
+     * @param thumbnailMinSize Smallest short side of a usable EXIF thumbnail
+     * @param useThumbnail     Whether to try the EXIF thumbnail first
+     */
+    public ReducedImageDecoder(int decodeMinSize, int thumbnailMinSize, boolean useThumbnail) {
+        this.decodeMinSize = Math.max(1, decodeMinSize);
+        this.thumbnailMinSize = Math.max(1, thumbnailMinSize);
+        this.useThumbnail = useThumbnail;
+    }
+
+    /**
+     * A decoded image with the dimensions of the full-resolution original
+     *
+     * @param image     The decoded (possibly reduced) pixels
+     * @param width     Full-resolution width
+     * @param height    Full-resolution height
+     * @param thumbnail Whether the pixels come from the EXIF thumbnail
+     */
+    public record DecodedImage(BufferedImage image, int width, int height, boolean thumbnail) {
+    }
+
+    /**
+     * Decodes an image at reduced resolution
+     *
+     * @param file    The image file
+     * @param content The file's bytes if already read, otherwise null
+     * @return The decoded image, or null if no ImageIO reader supports the file
+     */
+    public DecodedImage decode(File file, FileContent content) throws IOException {
+        try (ImageInputStream input = content != null
+                ? new ByteBufferImageInputStream(content.asByteBuffer())
+                : ImageIO.createImageInputStream(file)) {
+            if (input == null) {
+                return null;
+            }
+
+            ByteBuffer head = null;
+            if (useThumbnail) {
+                head = content != null ? content.slice(0, ExifThumbnail.HEAD_SIZE) : readHead(input);
+            }
+
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                if (head != null) {
+                    BufferedImage thumbnail = readThumbnail(head, width, height);
+                    if (thumbnail != null) {
+                        return new DecodedImage(thumbnail, width, height, true);
+                    }
+                }
+
+                // Keep every step-th pixel in both directions; readers that cannot subsample ignore it
+                int step = Math.max(1, Math.min(width, height) / decodeMinSize);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                BufferedImage image = reader.read(0, param);
+                return image != null ? new DecodedImage(image, width, height, false) : null;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Reads the start of the stream and rewinds it
+     */
+    private static ByteBuffer readHead(ImageInputStream input) throws IOException {
+        byte[] head = new byte[ExifThumbnail.HEAD_SIZE];
+        int length = 0;
+        while (length < head.length) {
+            int read = input.read(head, length, head.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        input.seek(0);
+        return ByteBuffer.wrap(head, 0, length);
+    }
+
+    /**
+     * Decodes the EXIF thumbnail if it is large enough and shows the whole image
+     */
+    private BufferedImage readThumbnail(ByteBuffer head, int width, int height) {
+        ExifThumbnail.Location location = ExifThumbnail.locate(head);
+        if (location == null) {
+            return null;
+        }
+        try {
+            ByteBuffer bytes = head.duplicate();
+            bytes.position(location.offset()).limit(location.offset() + location.length());
+            BufferedImage thumbnail = ImageIO.read(new ByteBufferImageInputStream(bytes.slice()));
+            if (thumbnail == null
+                    || Math.min(thumbnail.getWidth(), thumbnail.getHeight()) < thumbnailMinSize) {
+                return null;
+            }
+            double imageAspect = (double) width / height;
+            double thumbnailAspect = (double) thumbnail.getWidth() / thumbnail.getHeight();
+            if (Math.abs(thumbnailAspect - imageAspect) / imageAspect > MAX_ASPECT_DIFFERENCE) {
+                return null;
+            }
+            return thumbnail;
+        } catch (IOException | RuntimeException e) {
+            return null; // Corrupt thumbnail, decode the image instead
+        }
+    }
+
+    /**
+     * ImageInputStream over bytes already in memory, so readers seek in place
+     * instead of copying the data into a stream cache
+     */
+    static final class ByteBufferImageInputStream extends ImageInputStreamImpl {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferImageInputStream(ByteBuffer buffer) {
+            this.buffer = buffer.duplicate();
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkClosed();
+            bitOffset = 0;
+            if (streamPos >= buffer.limit()) {
+                return -1;
+            }
+            return buffer.get((int) streamPos++) & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkClosed();
+            bitOffset = 0;
+            if (len == 0) {
+                return 0;
+            }
+            int remaining = buffer.limit() - (int) Math.min(streamPos, buffer.limit());
+            if (remaining <= 0) {
+                return -1;
+            }
+            int count = Math.min(len, remaining);
+            buffer.get((int) streamPos, b, off, count);
+            streamPos += count;
+            return count;
+        }
+
+        @Override
+        public long length() {
+            return buffer.limit();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.media.sort.service.video;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.Set;
+
+/**
+ * Reads the creation date of ASF files (WMV) from the File Properties
+ * object of their Header object, which comes first in the file. The data
+ * and index objects after the header are never read.
+ */
+public final class AsfParser {
+
+    /**
+     * Extensions of ASF files
+     */
+    public static final Set<String> EXTENSIONS = Set.of("wmv", "asf");
+
+    /**
+     * Header object GUID 75B22630-668E-11CF-A6D9-00AA0062CE6C, as stored
+     * (the first three fields little-endian)
+     */
+    private static final byte[] HEADER_OBJECT = guid(0x75B22630, 0x668E, 0x11CF, 0xA6D900AA0062CE6CL);
+
+    /**
+     * File Properties object GUID 8CABDCA1-A947-11CF-8EE4-00C00C205365
+     */
+    private static final byte[] FILE_PROPERTIES_OBJECT = guid(0x8CABDCA1, 0xA947, 0x11CF, 0x8EE400C00C205365L);
+
+    /**
+     * GUID and 64-bit size of every object
+     */
+    private static final int OBJECT_HEADER = 24;
+
+    /**
+     * The Header object's own fields: object count and two reserved bytes
+     */
+    private static final int HEADER_FIELDS = 6;
+
+    /**
+     * Offset of the creation date in the File Properties object, after its
+     * file ID GUID and file size
+     */
+    private static final int CREATION_DATE = OBJECT_HEADER + 16 + 8;
+
+    /**
+     * Milliseconds from 1601-01-01, the epoch of the creation date, to 1970-01-01
+     */
+    private static final long EPOCH_OFFSET_MILLIS = 11_644_473_600_000L;
+
+    private AsfParser() {
+    }
+
+    /**
+     * Reads the creation date of an ASF file
+     *
+     * @param file The file
+     * @return The date, or null if the file does not record one
+     * @throws IOException If the file cannot be read or is not an ASF file
+     */
+    public static Date readCreationDate(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return parse(channel, channel.size());
+        }
+    }
+
+    private static Date parse(FileChannel channel, long fileSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(OBJECT_HEADER + HEADER_FIELDS).order(ByteOrder.LITTLE_ENDIAN);
+        if (fileSize < buffer.capacity()) {
+            throw new IOException("Not an ASF file");
+        }
+        ByteBuffer header = PositionalReads.read(channel, buffer, 0, buffer.capacity());
+        if (!isGuid(header, HEADER_OBJECT)) {
+            throw new IOException("Not an ASF file");
+        }
+        long headerEnd = Math.min(fileSize, header.getLong(16));
+        long objects = header.getInt(OBJECT_HEADER) & 0xFFFFFFFFL;
+
+        long position = OBJECT_HEADER + HEADER_FIELDS;
+        for (long i = 0; i < objects && position + OBJECT_HEADER <= headerEnd; i++) {
+            ByteBuffer object = PositionalReads.read(channel, buffer, position, OBJECT_HEADER);
+            long size = object.getLong(16);
+            if (size < OBJECT_HEADER || size > headerEnd - position) {
+                return null;
+            }
+            if (isGuid(object, FILE_PROPERTIES_OBJECT)) {
+                if (size < CREATION_DATE + 8) {
+                    return null;
+                }
+                long fileTime = PositionalReads.read(channel, buffer, position + CREATION_DATE, 8).getLong(0);
+                // 100-nanosecond units; 0 means unset (live streams, some encoders)
+                return fileTime > 0 ? new Date(fileTime / 10_000 - EPOCH_OFFSET_MILLIS) : null;
+            }
+            position += size;
+        }
+        return null;
+    }
+
+    private static boolean isGuid(ByteBuffer buffer, byte[] guid) {
+        for (int i = 0; i < guid.length; i++) {
+            if (buffer.get(i) != guid[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stored form of a GUID: three little-endian fields, then eight bytes in order
+     */
+    private static byte[] guid(int data1, int data2, int data3, long data4) {
+        ByteBuffer buffer = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(data1).putShort((short) data2).putShort((short) data3);
+        return buffer.order(ByteOrder.BIG_ENDIAN).putLong(data4).array();
+    }
+}
@@ -0,0 +1,286 @@
+package com.media.sort.service.video;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.Set;
+
+/**
+ * Reads the recording date of Matroska and WebM files: the DateUTC element
+ * of the segment's Info element.
+ *
+ * The top-level elements of the segment are walked by their headers only.
+ * Info comes before the clusters in practice; if a cluster comes first, or
+ * one of unknown size ends the walk, the position the SeekHead recorded for
+ * Info is used instead.
+ */
+public final class EbmlParser {
+
+    /**
+     * Extensions of Matroska and WebM files
+     */
+    public static final Set<String> EXTENSIONS = Set.of("mkv", "webm");
+
+    /**
+     * Larger SeekHead and Info elements are skipped
+     */
+    static final int MAX_ELEMENT_SIZE = 64 * 1024;
+
+    private static final int EBML = 0x1A45DFA3;
+    private static final int SEGMENT = 0x18538067;
+    private static final int SEEK_HEAD = 0x114D9B74;
+    private static final int SEEK = 0x4DBB;
+    private static final int SEEK_ID = 0x53AB;
+    private static final int SEEK_POSITION = 0x53AC;
+    private static final int INFO = 0x1549A966;
+    private static final int DATE_UTC = 0x4461;
+    private static final int CLUSTER = 0x1F43B675;
+
+    /**
+     * Size of an element whose end is not known (all value bits set)
+     */
+    private static final long UNKNOWN_SIZE = -1;
+
+    /**
+     * Milliseconds from 1970-01-01 to 2001-01-01, the epoch of DateUTC
+     */
+    private static final long EPOCH_OFFSET_MILLIS = 978_307_200_000L;
+
+    private final FileChannel channel;
+    private final ByteBuffer header = ByteBuffer.allocate(12);
+
+    private EbmlParser(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Header of one element
+     *
+     * @param id      Element ID, with its length marker bits
+     * @param payload File position of the payload, after the header
+     * @param size    Payload size, or UNKNOWN_SIZE
+     */
+    private record Element(int id, long payload, long size) {
+    }
+
+    /**
+     * Reads the recording date of a Matroska or WebM file
+     *
+     * @param file The file
+     * @return The date, or null if the file does not record one
+     * @throws IOException If the file cannot be read or is not an EBML file
+     */
+    public static Date readCreationDate(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new EbmlParser(channel).parse(channel.size());
+        }
+    }
+
+    private Date parse(long fileSize) throws IOException {
+        Element ebml = readHeader(0, fileSize);
+        if (ebml == null || ebml.id() != EBML || ebml.size() == UNKNOWN_SIZE) {
+            throw new IOException("Not an EBML file");
+        }
+        Element segment = readHeader(ebml.payload() + ebml.size(), fileSize);
+        if (segment == null || segment.id() != SEGMENT) {
+            return null;
+        }
+        long segmentEnd = segment.size() == UNKNOWN_SIZE
+                ? fileSize : Math.min(fileSize, segment.payload() + segment.size());
+
+        long infoPosition = -1;
+        long position = segment.payload();
+        Element element;
+        while ((element = readHeader(position, segmentEnd)) != null) {
+            if (element.id() == INFO) {
+                return readDate(element);
+            }
+            if (element.id() == SEEK_HEAD && element.size() != UNKNOWN_SIZE) {
+                long seek = seekPosition(element, INFO);
+                infoPosition = seek >= 0 ? segment.payload() + seek : infoPosition;
+            }
+            if (element.id() == CLUSTER || element.size() == UNKNOWN_SIZE) {
+                break;
+            }
+            position = element.payload() + element.size();
+        }
+
+        if (infoPosition > position) {
+            Element info = readHeader(infoPosition, segmentEnd);
+            if (info != null && info.id() == INFO) {
+                return readDate(info);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The DateUTC child of Info: nanoseconds since 2001-01-01 UTC, as a signed 64-bit integer
+     */
+    private Date readDate(Element info) throws IOException {
+        ByteBuffer payload = readPayload(info);
+        if (payload == null) {
+            return null;
+        }
+        Child child;
+        for (int position = 0; (child = child(payload, position, payload.limit())) != null; position = child.end()) {
+            if (child.id() == DATE_UTC && child.size() == 8) {
+                return new Date(EPOCH_OFFSET_MILLIS + payload.getLong(child.data()) / 1_000_000);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Position, relative to the segment payload, that a SeekHead records for
+     * an element ID: each Seek child holds a SeekID and a SeekPosition
+     *
+     * @return The position, or -1 if the SeekHead does not list the ID
+     */
+    private long seekPosition(Element seekHead, int targetId) throws IOException {
+        ByteBuffer payload = readPayload(seekHead);
+        if (payload == null) {
+            return -1;
+        }
+        Child seek;
+        for (int position = 0; (seek = child(payload, position, payload.limit())) != null; position = seek.end()) {
+            if (seek.id() != SEEK) {
+                continue;
+            }
+            long seekId = -1;
+            long seekPosition = -1;
+            Child child;
+            for (int field = seek.data(); (child = child(payload, field, seek.end())) != null; field = child.end()) {
+                if (child.id() == SEEK_ID && child.size() <= 4) {
+                    seekId = unsigned(payload, child.data(), child.size());
+                } else if (child.id() == SEEK_POSITION && child.size() <= 8) {
+                    seekPosition = unsigned(payload, child.data(), child.size());
+                }
+            }
+            if (seekId == targetId && seekPosition >= 0) {
+                return seekPosition;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * An element inside a payload already read
+     *
+     * @param id   Element ID
+     * @param data Offset of its data in the payload
+     * @param size Data size
+     */
+    private record Child(int id, int data, int size) {
+
+        int end() {
+            return data + size;
+        }
+    }
+
+    /**
+     * Decodes the element at an offset of a payload
+     *
+     * @return The element, or null if it does not fit in [position, end) or has an unknown size
+     */
+    private static Child child(ByteBuffer payload, int position, int end) {
+        if (position >= end) {
+            return null;
+        }
+        int idLength = length(payload.get(position), 4);
+        if (idLength == 0 || position + idLength >= end) {
+            return null;
+        }
+        int sizeLength = length(payload.get(position + idLength), 8);
+        int data = position + idLength + sizeLength;
+        if (sizeLength == 0 || data > end) {
+            return null;
+        }
+        long size = value(payload, position + idLength, sizeLength, true);
+        if (size == UNKNOWN_SIZE || size > end - data) {
+            return null;
+        }
+        return new Child((int) value(payload, position, idLength, false), data, (int) size);
+    }
+
+    /**
+     * Reads an element header at a position
+     *
+     * @return The element, or null if its header does not fit in [position, end)
+     */
+    private Element readHeader(long position, long end) throws IOException {
+        int available = (int) Math.min(header.capacity(), end - position);
+        if (available < 2) {
+            return null;
+        }
+        ByteBuffer buffer = read(header, position, available);
+        int idLength = length(buffer.get(0), 4);
+        if (idLength == 0 || idLength >= available) {
+            return null;
+        }
+        int sizeLength = length(buffer.get(idLength), 8);
+        if (sizeLength == 0 || idLength + sizeLength > available) {
+            return null;
+        }
+        int id = (int) value(buffer, 0, idLength, false);
+        long size = value(buffer, idLength, sizeLength, true);
+        long payload = position + idLength + sizeLength;
+        if (size != UNKNOWN_SIZE && size > end - payload) {
+            return null;
+        }
+        return new Element(id, payload, size);
+    }
+
+    /**
+     * Reads the payload of an element
+     *
+     * @return The payload, or null if its size is unknown or larger than MAX_ELEMENT_SIZE
+     */
+    private ByteBuffer readPayload(Element element) throws IOException {
+        if (element.size() == UNKNOWN_SIZE || element.size() > MAX_ELEMENT_SIZE) {
+            return null;
+        }
+        int size = (int) element.size();
+        return read(ByteBuffer.allocate(size), element.payload(), size);
+    }
+
+    /**
+     * Length of a variable-length integer from its first byte: one plus the
+     * number of leading zero bits
+     *
+     * @return The length, or 0 if it exceeds maxLength
+     */
+    static int length(byte first, int maxLength) {
+        int length = Integer.numberOfLeadingZeros(first & 0xFF) - 23;
+        return length <= maxLength ? length : 0;
+    }
+
+    /**
+     * Value of a variable-length integer. IDs keep their length marker bit;
+     * sizes drop it, and a size with all value bits set is UNKNOWN_SIZE.
+     */
+    static long value(ByteBuffer buffer, int position, int length, boolean size) {
+        long value = unsigned(buffer, position, length);
+        if (!size) {
+            return value;
+        }
+        long marker = 1L << (7 * length);
+        value &= marker - 1;
+        return value == marker - 1 ? UNKNOWN_SIZE : value;
+    }
+
+    private static long unsigned(ByteBuffer buffer, int position, int length) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = value << 8 | (buffer.get(position + i) & 0xFF);
+        }
+        return value;
+    }
+
+    private ByteBuffer read(ByteBuffer buffer, long position, int length) throws IOException {
+        return PositionalReads.read(channel, buffer, position, length);
+    }
+}
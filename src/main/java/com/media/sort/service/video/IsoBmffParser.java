@@ -0,0 +1,528 @@
+package com.media.sort.service.video;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads the metadata of ISO base media files (MP4, M4V, MOV, 3GP, 3G2)
+ * with positional reads of their box headers, without decoding any media
+ * or streaming through it.
+ *
+ * The top-level boxes are walked by their headers only, seeking over mdat
+ * wherever it is (before or after moov). Inside moov only the boxes that
+ * carry metadata are read: mvhd (creation time, duration), per trak the
+ * tkhd (dimensions), mdhd and hdlr boxes, the QuickTime user data items of
+ * udta and the items of udta/meta/ilst and moov/meta/ilst, including Apple's
+ * mdta keys. That is a few KB for a file of any size. The stsz/stz2 sample
+ * size and stss sync sample tables, which grow with the clip, are only read
+ * on request.
+ */
+public final class IsoBmffParser {
+
+    /**
+     * Extensions of ISO base media files
+     */
+    public static final Set<String> EXTENSIONS = Set.of("mp4", "m4v", "mov", "3gp", "3g2");
+
+    /**
+     * Larger header and metadata boxes are skipped
+     */
+    static final int MAX_BOX_SIZE = 64 * 1024;
+
+    /**
+     * Larger cover art is skipped
+     */
+    static final int MAX_COVER_ART_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Larger sample size tables are skipped (4 bytes per frame: about 9 hours at 60 fps)
+     */
+    static final int MAX_SAMPLE_TABLE_SIZE = 8 * 1024 * 1024;
+
+    private static final int FULL_BOX_HEADER = 4;
+
+    /**
+     * Seconds from 1904-01-01, the epoch of ISO base media times, to 1970-01-01
+     */
+    private static final long EPOCH_OFFSET_SECONDS = 2_082_844_800L;
+
+    /**
+     * Well-known type of UTF-8 text in a data box
+     */
+    private static final int DATA_TYPE_UTF8 = 1;
+
+    private static final int MOOV = type("moov");
+    private static final int MVHD = type("mvhd");
+    private static final int TRAK = type("trak");
+    private static final int TKHD = type("tkhd");
+    private static final int MDIA = type("mdia");
+    private static final int MDHD = type("mdhd");
+    private static final int HDLR = type("hdlr");
+    private static final int MINF = type("minf");
+    private static final int STBL = type("stbl");
+    private static final int STSZ = type("stsz");
+    private static final int STZ2 = type("stz2");
+    private static final int STSS = type("stss");
+    private static final int UDTA = type("udta");
+    private static final int META = type("meta");
+    private static final int KEYS = type("keys");
+    private static final int ILST = type("ilst");
+    private static final int DATA = type("data");
+    private static final int MAKE = type("\u00A9mak");
+    private static final int MODEL = type("\u00A9mod");
+    private static final int LOCATION = type("\u00A9xyz");
+
+    private final FileChannel channel;
+    private final boolean sampleSizes;
+    private final ByteBuffer header = ByteBuffer.allocate(16);
+    private final Mp4Movie movie = new Mp4Movie();
+
+    private IsoBmffParser(FileChannel channel, boolean sampleSizes) {
+        this.channel = channel;
+        this.sampleSizes = sampleSizes;
+    }
+
+    /**
+     * Header of one box
+     *
+     * @param type    Four-character type
+     * @param payload File position of the payload, after the header
+     * @param end     File position after the box
+     */
+    private record Box(int type, long payload, long end) {
+
+        long payloadSize() {
+            return end - payload;
+        }
+    }
+
+    /**
+     * Parses the metadata and sample tables of a file
+     *
+     * @see #parse(File, boolean)
+     */
+    public static Mp4Movie parse(File file) throws IOException {
+        return parse(file, true);
+    }
+
+    /**
+     * Parses the moov box of a file
+     *
+     * @param file        The file
+     * @param sampleSizes Whether to read the sample size and sync sample
+     *                    tables, which are only needed for a VideoFingerprint
+     * @return The movie, or null if the file is not an ISO base media file
+     *         or has no moov box
+     * @throws IOException If the file cannot be read
+     */
+    public static Mp4Movie parse(File file, boolean sampleSizes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new IsoBmffParser(channel, sampleSizes).parseTopLevel(channel.size());
+        }
+    }
+
+    private Mp4Movie parseTopLevel(long fileSize) throws IOException {
+        long position = 0;
+        Box box;
+        while ((box = readHeader(position, fileSize)) != null) {
+            if (!isBoxType(box.type())) {
+                return null; // Not a box header: not an ISO file, or a corrupt one
+            }
+            if (box.type() == MOOV) {
+                parseBoxes(box.payload(), box.end(), MOOV, null);
+                return movie;
+            }
+            position = box.end(); // Seeks over mdat and everything else
+        }
+        return null;
+    }
+
+    /**
+     * Reads a box header at a position
+     *
+     * @return The box, or null if it does not fit in [position, end)
+     */
+    private Box readHeader(long position, long end) throws IOException {
+        if (position + 8 > end) {
+            return null;
+        }
+        ByteBuffer buffer = read(header, position, 8);
+        long boxSize = buffer.getInt(0) & 0xFFFFFFFFL;
+        int boxType = buffer.getInt(4);
+        int headerSize = 8;
+        if (boxSize == 1) {
+            if (position + 16 > end) {
+                return null;
+            }
+            boxSize = read(header, position, 16).getLong(8);
+            headerSize = 16;
+        } else if (boxSize == 0) {
+            boxSize = end - position; // Box extends to the end of its parent
+        }
+        if (boxSize < headerSize || boxSize > end - position) {
+            return null;
+        }
+        return new Box(boxType, position + headerSize, position + boxSize);
+    }
+
+    /**
+     * Parses the boxes in [start, end) of a container box of the given type.
+     * A truncated or corrupt box ends the walk, keeping what was read so far.
+     */
+    private void parseBoxes(long start, long end, int parent, Mp4Movie.Track track) throws IOException {
+        long position = start;
+        Box box;
+        while ((box = readHeader(position, end)) != null) {
+            parseBox(box, parent, track);
+            position = box.end();
+        }
+    }
+
+    private void parseBox(Box box, int parent, Mp4Movie.Track track) throws IOException {
+        int boxType = box.type();
+        if (boxType == MVHD && parent == MOOV) {
+            ByteBuffer payload = readPayload(box, MAX_BOX_SIZE);
+            if (payload != null) {
+                parseMvhd(payload);
+            }
+        } else if (boxType == TRAK && parent == MOOV) {
+            Mp4Movie.Track trak = new Mp4Movie.Track();
+            parseBoxes(box.payload(), box.end(), TRAK, trak);
+            movie.tracks.add(trak);
+        } else if (track != null && boxType == TKHD) {
+            ByteBuffer payload = readPayload(box, MAX_BOX_SIZE);
+            if (payload != null) {
+                parseTkhd(payload, track);
+            }
+        } else if (track != null && boxType == MDHD) {
+            ByteBuffer payload = readPayload(box, MAX_BOX_SIZE);
+            if (payload != null) {
+                parseMdhd(payload, track);
+            }
+        } else if (track != null && boxType == HDLR && parent == MDIA) {
+            ByteBuffer payload = readPayload(box, MAX_BOX_SIZE);
+            if (payload != null && payload.limit() >= FULL_BOX_HEADER + 8) {
+                track.handlerType = typeName(payload.getInt(FULL_BOX_HEADER + 4));
+            }
+        } else if (track != null && (boxType == STSZ || boxType == STZ2)) {
+            ByteBuffer payload = readPayload(box, MAX_SAMPLE_TABLE_SIZE);
+            if (payload != null && boxType == STSZ) {
+                parseStsz(payload, track);
+            } else if (payload != null) {
+                parseStz2(payload, track);
+            }
+        } else if (track != null && boxType == STSS) {
+            ByteBuffer payload = readPayload(box, MAX_SAMPLE_TABLE_SIZE);
+            if (payload != null) {
+                parseStss(payload, track);
+            }
+        } else if (track != null && (boxType == MDIA || boxType == MINF || (boxType == STBL && sampleSizes))) {
+            parseBoxes(box.payload(), box.end(), boxType, track);
+        } else if (track == null && boxType == UDTA && parent == MOOV) {
+            parseBoxes(box.payload(), box.end(), UDTA, null);
+        } else if (parent == UDTA && (boxType == MAKE || boxType == MODEL || boxType == LOCATION)) {
+            ByteBuffer payload = readPayload(box, MAX_BOX_SIZE);
+            if (payload != null) {
+                setItem(typeName(boxType), userDataText(payload));
+            }
+        } else if (track == null && boxType == META && (parent == MOOV || parent == UDTA)) {
+            parseMeta(box);
+        }
+    }
+
+    /**
+     * A meta box holds a handler, for Apple metadata a keys box naming its
+     * items, and the ilst item list
+     */
+    private void parseMeta(Box meta) throws IOException {
+        List<String> keys = null;
+        long position = metaChildren(meta);
+        Box box;
+        while ((box = readHeader(position, meta.end())) != null) {
+            if (box.type() == KEYS) {
+                ByteBuffer payload = readPayload(box, MAX_BOX_SIZE);
+                keys = payload != null ? parseKeys(payload) : null;
+            } else if (box.type() == ILST) {
+                parseIlst(box, keys);
+            }
+            position = box.end();
+        }
+    }
+
+    /**
+     * Each ilst item is named by its type, or with keys by the key its type
+     * indexes (1-based), and holds its value in a data box
+     */
+    private void parseIlst(Box ilst, List<String> keys) throws IOException {
+        long position = ilst.payload();
+        Box item;
+        while ((item = readHeader(position, ilst.end())) != null) {
+            String name = keys != null && item.type() >= 1 && item.type() <= keys.size()
+                    ? keys.get(item.type() - 1) : typeName(item.type());
+            Box data = readHeader(item.payload(), item.end());
+            if (data != null && data.type() == DATA) {
+                boolean cover = "covr".equals(name);
+                ByteBuffer payload = readPayload(data, cover ? MAX_COVER_ART_SIZE : MAX_BOX_SIZE);
+                if (payload != null && payload.limit() >= 8) {
+                    // Type indicator and locale precede the value
+                    byte[] value = new byte[payload.limit() - 8];
+                    payload.get(8, value);
+                    if (cover && movie.coverArt == null) {
+                        movie.coverArt = value;
+                    } else if ((payload.getInt(0) & 0xFFFFFF) == DATA_TYPE_UTF8) {
+                        setItem(name, new String(value, StandardCharsets.UTF_8));
+                    }
+                }
+            }
+            position = item.end();
+        }
+    }
+
+    /**
+     * Records the items the movie exposes, from QuickTime user data or Apple
+     * metadata keys; the first value found wins
+     */
+    private void setItem(String name, String value) {
+        if (value == null || value.isBlank()) {
+            return;
+        }
+        String trimmed = value.trim();
+        switch (name) {
+            case "\u00A9mak", "com.apple.quicktime.make" -> {
+                if (movie.make == null) {
+                    movie.make = trimmed;
+                }
+            }
+            case "\u00A9mod", "com.apple.quicktime.model" -> {
+                if (movie.model == null) {
+                    movie.model = trimmed;
+                }
+            }
+            case "\u00A9xyz", "com.apple.quicktime.location.ISO6709" -> {
+                if (movie.location == null) {
+                    movie.location = trimmed;
+                }
+            }
+            case "com.apple.quicktime.creationdate" -> {
+                if (movie.localCreationDate == null) {
+                    movie.localCreationDate = trimmed;
+                }
+            }
+            default -> {
+                // Not used
+            }
+        }
+    }
+
+    private void parseMvhd(ByteBuffer payload) {
+        if (payload.limit() < FULL_BOX_HEADER) {
+            return;
+        }
+        int version = payload.get(0) & 0xFF;
+        int times = FULL_BOX_HEADER;
+        long creationTime = 0;
+        if (version == 1 && times + 28 <= payload.limit()) {
+            creationTime = payload.getLong(times);
+            movie.timescale = payload.getInt(times + 16) & 0xFFFFFFFFL;
+            movie.duration = payload.getLong(times + 20);
+        } else if (version == 0 && times + 16 <= payload.limit()) {
+            creationTime = payload.getInt(times) & 0xFFFFFFFFL;
+            movie.timescale = payload.getInt(times + 8) & 0xFFFFFFFFL;
+            movie.duration = payload.getInt(times + 12) & 0xFFFFFFFFL;
+        }
+        // 0 means unset; a time before 1970 is an unset or Unix-epoch time and is ignored
+        if (creationTime > EPOCH_OFFSET_SECONDS) {
+            movie.creationTime = (creationTime - EPOCH_OFFSET_SECONDS) * 1000;
+        }
+    }
+
+    private static void parseMdhd(ByteBuffer payload, Mp4Movie.Track track) {
+        if (payload.limit() < FULL_BOX_HEADER) {
+            return;
+        }
+        int version = payload.get(0) & 0xFF;
+        int times = FULL_BOX_HEADER;
+        if (version == 1 && times + 28 <= payload.limit()) {
+            track.timescale = payload.getInt(times + 16) & 0xFFFFFFFFL;
+            track.duration = payload.getLong(times + 20);
+        } else if (version == 0 && times + 16 <= payload.limit()) {
+            track.timescale = payload.getInt(times + 8) & 0xFFFFFFFFL;
+            track.duration = payload.getInt(times + 12) & 0xFFFFFFFFL;
+        }
+    }
+
+    /**
+     * Width and height are the last two fields, 16.16 fixed point, after the
+     * 36-byte matrix
+     */
+    private static void parseTkhd(ByteBuffer payload, Mp4Movie.Track track) {
+        if (payload.limit() < FULL_BOX_HEADER) {
+            return;
+        }
+        int version = payload.get(0) & 0xFF;
+        int size = FULL_BOX_HEADER + (version == 1 ? 32 : 20) + 52 + 8;
+        if (size <= payload.limit()) {
+            track.width = payload.getInt(size - 8) >>> 16;
+            track.height = payload.getInt(size - 4) >>> 16;
+        }
+    }
+
+    /**
+     * Sample size and count, followed by one 32-bit size per sample unless all
+     * samples have the same size
+     */
+    private static void parseStsz(ByteBuffer payload, Mp4Movie.Track track) {
+        int fields = FULL_BOX_HEADER;
+        if (fields + 8 > payload.limit()) {
+            return;
+        }
+        track.constantSampleSize = payload.getInt(fields);
+        track.sampleCount = payload.getInt(fields + 4) & 0xFFFFFFFFL;
+        int entries = fields + 8;
+        if (track.constantSampleSize == 0 && track.sampleCount <= (payload.limit() - entries) / 4) {
+            int[] sizes = new int[(int) track.sampleCount];
+            for (int i = 0; i < sizes.length; i++) {
+                sizes[i] = payload.getInt(entries + 4 * i);
+            }
+            track.sampleSizes = sizes;
+        }
+    }
+
+    /**
+     * Compact sample sizes: a field size of 4, 8 or 16 bits, the sample count
+     * and the packed sizes (4-bit sizes high nibble first)
+     */
+    private static void parseStz2(ByteBuffer payload, Mp4Movie.Track track) {
+        int fields = FULL_BOX_HEADER;
+        if (fields + 8 > payload.limit()) {
+            return;
+        }
+        int fieldSize = payload.get(fields + 3) & 0xFF;
+        track.sampleCount = payload.getInt(fields + 4) & 0xFFFFFFFFL;
+        int entries = fields + 8;
+        if ((fieldSize != 4 && fieldSize != 8 && fieldSize != 16)
+                || track.sampleCount > (payload.limit() - entries) * 8L / fieldSize) {
+            return;
+        }
+        int[] sizes = new int[(int) track.sampleCount];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = switch (fieldSize) {
+                case 4 -> (payload.get(entries + i / 2) >> (i % 2 == 0 ? 4 : 0)) & 0x0F;
+                case 8 -> payload.get(entries + i) & 0xFF;
+                default -> payload.getShort(entries + 2 * i) & 0xFFFF;
+            };
+        }
+        track.sampleSizes = sizes;
+    }
+
+    /**
+     * Entry count, then the 1-based numbers of the sync samples in ascending order
+     */
+    private static void parseStss(ByteBuffer payload, Mp4Movie.Track track) {
+        int fields = FULL_BOX_HEADER;
+        if (fields + 4 > payload.limit()) {
+            return;
+        }
+        long count = payload.getInt(fields) & 0xFFFFFFFFL;
+        int entries = fields + 4;
+        if (count > (payload.limit() - entries) / 4) {
+            return;
+        }
+        int[] samples = new int[(int) count];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = payload.getInt(entries + 4 * i) - 1;
+        }
+        track.syncSamples = samples;
+    }
+
+    /**
+     * The keys box: a full box with a count, then per key its size, a
+     * namespace ("mdta") and the name
+     */
+    private static List<String> parseKeys(ByteBuffer payload) {
+        List<String> keys = new ArrayList<>();
+        int position = FULL_BOX_HEADER + 4;
+        while (position + 8 <= payload.limit()) {
+            int size = payload.getInt(position);
+            if (size < 8 || size > payload.limit() - position) {
+                break;
+            }
+            byte[] name = new byte[size - 8];
+            payload.get(position + 8, name);
+            keys.add(new String(name, StandardCharsets.UTF_8));
+            position += size;
+        }
+        return keys;
+    }
+
+    /**
+     * QuickTime user data text: a 16-bit length and a 16-bit language code before the text
+     */
+    private static String userDataText(ByteBuffer payload) {
+        if (payload.limit() < 4) {
+            return null;
+        }
+        int length = Math.min(payload.getShort(0) & 0xFFFF, payload.limit() - 4);
+        byte[] text = new byte[length];
+        payload.get(4, text);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Start of the children of a meta box: a full box in MP4, a plain
+     * container in QuickTime files, whose first child (hdlr) starts right away
+     */
+    private long metaChildren(Box meta) throws IOException {
+        if (meta.payloadSize() >= 8 && read(header, meta.payload(), 8).getInt(4) == HDLR) {
+            return meta.payload();
+        }
+        return meta.payload() + FULL_BOX_HEADER;
+    }
+
+    /**
+     * Reads the payload of a box
+     *
+     * @return The payload, or null if it is larger than maxSize
+     */
+    private ByteBuffer readPayload(Box box, int maxSize) throws IOException {
+        if (box.payloadSize() > maxSize) {
+            return null;
+        }
+        int size = (int) box.payloadSize();
+        return read(ByteBuffer.allocate(size), box.payload(), size);
+    }
+
+    private ByteBuffer read(ByteBuffer buffer, long position, int length) throws IOException {
+        return PositionalReads.read(channel, buffer, position, length);
+    }
+
+    /**
+     * Box types are four printable ASCII characters (plus 0xA9, the copyright sign of iTunes item names)
+     */
+    private static boolean isBoxType(int boxType) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            int c = (boxType >>> shift) & 0xFF;
+            if ((c < 0x20 || c > 0x7E) && c != 0xA9) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int type(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.ISO_8859_1);
+        return (bytes[0] & 0xFF) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8 | bytes[3] & 0xFF;
+    }
+
+    private static String typeName(int boxType) {
+        return new String(new byte[]{(byte) (boxType >>> 24), (byte) (boxType >>> 16), (byte) (boxType >>> 8),
+                (byte) boxType}, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,214 @@
+package com.media.sort.service.video;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * What IsoBmffParser read from the moov box of an MP4, MOV or 3GP file:
+ * the movie header, one entry per track, the device and location items
+ * and the embedded cover art. Fields the file does not have keep their
+ * defaults (0 or null).
+ */
+public final class Mp4Movie {
+
+    /**
+     * Latitude and longitude at the start of an ISO 6709 string such as "+48.8577+002.2950+035.000/"
+     */
+    private static final Pattern ISO_6709 = Pattern.compile("^([+-]\\d+(?:\\.\\d+)?)([+-]\\d+(?:\\.\\d+)?)");
+
+    /**
+     * Apple's com.apple.quicktime.creationdate, local time with its offset
+     */
+    private static final DateTimeFormatter LOCAL_CREATION_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssZ");
+
+    long timescale;
+    long duration;
+    long creationTime;
+    String localCreationDate;
+    String make;
+    String model;
+    String location;
+    byte[] coverArt;
+    final List<Track> tracks = new ArrayList<>();
+
+    /**
+     * Creation time from mvhd, or Apple's creation date item if mvhd has none
+     *
+     * @return The creation time, or null if the file does not record one
+     */
+    public Date getCreationDate() {
+        if (creationTime > 0) {
+            return new Date(creationTime);
+        }
+        if (localCreationDate != null) {
+            try {
+                return Date.from(OffsetDateTime.parse(localCreationDate, LOCAL_CREATION_DATE).toInstant());
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Device manufacturer (QuickTime user data or Apple metadata), or null
+     */
+    public String getMake() {
+        return make;
+    }
+
+    /**
+     * Device model (QuickTime user data or Apple metadata), or null
+     */
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * Latitude of the recording location, or null
+     */
+    public Double getLatitude() {
+        Matcher matcher = location != null ? ISO_6709.matcher(location) : null;
+        return matcher != null && matcher.find() ? Double.valueOf(matcher.group(1)) : null;
+    }
+
+    /**
+     * Longitude of the recording location, or null
+     */
+    public Double getLongitude() {
+        Matcher matcher = location != null ? ISO_6709.matcher(location) : null;
+        return matcher != null && matcher.find() ? Double.valueOf(matcher.group(2)) : null;
+    }
+
+    /**
+     * Movie duration from mvhd, or the longest track's if mvhd has none
+     */
+    public long getDurationMillis() {
+        long millis = toMillis(duration, timescale);
+        for (Track track : tracks) {
+            millis = Math.max(millis, track.getDurationMillis());
+        }
+        return millis;
+    }
+
+    /**
+     * First track with the given handler type ("vide", "soun"), or null
+     */
+    public Track getTrack(String handlerType) {
+        for (Track track : tracks) {
+            if (handlerType.equals(track.handlerType)) {
+                return track;
+            }
+        }
+        return null;
+    }
+
+    public List<Track> getTracks() {
+        return Collections.unmodifiableList(tracks);
+    }
+
+    /**
+     * Image bytes (JPEG or PNG) of the iTunes-style covr item, or null
+     */
+    public byte[] getCoverArt() {
+        return coverArt;
+    }
+
+    static long toMillis(long duration, long timescale) {
+        if (timescale <= 0 || duration <= 0) {
+            return 0;
+        }
+        return duration < Long.MAX_VALUE / 1000 ? duration * 1000 / timescale : duration / timescale * 1000;
+    }
+
+    /**
+     * One trak box: handler from hdlr, timing from mdhd, sample count and
+     * sizes from stsz or stz2, sync samples from stss and presentation size
+     * from tkhd
+     */
+    public static final class Track {
+
+        String handlerType;
+        long timescale;
+        long duration;
+        long sampleCount;
+        int constantSampleSize;
+        int[] sampleSizes;
+        int[] syncSamples;
+        int width;
+        int height;
+
+        public String getHandlerType() {
+            return handlerType;
+        }
+
+        /**
+         * Media timescale (units per second) of the track's durations and sample times
+         */
+        public long getTimescale() {
+            return timescale;
+        }
+
+        public long getDurationMillis() {
+            return toMillis(duration, timescale);
+        }
+
+        public long getSampleCount() {
+            return sampleCount;
+        }
+
+        /**
+         * Whether the samples have individual sizes (a table in stsz or stz2)
+         */
+        public boolean hasSampleSizes() {
+            return sampleSizes != null;
+        }
+
+        /**
+         * Size in bytes of a sample, from the stsz or stz2 table
+         *
+         * @param index Sample index, below getSampleCount()
+         * @return The size, or 0 if the table was not read
+         */
+        public int getSampleSize(int index) {
+            if (sampleSizes != null) {
+                return index < sampleSizes.length ? sampleSizes[index] : 0;
+            }
+            return constantSampleSize;
+        }
+
+        /**
+         * Whether the sync samples are listed (an stss table); without one
+         * every sample is a sync sample
+         */
+        public boolean hasSyncSamples() {
+            return syncSamples != null;
+        }
+
+        /**
+         * Whether a sample is a sync sample (keyframe)
+         *
+         * @param index Sample index, below getSampleCount()
+         * @return True if stss lists the sample or the track has no stss table
+         */
+        public boolean isSyncSample(int index) {
+            return syncSamples == null || Arrays.binarySearch(syncSamples, index) >= 0;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+    }
+}
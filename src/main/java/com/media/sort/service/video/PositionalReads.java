@@ -0,0 +1,34 @@
+package com.media.sort.service.video;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Positional reads shared by the container header parsers, which seek
+ * between the few header structures they need instead of streaming
+ * through the file.
+ */
+final class PositionalReads {
+
+    private PositionalReads() {
+    }
+
+    /**
+     * Reads exactly length bytes at a position into a buffer
+     *
+     * @return The buffer, flipped for reading with absolute gets
+     * @throws EOFException If the file ends first
+     */
+    static ByteBuffer read(FileChannel channel, ByteBuffer buffer, long position, int length) throws IOException {
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Unexpected end of file at " + (position + buffer.position()));
+            }
+        }
+        return buffer.flip();
+    }
+}
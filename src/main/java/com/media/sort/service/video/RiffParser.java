@@ -0,0 +1,202 @@
+package com.media.sort.service.video;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the recording date of RIFF AVI files from their chunk headers,
+ * seeking over the movi list and the index.
+ *
+ * Camcorders and cameras record it in one of three places, read in this
+ * order of preference: the IDIT chunk of the hdrl list, the EXIF block many
+ * still cameras put in a stream's strd chunk, and the ICRD item of the INFO
+ * list. All are local times without a zone, so they are read in the default
+ * time zone like EXIF dates.
+ */
+public final class RiffParser {
+
+    /**
+     * Extensions of RIFF AVI files
+     */
+    public static final Set<String> EXTENSIONS = Set.of("avi", "divx", "xvid");
+
+    /**
+     * Larger date and stream data chunks are skipped
+     */
+    static final int MAX_CHUNK_SIZE = 64 * 1024;
+
+    private static final int RIFF = fourCc("RIFF");
+    private static final int AVI = fourCc("AVI ");
+    private static final int LIST = fourCc("LIST");
+    private static final int HDRL = fourCc("hdrl");
+    private static final int STRL = fourCc("strl");
+    private static final int INFO = fourCc("INFO");
+    private static final int IDIT = fourCc("IDIT");
+    private static final int STRD = fourCc("strd");
+    private static final int ICRD = fourCc("ICRD");
+
+    /**
+     * Dates written as numbers: "2005:08:17 11:42:43", "2005/08/17 11:42", "2005-08-17"
+     */
+    private static final Pattern NUMERIC_DATE = Pattern.compile(
+            "(\\d{4})[:/.-](\\d{1,2})[:/.-](\\d{1,2})(?:[^\\d]+(\\d{1,2}):(\\d{2})(?::(\\d{2}))?)?");
+
+    /**
+     * EXIF date strings in a strd block
+     */
+    private static final Pattern EXIF_DATE = Pattern.compile("\\d{4}:\\d{2}:\\d{2} \\d{2}:\\d{2}:\\d{2}");
+
+    /**
+     * C library time format of most IDIT chunks: "THU OCT 21 10:30:00 2004"
+     */
+    private static final DateTimeFormatter CTIME = new DateTimeFormatterBuilder()
+            .parseCaseInsensitive()
+            .appendPattern("EEE MMM d HH:mm:ss yyyy")
+            .toFormatter(Locale.ENGLISH);
+
+    private final FileChannel channel;
+    private final ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+    private Date idit;
+    private Date streamData;
+    private Date infoCreated;
+
+    private RiffParser(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Reads the recording date of an AVI file
+     *
+     * @param file The file
+     * @return The date, or null if the file does not record one
+     * @throws IOException If the file cannot be read or is not a RIFF AVI file
+     */
+    public static Date readCreationDate(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new RiffParser(channel).parse(channel.size());
+        }
+    }
+
+    private Date parse(long fileSize) throws IOException {
+        if (fileSize < 12) {
+            throw new IOException("Not a RIFF AVI file");
+        }
+        ByteBuffer riff = read(header, 0, 12);
+        if (riff.getInt(0) != RIFF || riff.getInt(8) != AVI) {
+            throw new IOException("Not a RIFF AVI file");
+        }
+        long riffEnd = Math.min(fileSize, 8 + (riff.getInt(4) & 0xFFFFFFFFL));
+        parseChunks(12, riffEnd);
+        if (idit != null) {
+            return idit;
+        }
+        return streamData != null ? streamData : infoCreated;
+    }
+
+    /**
+     * Walks the chunks in [start, end), descending into the header, stream
+     * and INFO lists. Chunks are padded to an even size.
+     */
+    private void parseChunks(long start, long end) throws IOException {
+        long position = start;
+        while (position + 8 <= end && idit == null) {
+            ByteBuffer chunk = read(header, position, 8);
+            int id = chunk.getInt(0);
+            long size = chunk.getInt(4) & 0xFFFFFFFFL;
+            long payload = position + 8;
+            long chunkEnd = Math.min(end, payload + size);
+            if (id == LIST && size >= 4) {
+                int listType = read(header, payload, 4).getInt(0);
+                if (listType == HDRL || listType == STRL || listType == INFO) {
+                    parseChunks(payload + 4, chunkEnd);
+                }
+            } else if ((id == IDIT || id == STRD || id == ICRD) && size <= MAX_CHUNK_SIZE
+                    && payload + size <= end) {
+                ByteBuffer data = read(ByteBuffer.allocate((int) size), payload, (int) size);
+                String text = new String(data.array(), StandardCharsets.ISO_8859_1);
+                if (id == IDIT) {
+                    idit = parseDate(text);
+                } else if (id == STRD && streamData == null) {
+                    streamData = exifDate(text);
+                } else if (id == ICRD && infoCreated == null) {
+                    infoCreated = parseDate(text);
+                }
+            }
+            position = payload + size + (size & 1);
+        }
+    }
+
+    /**
+     * Parses a ctime-style or numeric local date
+     *
+     * @return The date, or null if the text is not a valid date
+     */
+    static Date parseDate(String text) {
+        String trimmed = text.replace('\u0000', ' ').trim().replaceAll("\\s+", " ");
+        try {
+            return toDate(LocalDateTime.parse(trimmed, CTIME));
+        } catch (DateTimeParseException e) {
+            // Not ctime, try the numeric forms
+        }
+        Matcher matcher = NUMERIC_DATE.matcher(trimmed);
+        if (!matcher.find()) {
+            return null;
+        }
+        try {
+            return toDate(LocalDateTime.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)),
+                    Integer.parseInt(matcher.group(3)), group(matcher, 4), group(matcher, 5), group(matcher, 6)));
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * First valid EXIF date (DateTime or DateTimeOriginal) in the stream
+     * data; unset dates ("0000:00:00 00:00:00") are skipped
+     */
+    private static Date exifDate(String text) {
+        Matcher matcher = EXIF_DATE.matcher(text);
+        while (matcher.find()) {
+            Date date = parseDate(matcher.group());
+            if (date != null) {
+                return date;
+            }
+        }
+        return null;
+    }
+
+    private static int group(Matcher matcher, int group) {
+        return matcher.group(group) != null ? Integer.parseInt(matcher.group(group)) : 0;
+    }
+
+    private static Date toDate(LocalDateTime dateTime) {
+        return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private ByteBuffer read(ByteBuffer buffer, long position, int length) throws IOException {
+        return PositionalReads.read(channel, buffer, position, length);
+    }
+
+    /**
+     * Four-character code as a little-endian int, the way it is read from the file
+     */
+    private static int fourCc(String code) {
+        return ByteBuffer.wrap(code.getBytes(StandardCharsets.ISO_8859_1)).order(ByteOrder.LITTLE_ENDIAN).getInt();
+    }
+}
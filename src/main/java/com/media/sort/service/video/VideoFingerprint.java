@@ -0,0 +1,203 @@
+package com.media.sort.service.video;
+
+import java.util.OptionalLong;
+
+/**
+ * Fingerprint of a video clip that survives re-encoding (messenger
+ * recompression, format conversion), built from the container alone.
+ *
+ * Duration and frame count identify the clip's timeline. Matching also
+ * needs a picture or content signal, because unrelated clips of the same
+ * length are common: the perceptual hash of the embedded cover art where
+ * both files have one, otherwise the bitrate profile. That is a dHash over
+ * the video track's sample sizes: the clip is cut into 65 equal runs of
+ * frames and bit i is set if run i + 1 takes more bytes per frame than run
+ * i. Busy and still passages cost more and fewer bytes in any encoder, so
+ * the profile follows the content, not the codec. Re-encodes that change the
+ * frame rate do not match.
+ *
+ * Frame sizes also follow the encoder's group of pictures: keyframes are
+ * several times larger than the frames between them, and B-frames smaller
+ * than P-frames. Two unrelated clips with the same cadence would share a
+ * profile drawn by where the keyframes fall, so sync samples (stss) are left
+ * out and every other frame counts relative to the clip's mean size at its
+ * position after the last keyframe.
+ *
+ * @param durationMillis    Movie duration
+ * @param frameCount        Samples in the video track
+ * @param width             Video track width, 0 if unknown
+ * @param height            Video track height, 0 if unknown
+ * @param bitrateProfile    dHash of the sample sizes, valid if hasBitrateProfile
+ * @param hasBitrateProfile Whether the track has enough frames and keyframes for a profile
+ * @param posterHash        Perceptual hash of the cover art, valid if hasPosterHash
+ * @param hasPosterHash     Whether the file embeds decodable cover art
+ */
+public record VideoFingerprint(long durationMillis, long frameCount, int width, int height,
+        long bitrateProfile, boolean hasBitrateProfile, long posterHash, boolean hasPosterHash) {
+
+    /**
+     * Durations may differ by this much, or by DURATION_TOLERANCE_RATIO of the
+     * longer one if that is more (encoder priming and edit lists)
+     */
+    static final long MIN_DURATION_TOLERANCE_MILLIS = 150;
+    private static final long DURATION_TOLERANCE_RATIO = 200;
+
+    /**
+     * Frame counts may differ by this much, or by 1 / FRAME_TOLERANCE_RATIO
+     */
+    private static final long MIN_FRAME_TOLERANCE = 2;
+    private static final long FRAME_TOLERANCE_RATIO = 200;
+
+    /**
+     * Width / height ratios (orientation ignored) may differ by this fraction
+     */
+    private static final double ASPECT_TOLERANCE = 0.02;
+
+    /**
+     * Bits of the bitrate profile that may differ; 32 of 64 differ for unrelated clips
+     */
+    static final int PROFILE_THRESHOLD = 14;
+
+    private static final int PROFILE_RUNS = 65;
+
+    /**
+     * Fewer frames per run and the profile follows the frame types instead of content
+     */
+    private static final int MIN_FRAMES_PER_RUN = 3;
+
+    /**
+     * Positions after a keyframe seen less often than this have no reliable
+     * mean size, so their frames are left out
+     */
+    private static final int MIN_FRAMES_PER_PHASE = 3;
+
+    /**
+     * Fingerprint of a parsed movie without cover art
+     *
+     * @return The fingerprint, or null if the movie has no video track or duration
+     */
+    public static VideoFingerprint of(Mp4Movie movie) {
+        Mp4Movie.Track video = movie.getTrack("vide");
+        long durationMillis = movie.getDurationMillis();
+        if (video == null || durationMillis <= 0) {
+            return null;
+        }
+        long frames = video.getSampleCount();
+        OptionalLong profile = frames >= (long) PROFILE_RUNS * MIN_FRAMES_PER_RUN && frames <= Integer.MAX_VALUE
+                && video.hasSampleSizes() ? bitrateProfile(video) : OptionalLong.empty();
+        return new VideoFingerprint(durationMillis, frames, video.getWidth(), video.getHeight(),
+                profile.orElse(0), profile.isPresent(), 0, false);
+    }
+
+    /**
+     * This fingerprint with the perceptual hash of the file's cover art
+     */
+    public VideoFingerprint withPosterHash(long hash) {
+        return new VideoFingerprint(durationMillis, frameCount, width, height, bitrateProfile, hasBitrateProfile,
+                hash, true);
+    }
+
+    /**
+     * Whether two fingerprints describe the same clip
+     *
+     * @param other           Another fingerprint
+     * @param posterThreshold Largest Hamming distance between matching cover art hashes
+     */
+    public boolean matches(VideoFingerprint other, int posterThreshold) {
+        long longer = Math.max(durationMillis, other.durationMillis);
+        if (Math.abs(durationMillis - other.durationMillis) > durationTolerance(longer)) {
+            return false;
+        }
+        long moreFrames = Math.max(frameCount, other.frameCount);
+        if (Math.abs(frameCount - other.frameCount)
+                > Math.max(MIN_FRAME_TOLERANCE, moreFrames / FRAME_TOLERANCE_RATIO)) {
+            return false;
+        }
+        if (!sameAspect(other)) {
+            return false;
+        }
+        if (hasPosterHash && other.hasPosterHash) {
+            return Long.bitCount(posterHash ^ other.posterHash) <= posterThreshold;
+        }
+        return hasBitrateProfile && other.hasBitrateProfile
+                && Long.bitCount(bitrateProfile ^ other.bitrateProfile) <= PROFILE_THRESHOLD;
+    }
+
+    /**
+     * Largest duration difference to a matching clip of about this duration
+     */
+    public static long durationTolerance(long durationMillis) {
+        return Math.max(MIN_DURATION_TOLERANCE_MILLIS, durationMillis / DURATION_TOLERANCE_RATIO);
+    }
+
+    /**
+     * Rotated re-encodes swap width and height, so the ratio of the longer
+     * side to the shorter one is compared
+     */
+    private boolean sameAspect(VideoFingerprint other) {
+        if (width <= 0 || height <= 0 || other.width <= 0 || other.height <= 0) {
+            return true;
+        }
+        double aspect = (double) Math.max(width, height) / Math.min(width, height);
+        double otherAspect = (double) Math.max(other.width, other.height) / Math.min(other.width, other.height);
+        return Math.abs(aspect - otherAspect) <= ASPECT_TOLERANCE * Math.max(aspect, otherAspect);
+    }
+
+    /**
+     * Frames are assigned to runs by index, which matches their timing for
+     * constant frame rate video and approximates it otherwise. The phase of
+     * a frame is its distance from the last sync sample; without an stss
+     * table every frame has phase 0 and counts as it is.
+     *
+     * @return The profile, or empty if a run keeps no frames (a clip with a
+     *         single group of pictures, or mostly keyframes)
+     */
+    private static OptionalLong bitrateProfile(Mp4Movie.Track video) {
+        int frames = (int) video.getSampleCount();
+        boolean syncTable = video.hasSyncSamples();
+        int[] phases = new int[frames];
+        int lastSync = 0;
+        for (int i = 0; i < frames; i++) {
+            if (syncTable && video.isSyncSample(i)) {
+                lastSync = i;
+                phases[i] = -1;
+            } else {
+                phases[i] = i - lastSync;
+            }
+        }
+
+        // Mean size of the non-sync frames at each phase
+        long[] phaseBytes = new long[frames];
+        int[] phaseCounts = new int[frames];
+        for (int i = 0; i < frames; i++) {
+            if (phases[i] >= 0) {
+                phaseBytes[phases[i]] += video.getSampleSize(i);
+                phaseCounts[phases[i]]++;
+            }
+        }
+
+        double[] runSizes = new double[PROFILE_RUNS];
+        int[] runCounts = new int[PROFILE_RUNS];
+        for (int i = 0; i < frames; i++) {
+            int phase = phases[i];
+            if (phase < 0 || phaseCounts[phase] < MIN_FRAMES_PER_PHASE || phaseBytes[phase] == 0) {
+                continue;
+            }
+            int run = (int) ((long) i * PROFILE_RUNS / frames);
+            runSizes[run] += (double) video.getSampleSize(i) * phaseCounts[phase] / phaseBytes[phase];
+            runCounts[run]++;
+        }
+
+        long hash = 0;
+        for (int i = 0; i < PROFILE_RUNS - 1; i++) {
+            if (runCounts[i] == 0 || runCounts[i + 1] == 0) {
+                return OptionalLong.empty();
+            }
+            // Runs keep different numbers of frames, so means are compared
+            if (runSizes[i + 1] * runCounts[i] > runSizes[i] * runCounts[i + 1]) {
+                hash |= 1L << i;
+            }
+        }
+        return OptionalLong.of(hash);
+    }
+}
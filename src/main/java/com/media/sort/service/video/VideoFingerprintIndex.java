@@ -0,0 +1,72 @@
+package com.media.sort.service.video;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Index of video fingerprints by duration, so a lookup only compares the
+ * clips whose duration is within the matching tolerance.
+ *
+ * Values are identified by reference so callers can keep the index in step
+ * with the duplicate map they maintain: put when an entry is added, remove
+ * when it is replaced or removed. Methods are synchronized, like
+ * PerceptualHashIndex.
+ */
+public final class VideoFingerprintIndex<T> {
+
+    private final NavigableMap<Long, List<T>> byDuration = new TreeMap<>();
+    private final Map<T, VideoFingerprint> fingerprints = new IdentityHashMap<>();
+
+    /**
+     * Adds a value, replacing its previous fingerprint
+     */
+    public synchronized void put(T value, VideoFingerprint fingerprint) {
+        remove(value);
+        fingerprints.put(value, fingerprint);
+        byDuration.computeIfAbsent(fingerprint.durationMillis(), duration -> new ArrayList<>(1)).add(value);
+    }
+
+    public synchronized void remove(T value) {
+        VideoFingerprint fingerprint = fingerprints.remove(value);
+        if (fingerprint == null) {
+            return;
+        }
+        List<T> values = byDuration.get(fingerprint.durationMillis());
+        values.removeIf(v -> v == value);
+        if (values.isEmpty()) {
+            byDuration.remove(fingerprint.durationMillis());
+        }
+    }
+
+    public synchronized int size() {
+        return fingerprints.size();
+    }
+
+    /**
+     * Values whose fingerprint matches, closest duration first; ties keep
+     * duration order, then the order they were added
+     *
+     * @param fingerprint     The fingerprint to look up
+     * @param posterThreshold Largest Hamming distance between matching cover art hashes
+     */
+    public synchronized List<T> findMatches(VideoFingerprint fingerprint, int posterThreshold) {
+        long duration = fingerprint.durationMillis();
+        // Tolerances grow with the longer duration, so search with the widest one a match can have
+        long tolerance = VideoFingerprint.durationTolerance(duration + VideoFingerprint.durationTolerance(duration));
+        List<T> matches = new ArrayList<>();
+        for (List<T> values : byDuration.subMap(duration - tolerance, true, duration + tolerance, true).values()) {
+            for (T value : values) {
+                if (fingerprint.matches(fingerprints.get(value), posterThreshold)) {
+                    matches.add(value);
+                }
+            }
+        }
+        matches.sort(Comparator.comparingLong(value -> Math.abs(fingerprints.get(value).durationMillis() - duration)));
+        return matches;
+    }
+}
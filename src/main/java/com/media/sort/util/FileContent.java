@@ -0,0 +1,133 @@
+package com.media.sort.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The bytes of one file read in a single pass, shared by every consumer that
+ * needs them (content digest, metadata parser, image decoder) so the file is
+ * opened and read only once.
+ *
+ * Files up to POOLED_CAPACITY are backed by a per-thread pooled array that is
+ * reused for the next file once this content is closed; larger files and a
+ * nested read on the same thread get their own array. The pooled array never
+ * grows, so every thread of the fixed I/O pool retains at most POOLED_CAPACITY.
+ * Consumers must not keep references to the bytes after close.
+ */
+public final class FileContent implements AutoCloseable {
+
+    /**
+     * Size of the per-thread pooled array; larger files get a one-off array
+     * that is released on close, so idle threads do not pin big buffers
+     */
+    static final int POOLED_CAPACITY = 4 * 1024 * 1024;
+
+    private static final ThreadLocal<byte[]> POOLED_ARRAY = ThreadLocal.withInitial(() -> new byte[POOLED_CAPACITY]);
+    private static final ThreadLocal<Boolean> POOLED_IN_USE = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final File file;
+    private final byte[] bytes;
+    private final int length;
+    private final boolean pooled;
+    private boolean closed;
+
+    private FileContent(File file, byte[] bytes, int length, boolean pooled) {
+        this.file = file;
+        this.bytes = bytes;
+        this.length = length;
+        this.pooled = pooled;
+    }
+
+    /**
+     * Reads a whole file if it is no larger than maxSize
+     *
+     * @param file    The file to read
+     * @param maxSize Largest file that may be held in memory
+     * @return The file's bytes, or null if the file is larger than maxSize
+     */
+    public static FileContent read(File file, long maxSize) throws IOException {
+        Path path = file.toPath();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > maxSize || size > Integer.MAX_VALUE - 8) {
+                return null;
+            }
+
+            boolean pooled = size <= POOLED_CAPACITY && !POOLED_IN_USE.get();
+            byte[] bytes;
+            if (pooled) {
+                bytes = POOLED_ARRAY.get();
+                POOLED_IN_USE.set(Boolean.TRUE);
+            } else {
+                bytes = new byte[(int) size];
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, (int) size);
+            try {
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, buffer.position()) < 0) {
+                        break; // File truncated while reading
+                    }
+                }
+            } catch (IOException e) {
+                if (pooled) {
+                    POOLED_IN_USE.set(Boolean.FALSE);
+                }
+                throw e;
+            }
+            return new FileContent(file, bytes, buffer.position(), pooled);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Number of bytes read
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * View of all bytes, positioned at the start. Heap-backed so digests can
+     * read the array directly; consumers must not write to it.
+     */
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(bytes, 0, length).slice();
+    }
+
+    /**
+     * View of a byte range, clamped to the end of the content
+     */
+    public ByteBuffer slice(long position, long size) {
+        int start = (int) Math.min(position, length);
+        int end = (int) Math.min(position + size, length);
+        return ByteBuffer.wrap(bytes, start, end - start).slice();
+    }
+
+    /**
+     * New stream over the bytes; each call starts at the beginning
+     */
+    public InputStream newInputStream() {
+        return new ByteArrayInputStream(bytes, 0, length);
+    }
+
+    /**
+     * Returns the pooled array for reuse by the next read on this thread
+     */
+    @Override
+    public void close() {
+        if (pooled && !closed) {
+            POOLED_IN_USE.set(Boolean.FALSE);
+        }
+        closed = true;
+    }
+}
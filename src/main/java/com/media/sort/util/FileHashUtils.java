@@ -0,0 +1,125 @@
+package com.media.sort.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.function.Consumer;
+
+/**
+ * Utility class for hashing file content with as little copying as possible.
+ * Ranges are read with positional reads into a per-thread direct buffer, and
+ * each thread reuses its own SHA-256 MessageDigest, so nothing is allocated
+ * per file apart from the resulting hash.
+ *
+ * Files are never memory-mapped: a mapping outlives the channel until it is
+ * garbage collected, and on Windows a live mapping blocks deleting, replacing
+ * or moving the file across volumes right after it was hashed.
+ */
+public final class FileHashUtils {
+
+    /**
+     * Size of the per-thread direct read buffer
+     */
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<ByteBuffer> READ_BUFFER = ThreadLocal
+            .withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    private static final ThreadLocal<MessageDigest> SHA256_DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 algorithm not available", e);
+        }
+    });
+
+    private FileHashUtils() {
+        // Utility class - prevent instantiation
+    }
+
+    /**
+     * Returns this thread's SHA-256 digest, reset and ready for use.
+     * The instance is shared by every call on the same thread, so it must be
+     * finished with digest() before the next call.
+     */
+    public static MessageDigest sha256Digest() {
+        MessageDigest digest = SHA256_DIGEST.get();
+        digest.reset();
+        return digest;
+    }
+
+    /**
+     * Calculates the SHA-256 hash of a whole file
+     *
+     * @param file The file to hash
+     * @return The 32-byte SHA-256 digest
+     */
+    public static byte[] sha256(Path file) throws IOException {
+        MessageDigest digest = sha256Digest();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            update(digest, channel, 0, channel.size());
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Feeds a byte range of an open channel into a digest
+     *
+     * @param digest   The digest to update
+     * @param channel  The channel to read from
+     * @param position Offset of the first byte to hash
+     * @param length   Number of bytes to hash
+     */
+    public static void update(MessageDigest digest, FileChannel channel, long position, long length)
+            throws IOException {
+        read(channel, position, length, digest::update);
+    }
+
+    /**
+     * Passes a byte range of an open channel to a consumer buffer by buffer,
+     * using the pooled direct buffer. Positional reads leave the channel
+     * position untouched.
+     * Buffers are only valid for the duration of the callback.
+     *
+     * @param channel  The channel to read from
+     * @param position Offset of the first byte to read
+     * @param length   Number of bytes to read
+     * @param sink     Receives each filled buffer
+     */
+    public static void read(FileChannel channel, long position, long length, Consumer<ByteBuffer> sink)
+            throws IOException {
+        long end = Math.min(position + length, channel.size());
+        ByteBuffer buffer = READ_BUFFER.get();
+        long offset = position;
+        while (offset < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - offset));
+            int bytesRead = channel.read(buffer, offset);
+            if (bytesRead < 0) {
+                break; // File truncated while reading
+            }
+            buffer.flip();
+            sink.accept(buffer);
+            offset += bytesRead;
+        }
+    }
+
+    /**
+     * Encodes bytes as lowercase hex using a lookup table
+     */
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int value = bytes[i] & 0xFF;
+            chars[i * 2] = HEX_DIGITS[value >>> 4];
+            chars[i * 2 + 1] = HEX_DIGITS[value & 0x0F];
+        }
+        return new String(chars);
+    }
+}
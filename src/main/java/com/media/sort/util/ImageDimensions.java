@@ -0,0 +1,108 @@
+package com.media.sort.util;
+
+import com.drew.metadata.Directory;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.bmp.BmpHeaderDirectory;
+import com.drew.metadata.exif.ExifSubIFDDirectory;
+import com.drew.metadata.gif.GifHeaderDirectory;
+import com.drew.metadata.heif.HeifDirectory;
+import com.drew.metadata.jpeg.JpegDirectory;
+import com.drew.metadata.png.PngDirectory;
+import com.drew.metadata.webp.WebpDirectory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Utility class for reading image dimensions without decoding pixels.
+ * Dimensions come from metadata that has already been parsed (JPEG SOF, PNG
+ * IHDR, HEIF ispe, GIF/BMP/WebP headers, EXIF pixel dimensions), or else from
+ * the header an ImageIO reader parses before it would read any image data.
+ */
+public final class ImageDimensions {
+
+    private ImageDimensions() {
+    }
+
+    /**
+     * Width and height in pixels, as stored (before EXIF orientation)
+     */
+    public record Size(int width, int height) {
+    }
+
+    private record Source(Class<? extends Directory> type, int widthTag, int heightTag) {
+    }
+
+    /**
+     * Metadata directories that carry dimensions, most reliable first.
+     * EXIF pixel dimensions come last: editors often leave them stale.
+     */
+    private static final List<Source> SOURCES = List.of(
+            new Source(JpegDirectory.class, JpegDirectory.TAG_IMAGE_WIDTH, JpegDirectory.TAG_IMAGE_HEIGHT),
+            new Source(PngDirectory.class, PngDirectory.TAG_IMAGE_WIDTH, PngDirectory.TAG_IMAGE_HEIGHT),
+            new Source(HeifDirectory.class, HeifDirectory.TAG_IMAGE_WIDTH, HeifDirectory.TAG_IMAGE_HEIGHT),
+            new Source(WebpDirectory.class, WebpDirectory.TAG_IMAGE_WIDTH, WebpDirectory.TAG_IMAGE_HEIGHT),
+            new Source(GifHeaderDirectory.class, GifHeaderDirectory.TAG_IMAGE_WIDTH,
+                    GifHeaderDirectory.TAG_IMAGE_HEIGHT),
+            new Source(BmpHeaderDirectory.class, BmpHeaderDirectory.TAG_IMAGE_WIDTH,
+                    BmpHeaderDirectory.TAG_IMAGE_HEIGHT),
+            new Source(ExifSubIFDDirectory.class, ExifSubIFDDirectory.TAG_EXIF_IMAGE_WIDTH,
+                    ExifSubIFDDirectory.TAG_EXIF_IMAGE_HEIGHT));
+
+    /**
+     * Dimensions from already-parsed metadata. Where a format has several
+     * directories of the same kind (HEIF stores an ispe for each tile and the
+     * thumbnail), the largest is the primary image.
+     *
+     * @return The dimensions, or null if no directory carries them
+     */
+    public static Size fromMetadata(Metadata metadata) {
+        if (metadata == null) {
+            return null;
+        }
+        for (Source source : SOURCES) {
+            Size largest = null;
+            for (Directory directory : metadata.getDirectoriesOfType(source.type())) {
+                Integer width = directory.getInteger(source.widthTag());
+                Integer height = directory.getInteger(source.heightTag());
+                if (width != null && height != null && width > 0 && height > 0
+                        && (largest == null || (long) width * height > (long) largest.width() * largest.height())) {
+                    largest = new Size(width, height);
+                }
+            }
+            if (largest != null) {
+                return largest;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Dimensions from the image header through ImageIO, without reading pixels
+     *
+     * @return The dimensions, or null if no ImageIO reader supports the file
+     */
+    public static Size fromHeader(File file) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return new Size(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
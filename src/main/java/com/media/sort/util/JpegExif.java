@@ -0,0 +1,401 @@
+package com.media.sort.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.regex.Pattern;
+
+/**
+ * The EXIF tags the organizer needs from a JPEG file, read from its header
+ * segments only: the APP1 EXIF segment (IFD0, the EXIF IFD and the GPS IFD)
+ * and the SOF segment for the pixel dimensions.
+ *
+ * The marker walk reads each segment header and only the payloads of APP1
+ * and SOF, and stops at SOF, so a photo costs a few small reads at the
+ * start of the file instead of a full metadata-extractor parse. Values are
+ * interpreted the way metadata-extractor does, so both paths give the same
+ * results: dates without an offset tag are UTC, subseconds are added and
+ * GPS coordinates are converted from degrees, minutes and seconds.
+ *
+ * @param dateTimeOriginal  DateTimeOriginal, or null
+ * @param dateTimeDigitized DateTimeDigitized, or null
+ * @param make              Camera manufacturer, or null
+ * @param model             Camera model, or null
+ * @param latitude          GPS latitude in degrees, or null
+ * @param longitude         GPS longitude in degrees, or null
+ * @param width             Width from SOF, 0 if not found
+ * @param height            Height from SOF, 0 if not found
+ */
+public record JpegExif(Date dateTimeOriginal, Date dateTimeDigitized, String make, String model,
+        Double latitude, Double longitude, int width, int height) {
+
+    /**
+     * Segments before SOF; more means a corrupt or unusual file
+     */
+    private static final int MAX_SEGMENTS = 64;
+
+    private static final int MARKER_APP1 = 0xE1;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_EOI = 0xD9;
+
+    private static final int TAG_MAKE = 0x010F;
+    private static final int TAG_MODEL = 0x0110;
+    private static final int TAG_EXIF_IFD = 0x8769;
+    private static final int TAG_GPS_IFD = 0x8825;
+    private static final int TAG_DATETIME_ORIGINAL = 0x9003;
+    private static final int TAG_DATETIME_DIGITIZED = 0x9004;
+    private static final int TAG_OFFSET_TIME_ORIGINAL = 0x9011;
+    private static final int TAG_OFFSET_TIME_DIGITIZED = 0x9012;
+    private static final int TAG_SUBSEC_TIME_ORIGINAL = 0x9291;
+    private static final int TAG_SUBSEC_TIME_DIGITIZED = 0x9292;
+    private static final int TAG_GPS_LATITUDE_REF = 0x0001;
+    private static final int TAG_GPS_LATITUDE = 0x0002;
+    private static final int TAG_GPS_LONGITUDE_REF = 0x0003;
+    private static final int TAG_GPS_LONGITUDE = 0x0004;
+
+    private static final int TYPE_ASCII = 2;
+    private static final int TYPE_LONG = 4;
+    private static final int TYPE_RATIONAL = 5;
+
+    private static final DateTimeFormatter EXIF_DATE = DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
+    private static final Pattern OFFSET = Pattern.compile("[+-]\\d\\d:\\d\\d");
+
+    /**
+     * Reads a byte range of the file; the result is shorter at the end of the file
+     */
+    @FunctionalInterface
+    private interface Source {
+        ByteBuffer read(long position, int length) throws IOException;
+    }
+
+    /**
+     * Reads the header segments of a JPEG file with positional reads
+     *
+     * @return The tags, or null if the file is not a JPEG file
+     */
+    public static JpegExif read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return read((position, length) -> {
+                ByteBuffer buffer = ByteBuffer.allocate(length);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, position + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+                return buffer.flip();
+            });
+        }
+    }
+
+    /**
+     * Reads the header segments of a JPEG file already in memory
+     *
+     * @param content The file's bytes, positioned at its start
+     * @return The tags, or null if the bytes are not a JPEG file
+     */
+    public static JpegExif read(ByteBuffer content) {
+        ByteBuffer bytes = content.slice();
+        try {
+            return read((position, length) -> {
+                int start = (int) Math.min(position, bytes.limit());
+                return bytes.slice(start, Math.min(length, bytes.limit() - start));
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // Not thrown by an in-memory source
+        }
+    }
+
+    private static JpegExif read(Source source) throws IOException {
+        ByteBuffer soi = source.read(0, 2);
+        if (soi.limit() < 2 || (soi.get(0) & 0xFF) != 0xFF || (soi.get(1) & 0xFF) != 0xD8) {
+            return null;
+        }
+
+        Tiff tiff = null;
+        int width = 0;
+        int height = 0;
+        long position = 2;
+        for (int segments = 0; segments < MAX_SEGMENTS; segments++) {
+            ByteBuffer header = source.read(position, 4);
+            if (header.limit() < 2 || (header.get(0) & 0xFF) != 0xFF) {
+                break; // End of file or not at a marker
+            }
+            int marker = header.get(1) & 0xFF;
+            if (marker == 0xFF) {
+                position++; // Fill byte
+                continue;
+            }
+            if (marker == MARKER_SOS || marker == MARKER_EOI || header.limit() < 4) {
+                break;
+            }
+            int length = header.getShort(2) & 0xFFFF;
+            if (length < 2) {
+                break;
+            }
+            if (marker == MARKER_APP1 && tiff == null) {
+                tiff = Tiff.of(source.read(position + 4, length - 2));
+            } else if (isStartOfFrame(marker)) {
+                ByteBuffer frame = source.read(position + 4, 5);
+                if (frame.limit() == 5) {
+                    height = frame.getShort(1) & 0xFFFF;
+                    width = frame.getShort(3) & 0xFFFF;
+                }
+                break; // The EXIF segment comes before the frame
+            }
+            position += 2 + length;
+        }
+
+        if (tiff == null) {
+            return new JpegExif(null, null, null, null, null, null, width, height);
+        }
+        return new JpegExif(tiff.dateOriginal(), tiff.dateDigitized(), tiff.make, tiff.model,
+                tiff.latitude(), tiff.longitude(), width, height);
+    }
+
+    /**
+     * SOF0 to SOF15, except DHT (C4), JPG (C8) and DAC (CC)
+     */
+    private static boolean isStartOfFrame(int marker) {
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+
+    /**
+     * The tags read from the TIFF structure of an APP1 EXIF segment
+     */
+    private static final class Tiff {
+
+        private final ByteBuffer buffer;
+        private String make;
+        private String model;
+        private String dateOriginal;
+        private String dateDigitized;
+        private String offsetOriginal;
+        private String offsetDigitized;
+        private String subsecOriginal;
+        private String subsecDigitized;
+        private String latitudeRef;
+        private String longitudeRef;
+        private double[] latitude;
+        private double[] longitude;
+
+        private Tiff(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Parses the payload of an APP1 segment
+         *
+         * @return The tags, or null if the segment is not an EXIF segment
+         */
+        static Tiff of(ByteBuffer segment) {
+            if (segment.limit() < 14 || segment.get(0) != 'E' || segment.get(1) != 'x' || segment.get(2) != 'i'
+                    || segment.get(3) != 'f' || segment.get(4) != 0 || segment.get(5) != 0) {
+                return null; // XMP or another APP1 segment
+            }
+            // TIFF offsets are relative to the byte order mark after "Exif\0\0"
+            ByteBuffer buffer = segment.slice(6, segment.limit() - 6);
+            int byteOrder = buffer.getShort(0) & 0xFFFF;
+            if (byteOrder == 0x4949) {
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+            } else if (byteOrder != 0x4D4D) {
+                return null;
+            }
+            if ((buffer.getShort(2) & 0xFFFF) != 42) {
+                return null;
+            }
+            Tiff tiff = new Tiff(buffer);
+            long exifIfd = -1;
+            long gpsIfd = -1;
+            for (int entry : tiff.entries(buffer.getInt(4) & 0xFFFFFFFFL)) {
+                switch (tiff.tag(entry)) {
+                    case TAG_MAKE -> tiff.make = tiff.string(entry);
+                    case TAG_MODEL -> tiff.model = tiff.string(entry);
+                    case TAG_EXIF_IFD -> exifIfd = tiff.offset(entry);
+                    case TAG_GPS_IFD -> gpsIfd = tiff.offset(entry);
+                    default -> {
+                        // Not used
+                    }
+                }
+            }
+            for (int entry : tiff.entries(exifIfd)) {
+                switch (tiff.tag(entry)) {
+                    case TAG_DATETIME_ORIGINAL -> tiff.dateOriginal = tiff.string(entry);
+                    case TAG_DATETIME_DIGITIZED -> tiff.dateDigitized = tiff.string(entry);
+                    case TAG_OFFSET_TIME_ORIGINAL -> tiff.offsetOriginal = tiff.string(entry);
+                    case TAG_OFFSET_TIME_DIGITIZED -> tiff.offsetDigitized = tiff.string(entry);
+                    case TAG_SUBSEC_TIME_ORIGINAL -> tiff.subsecOriginal = tiff.string(entry);
+                    case TAG_SUBSEC_TIME_DIGITIZED -> tiff.subsecDigitized = tiff.string(entry);
+                    default -> {
+                        // Not used
+                    }
+                }
+            }
+            for (int entry : tiff.entries(gpsIfd)) {
+                switch (tiff.tag(entry)) {
+                    case TAG_GPS_LATITUDE_REF -> tiff.latitudeRef = tiff.string(entry);
+                    case TAG_GPS_LATITUDE -> tiff.latitude = tiff.rationals(entry);
+                    case TAG_GPS_LONGITUDE_REF -> tiff.longitudeRef = tiff.string(entry);
+                    case TAG_GPS_LONGITUDE -> tiff.longitude = tiff.rationals(entry);
+                    default -> {
+                        // Not used
+                    }
+                }
+            }
+            return tiff;
+        }
+
+        Date dateOriginal() {
+            return date(dateOriginal, subsecOriginal, offsetOriginal);
+        }
+
+        Date dateDigitized() {
+            return date(dateDigitized, subsecDigitized, offsetDigitized);
+        }
+
+        Double latitude() {
+            return hasLocation() ? degrees(latitude, latitudeRef, "S") : null;
+        }
+
+        Double longitude() {
+            return hasLocation() ? degrees(longitude, longitudeRef, "W") : null;
+        }
+
+        /**
+         * Both coordinates with their references, as metadata-extractor requires
+         */
+        private boolean hasLocation() {
+            return latitude != null && longitude != null && latitudeRef != null && longitudeRef != null
+                    && degrees(latitude, latitudeRef, "S") != null && degrees(longitude, longitudeRef, "W") != null;
+        }
+
+        /**
+         * Offsets of the 12-byte entries of an IFD; empty if the IFD is
+         * missing or does not fit in the segment
+         */
+        private int[] entries(long ifd) {
+            if (ifd < 8 || ifd + 2 > buffer.limit()) {
+                return new int[0];
+            }
+            int count = buffer.getShort((int) ifd) & 0xFFFF;
+            int fitting = (int) Math.min(count, (buffer.limit() - ifd - 2) / 12);
+            int[] entries = new int[fitting];
+            for (int i = 0; i < fitting; i++) {
+                entries[i] = (int) ifd + 2 + 12 * i;
+            }
+            return entries;
+        }
+
+        private int tag(int entry) {
+            return buffer.getShort(entry) & 0xFFFF;
+        }
+
+        /**
+         * Value of a LONG entry holding an IFD offset
+         */
+        private long offset(int entry) {
+            return (buffer.getShort(entry + 2) & 0xFFFF) == TYPE_LONG ? buffer.getInt(entry + 8) & 0xFFFFFFFFL : -1;
+        }
+
+        /**
+         * Value of an ASCII entry up to its first NUL, or null
+         */
+        private String string(int entry) {
+            if ((buffer.getShort(entry + 2) & 0xFFFF) != TYPE_ASCII) {
+                return null;
+            }
+            long count = buffer.getInt(entry + 4) & 0xFFFFFFFFL;
+            int data = data(entry, count);
+            if (data < 0) {
+                return null;
+            }
+            int end = data;
+            while (end < data + count && buffer.get(end) != 0) {
+                end++;
+            }
+            byte[] bytes = new byte[end - data];
+            buffer.get(data, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Values of a RATIONAL entry with three components, or null
+         */
+        private double[] rationals(int entry) {
+            long count = buffer.getInt(entry + 4) & 0xFFFFFFFFL;
+            if ((buffer.getShort(entry + 2) & 0xFFFF) != TYPE_RATIONAL || count != 3) {
+                return null;
+            }
+            int data = data(entry, 8 * count);
+            if (data < 0) {
+                return null;
+            }
+            double[] values = new double[3];
+            for (int i = 0; i < 3; i++) {
+                long numerator = buffer.getInt(data + 8 * i) & 0xFFFFFFFFL;
+                long denominator = buffer.getInt(data + 8 * i + 4) & 0xFFFFFFFFL;
+                values[i] = numerator == 0 ? 0 : (double) numerator / denominator;
+            }
+            return values;
+        }
+
+        /**
+         * Position of an entry's data: inline if it fits in 4 bytes, otherwise at its offset
+         *
+         * @return The position, or -1 if the data does not fit in the segment
+         */
+        private int data(int entry, long size) {
+            long position = size <= 4 ? entry + 8 : buffer.getInt(entry + 8) & 0xFFFFFFFFL;
+            return position + size <= buffer.limit() ? (int) position : -1;
+        }
+
+        /**
+         * An EXIF date, in the offset of its offset tag or else UTC, plus its subseconds
+         */
+        private static Date date(String value, String subsec, String offset) {
+            if (value == null) {
+                return null;
+            }
+            try {
+                ZoneOffset zone = offset != null && OFFSET.matcher(offset).matches()
+                        ? ZoneOffset.of(offset) : ZoneOffset.UTC;
+                long millis = LocalDateTime.parse(value.trim(), EXIF_DATE).toInstant(zone).toEpochMilli();
+                return new Date(millis + subsecondMillis(subsec));
+            } catch (DateTimeException e) {
+                return null; // "0000:00:00 00:00:00" or another format: left to the full parser
+            }
+        }
+
+        private static int subsecondMillis(String subsec) {
+            if (subsec == null || subsec.isBlank()) {
+                return 0;
+            }
+            try {
+                int millis = (int) (Double.parseDouble("." + subsec.trim()) * 1000);
+                return millis >= 0 && millis < 1000 ? millis : 0;
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        /**
+         * Degrees, minutes and seconds as signed decimal degrees; null if a
+         * component is not a finite number
+         */
+        private static Double degrees(double[] dms, String ref, String negative) {
+            double degrees = Math.abs(dms[0]) + dms[1] / 60 + dms[2] / 3600;
+            if (Double.isNaN(degrees) || Double.isInfinite(degrees)) {
+                return null;
+            }
+            return ref.trim().equalsIgnoreCase(negative) ? -degrees : degrees;
+        }
+    }
+}
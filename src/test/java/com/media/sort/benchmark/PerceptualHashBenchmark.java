@@ -0,0 +1,128 @@
+package com.media.sort.benchmark;
+
+import com.media.sort.service.phash.DctKernel;
+import com.media.sort.service.phash.GrayscaleDownscaler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the stages of PerceptualHashService before and after optimization:
+ * the direct N^4 DCT against the separable DctKernel on the default 32x32
+ * input, and Image.SCALE_SMOOTH against GrayscaleDownscaler on a 24 MP photo.
+ *
+ * Run from the IDE via main(), or after mvn test-compile with the test
+ * classpath: java -cp ... com.media.sort.benchmark.PerceptualHashBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PerceptualHashBenchmark {
+
+    private static final int SIZE = 32;
+    private static final int BLOCK = 8;
+
+    private double[][] image;
+    private double[] flatImage;
+    private final DctKernel kernel = new DctKernel(SIZE, BLOCK);
+    private final double[] coefficients = new double[BLOCK * BLOCK];
+
+    private BufferedImage photo;
+    private final GrayscaleDownscaler downscaler = new GrayscaleDownscaler(SIZE);
+    private final double[] gray = new double[SIZE * SIZE];
+
+    @Setup(Level.Trial)
+    public void createImage() {
+        Random random = new Random(42);
+        image = new double[SIZE][SIZE];
+        flatImage = new double[SIZE * SIZE];
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                image[y][x] = random.nextInt(256);
+                flatImage[y * SIZE + x] = image[y][x];
+            }
+        }
+
+        // 6000 x 4000 in the layout ImageIO decodes JPEGs to
+        photo = new BufferedImage(6000, 4000, BufferedImage.TYPE_3BYTE_BGR);
+        random.nextBytes(((DataBufferByte) photo.getRaster().getDataBuffer()).getData());
+    }
+
+    /**
+     * The former PerceptualHashService.applyDCT: full N x N output with two
+     * Math.cos calls per multiply-add
+     */
+    @Benchmark
+    public double[][] directDct() {
+        int n = image.length;
+        double[][] output = new double[n][n];
+        for (int u = 0; u < n; u++) {
+            for (int v = 0; v < n; v++) {
+                double sum = 0.0;
+                for (int i = 0; i < n; i++) {
+                    for (int j = 0; j < n; j++) {
+                        sum += image[i][j] *
+                                Math.cos(((2 * i + 1) / (2.0 * n)) * u * Math.PI) *
+                                Math.cos(((2 * j + 1) / (2.0 * n)) * v * Math.PI);
+                    }
+                }
+                double cu = (u == 0) ? 1 / Math.sqrt(2.0) : 1.0;
+                double cv = (v == 0) ? 1 / Math.sqrt(2.0) : 1.0;
+                output[u][v] = 0.25 * cu * cv * sum;
+            }
+        }
+        return output;
+    }
+
+    @Benchmark
+    public double[] separableKernel() {
+        kernel.transform(flatImage, coefficients);
+        return coefficients;
+    }
+
+    /**
+     * The former PerceptualHashService.resize
+     */
+    @Benchmark
+    public BufferedImage smoothScale() {
+        Image tmp = photo.getScaledInstance(SIZE, SIZE, Image.SCALE_SMOOTH);
+        BufferedImage resized = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = resized.createGraphics();
+        g2d.drawImage(tmp, 0, 0, null);
+        g2d.dispose();
+        return resized;
+    }
+
+    @Benchmark
+    public double[] areaAverageDownscale() {
+        downscaler.downscale(photo, gray);
+        return gray;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PerceptualHashBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
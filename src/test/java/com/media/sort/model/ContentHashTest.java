@@ -0,0 +1,60 @@
+package com.media.sort.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ContentHash
+ */
+class ContentHashTest {
+
+    private static final String SHA256_ABC = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+    @Test
+    void testFromHex_RoundTripsDigest() {
+        ContentHash hash = ContentHash.fromHex(ContentHash.Kind.FULL, SHA256_ABC);
+
+        assertEquals(SHA256_ABC, hash.toHex());
+        assertEquals(SHA256_ABC, hash.toString());
+    }
+
+    @Test
+    void testEquals_SameDigestFromBytesAndHex() throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest("abc".getBytes());
+
+        ContentHash fromBytes = ContentHash.of(ContentHash.Kind.FULL, digest);
+        ContentHash fromHex = ContentHash.fromHex(ContentHash.Kind.FULL, SHA256_ABC);
+
+        assertEquals(fromHex, fromBytes);
+        assertEquals(fromHex.hashCode(), fromBytes.hashCode());
+    }
+
+    @Test
+    void testEquals_KindSeparatesKeys() {
+        ContentHash full = ContentHash.fromHex(ContentHash.Kind.FULL, SHA256_ABC);
+        ContentHash partial = ContentHash.fromHex(ContentHash.Kind.PARTIAL, SHA256_ABC);
+
+        assertNotEquals(full, partial);
+        assertEquals("partial:" + SHA256_ABC, partial.toString());
+    }
+
+    @Test
+    void testShortDigest_KeepsLength() {
+        ContentHash xxh64 = ContentHash.fromHex(ContentHash.Kind.FULL, "44bc2cf5ad770999");
+        ContentHash padded = ContentHash.of(ContentHash.Kind.FULL, HexFormat.of().parseHex("44bc2cf5ad77099900"));
+
+        assertEquals("44bc2cf5ad770999", xxh64.toHex());
+        assertNotEquals(xxh64, padded);
+    }
+
+    @Test
+    void testSizeAndUniqueKeys() {
+        assertEquals(ContentHash.ofSize(1234), ContentHash.ofSize(1234));
+        assertEquals("size:1234", ContentHash.ofSize(1234).toString());
+        assertNotEquals(ContentHash.unique(), ContentHash.unique());
+    }
+}
@@ -0,0 +1,52 @@
+package com.media.sort.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for FileSizeIndex
+ */
+class FileSizeIndexTest {
+
+    private FileSizeIndex fileSizeIndex;
+
+    @BeforeEach
+    void setUp() {
+        fileSizeIndex = new FileSizeIndex();
+    }
+
+    @Test
+    void testHasSizePeers_EmptyIndexTreatsEveryFileAsCandidate() {
+        assertTrue(fileSizeIndex.hasSizePeers(1234L));
+    }
+
+    @Test
+    void testHasSizePeers_UniqueSizeIsSkipped() {
+        fileSizeIndex.register(100L);
+        fileSizeIndex.register(200L);
+        fileSizeIndex.register(200L);
+
+        assertFalse(fileSizeIndex.hasSizePeers(100L));
+        assertTrue(fileSizeIndex.hasSizePeers(200L));
+        assertEquals(2, fileSizeIndex.getFilesWithPeers());
+        assertEquals(3, fileSizeIndex.getRegisteredFiles());
+    }
+
+    @Test
+    void testHasSizePeers_UnregisteredSizeIsHashed() {
+        fileSizeIndex.register(100L);
+
+        assertTrue(fileSizeIndex.hasSizePeers(999L));
+    }
+
+    @Test
+    void testClear_ResetsIndex() {
+        fileSizeIndex.register(100L);
+        fileSizeIndex.clear();
+
+        assertEquals(0, fileSizeIndex.getRegisteredFiles());
+        assertTrue(fileSizeIndex.hasSizePeers(100L));
+    }
+}
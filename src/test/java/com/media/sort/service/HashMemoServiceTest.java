@@ -0,0 +1,63 @@
+package com.media.sort.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for HashMemoService
+ */
+class HashMemoServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private BasicFileAttributes attributesOf(Path file) throws Exception {
+        return Files.readAttributes(file, BasicFileAttributes.class);
+    }
+
+    @Test
+    void testLookup_ReturnsRecordedHashAfterReload() throws Exception {
+        Path memoFile = tempDir.resolve("memo.tsv");
+        Path file = Files.writeString(tempDir.resolve("photo.jpg"), "content");
+
+        HashMemoService memo = new HashMemoService(memoFile);
+        memo.record("SHA256", file, attributesOf(file), "abc123");
+        memo.close();
+
+        HashMemoService reloaded = new HashMemoService(memoFile);
+        assertEquals("abc123", reloaded.lookup("SHA256", file, attributesOf(file)));
+        assertNull(reloaded.lookup("XXH64", file, attributesOf(file)));
+    }
+
+    @Test
+    void testLookup_ChangedFileIsRecomputed() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("photo.jpg"), "content");
+        HashMemoService memo = new HashMemoService(tempDir.resolve("memo.tsv"));
+        memo.record("SHA256", file, attributesOf(file), "abc123");
+
+        Files.writeString(file, "changed content");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+
+        assertNull(memo.lookup("SHA256", file, attributesOf(file)));
+    }
+
+    @Test
+    void testRecordMove_CarriesHashToNewPath() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("photo.jpg"), "content");
+        HashMemoService memo = new HashMemoService(tempDir.resolve("memo.tsv"));
+        memo.record("SHA256", file, attributesOf(file), "abc123");
+
+        Path moved = Files.move(file, tempDir.resolve("moved.jpg"));
+        memo.recordMove(file, moved);
+
+        assertEquals("abc123", memo.lookup("SHA256", moved, attributesOf(moved)));
+        assertEquals(1, memo.size());
+    }
+}
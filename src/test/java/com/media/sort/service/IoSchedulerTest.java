@@ -0,0 +1,164 @@
+package com.media.sort.service;
+
+import com.media.sort.config.MediaSortingConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for per-device limits in IoScheduler
+ */
+class IoSchedulerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private MediaSortingConfig config;
+    private IoScheduler ioScheduler;
+
+    @BeforeEach
+    void setUp() {
+        config = new MediaSortingConfig();
+        config.getIo().setMaxThreads(8);
+        ioScheduler = new IoScheduler(config);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ioScheduler.shutdown();
+    }
+
+    private MediaSortingConfig.Io.DeviceLimit limitFor(Path path, int maxFiles) {
+        MediaSortingConfig.Io.DeviceLimit limit = new MediaSortingConfig.Io.DeviceLimit();
+        limit.setPath(path.toString());
+        limit.setMaxFilesInFlight(maxFiles);
+        return limit;
+    }
+
+    private int maxConcurrency(Path folder, int files) throws Exception {
+        Files.createDirectories(folder);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < files; i++) {
+            Path file = Files.writeString(folder.resolve("file" + i + ".jpg"), "content " + i);
+            futures.add(ioScheduler.submit(file, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(50);
+                running.decrementAndGet();
+                return 1;
+            }));
+        }
+        for (CompletableFuture<Integer> future : futures) {
+            assertEquals(1, future.get());
+        }
+        return maxRunning.get();
+    }
+
+    @Test
+    void testSubmit_DeviceLimitCapsFilesInFlight() throws Exception {
+        Path slowDevice = tempDir.resolve("usb");
+        config.getIo().getDevices().add(limitFor(slowDevice, 1));
+
+        assertEquals(1, maxConcurrency(slowDevice, 6));
+    }
+
+    @Test
+    void testSubmit_DefaultLimitAllowsConcurrentReads() throws Exception {
+        config.getIo().setMaxFilesInFlight(3);
+
+        int maxRunning = maxConcurrency(tempDir.resolve("ssd"), 9);
+        assertTrue(maxRunning > 1 && maxRunning <= 3, "Expected 2-3 files in flight but was " + maxRunning);
+    }
+
+    @Test
+    void testQueueFor_LongestConfiguredPathWins() throws Exception {
+        Path outer = Files.createDirectories(tempDir.resolve("media"));
+        Path inner = Files.createDirectories(outer.resolve("usb"));
+        config.getIo().getDevices().add(limitFor(outer, 4));
+        config.getIo().getDevices().add(limitFor(inner, 1));
+
+        assertEquals(inner.toString(), ioScheduler.getDeviceName(inner.resolve("a.jpg")));
+        assertEquals(outer.toString(), ioScheduler.getDeviceName(outer.resolve("b.jpg")));
+    }
+
+    @Test
+    void testSubmit_SynchronousModeRunsOnCallingThread() throws Exception {
+        config.getIo().setAsync(false);
+        Path file = Files.writeString(tempDir.resolve("photo.jpg"), "content");
+        Thread caller = Thread.currentThread();
+
+        assertTrue(ioScheduler.submit(file, () -> Thread.currentThread() == caller).get());
+    }
+
+    @Test
+    void testSubmit_TaskFailureCompletesExceptionally() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("broken.jpg"), "content");
+
+        CompletableFuture<Object> future = ioScheduler.submit(file, () -> {
+            throw new IllegalStateException("decode failed");
+        });
+        assertThrows(Exception.class, future::get);
+    }
+
+    @Test
+    void testChunkSize_CoversThePoolWhenAsync() {
+        assertEquals(8, ioScheduler.chunkSize(4));
+        assertEquals(100, ioScheduler.chunkSize(100));
+
+        config.getIo().setAsync(false);
+        assertEquals(4, ioScheduler.chunkSize(4));
+    }
+
+    @Test
+    void testSubmit_QueuedFilesDoNotHoldPoolThreads() throws Exception {
+        config.getIo().setMaxThreads(2);
+        Path slowDevice = Files.createDirectories(tempDir.resolve("usb"));
+        config.getIo().getDevices().add(limitFor(slowDevice, 1));
+        CountDownLatch slowRead = new CountDownLatch(1);
+
+        List<CompletableFuture<Boolean>> slow = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Path file = Files.writeString(slowDevice.resolve("clip" + i + ".mp4"), "content " + i);
+            slow.add(ioScheduler.submit(file, () -> slowRead.await(10, TimeUnit.SECONDS)));
+        }
+        Path fastFile = Files.writeString(Files.createDirectories(tempDir.resolve("ssd")).resolve("photo.jpg"),
+                "content");
+
+        // One pool thread reads from the USB disk; the other is free for the SSD
+        assertTrue(ioScheduler.submit(fastFile, () -> true).get(5, TimeUnit.SECONDS));
+        slowRead.countDown();
+        for (CompletableFuture<Boolean> future : slow) {
+            assertTrue(future.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void testDeviceQueue_WaitingTaskHoldsNoFileSlot() throws Exception {
+        IoScheduler.DeviceQueue queue = new IoScheduler.DeviceQueue("disk", 2, 8 * 1024);
+        int units = queue.acquire(8 * 1024);
+        AtomicBoolean started = new AtomicBoolean();
+
+        queue.enqueue(4 * 1024, granted -> started.set(true));
+
+        assertFalse(started.get(), "The byte budget is taken");
+        assertEquals(1, queue.getAvailableFiles());
+        queue.release(units);
+        assertTrue(started.get());
+        assertEquals(1, queue.getAvailableFiles());
+    }
+}
@@ -0,0 +1,101 @@
+package com.media.sort.service;
+
+import com.media.sort.model.ContentHash;
+import com.media.sort.util.FileContent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the tiered fingerprint in MediaFileService
+ */
+class MediaFileServiceFingerprintTest {
+
+    private static final int LARGE_FILE_SIZE = 2 * 1024 * 1024;
+
+    @TempDir
+    Path tempDir;
+
+    private MediaFileService mediaFileService;
+
+    @BeforeEach
+    void setUp() {
+        mediaFileService = new MediaFileService();
+    }
+
+    private Path createFile(String name, int size, int changedOffset) throws IOException {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        if (changedOffset >= 0) {
+            content[changedOffset] ^= 0x55;
+        }
+        return Files.write(tempDir.resolve(name), content);
+    }
+
+    @Test
+    void testCalculateFingerprint_SmallFileUsesFullHash() throws Exception {
+        Path file = createFile("small.jpg", 4096, -1);
+
+        assertEquals(mediaFileService.calculateContentHash(file), mediaFileService.calculateFingerprint(file));
+    }
+
+    @Test
+    void testCalculateFingerprint_LargeFileUsesPartialKey() throws Exception {
+        Path file = createFile("large.mp4", LARGE_FILE_SIZE, -1);
+
+        assertEquals(ContentHash.Kind.PARTIAL, mediaFileService.calculateFingerprint(file).getKind());
+    }
+
+    @Test
+    void testResolveFingerprint_IdenticalFilesKeepPartialKey() throws Exception {
+        Path original = createFile("original.mp4", LARGE_FILE_SIZE, -1);
+        Path copy = createFile("copy.mp4", LARGE_FILE_SIZE, -1);
+
+        Map<ContentHash, Path> map = new HashMap<>();
+        ContentHash key = mediaFileService.calculateFingerprint(original);
+        map.put(key, original);
+
+        ContentHash copyKey = mediaFileService.resolveFingerprint(map, mediaFileService.calculateFingerprint(copy),
+                copy, Function.identity());
+        assertEquals(key, copyKey);
+    }
+
+    @Test
+    void testResolveFingerprint_CollisionUpgradesToFullHash() throws Exception {
+        // Byte 100000 lies between the head block and the first sampled block
+        Path original = createFile("original.mp4", LARGE_FILE_SIZE, -1);
+        Path different = createFile("different.mp4", LARGE_FILE_SIZE, 100_000);
+
+        ContentHash key = mediaFileService.calculateFingerprint(original);
+        assertEquals(key, mediaFileService.calculateFingerprint(different));
+
+        Map<ContentHash, Path> map = new HashMap<>();
+        map.put(key, original);
+
+        ContentHash resolved = mediaFileService.resolveFingerprint(map, key, different, Function.identity());
+        assertEquals(mediaFileService.calculateContentHash(different), resolved);
+    }
+
+    @Test
+    void testCalculateHashKey_InMemoryContentMatchesDiskRead() throws Exception {
+        Path small = createFile("small.jpg", 4096, -1);
+        Path large = createFile("large.jpg", LARGE_FILE_SIZE, -1);
+
+        for (Path file : new Path[] { small, large }) {
+            try (FileContent content = FileContent.read(file.toFile(), Long.MAX_VALUE)) {
+                assertEquals(mediaFileService.calculateHashKey(file), mediaFileService.calculateHashKey(file, content));
+            }
+        }
+    }
+}
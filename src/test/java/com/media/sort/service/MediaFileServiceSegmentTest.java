@@ -0,0 +1,86 @@
+package com.media.sort.service;
+
+import com.media.sort.config.MediaSortingConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the segment digests MediaFileService keeps for tree-hashed files
+ */
+class MediaFileServiceSegmentTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+    private static final int FILE_SIZE = 32 * SEGMENT_SIZE;
+
+    @TempDir
+    Path tempDir;
+
+    private HashMemoService hashMemoService;
+    private MediaFileService mediaFileService;
+
+    @BeforeEach
+    void setUp() {
+        MediaSortingConfig config = new MediaSortingConfig();
+        config.getHashing().setTreeHashMinFileSize(FILE_SIZE);
+        config.getHashing().setTreeSegmentSize(SEGMENT_SIZE);
+        hashMemoService = new HashMemoService(tempDir.resolve("hash-memo.tsv"));
+        mediaFileService = new MediaFileService(config, hashMemoService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mediaFileService.shutdown();
+        hashMemoService.close();
+    }
+
+    private Path createFile(String name, int changedOffset) throws IOException {
+        byte[] content = new byte[FILE_SIZE];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31 + i / 251);
+        }
+        if (changedOffset >= 0) {
+            content[changedOffset] ^= 0x55;
+        }
+        return Files.write(tempDir.resolve(name), content);
+    }
+
+    @Test
+    void testVerifySegments_LocatesCorruptedSegment() throws Exception {
+        Path file = createFile("video.mp4", -1);
+        mediaFileService.calculateHash(file);
+        assertTrue(mediaFileService.verifySegments(file).isEmpty());
+
+        createFile("video.mp4", 5 * SEGMENT_SIZE + 100);
+
+        assertEquals(List.of(5), mediaFileService.verifySegments(file));
+    }
+
+    @Test
+    void testVerifySegments_DigestsFollowMovedFile() throws Exception {
+        Path file = createFile("video.mp4", -1);
+        mediaFileService.calculateHash(file);
+
+        Path moved = Files.move(file, Files.createDirectories(tempDir.resolve("Videos")).resolve("video.mp4"));
+        hashMemoService.recordMove(file, moved);
+
+        assertTrue(mediaFileService.verifySegments(moved).isEmpty());
+        assertThrows(IOException.class, () -> mediaFileService.verifySegments(file));
+    }
+
+    @Test
+    void testVerifySegments_NoDigestsForSmallFile() throws Exception {
+        Path file = Files.write(tempDir.resolve("photo.jpg"), new byte[SEGMENT_SIZE]);
+        mediaFileService.calculateHash(file);
+
+        assertThrows(IOException.class, () -> mediaFileService.verifySegments(file));
+    }
+}
@@ -0,0 +1,73 @@
+package com.media.sort.service;
+
+import com.media.sort.model.ContentHash;
+import com.media.sort.model.ExifData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for OriginalContentIndex
+ */
+class OriginalContentIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private OriginalContentIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new OriginalContentIndex();
+    }
+
+    private ExifData indexedFile(String name, String content) throws IOException {
+        Path file = Files.writeString(tempDir.resolve(name), content);
+        ExifData exifData = new ExifData();
+        exifData.setFile(file.toFile());
+        exifData.setContentHash(ContentHash.ofSize(content.length()));
+        exifData.setImageWidth(640);
+        exifData.setImageHeight(480);
+        index.put(exifData);
+        return exifData;
+    }
+
+    @Test
+    void testGet_ReturnsIndexedMetadata() throws Exception {
+        ExifData exifData = indexedFile("IMG_0001.jpg", "original");
+
+        ExifData found = index.get(tempDir.resolve("IMG_0001.jpg"));
+        assertSame(exifData, found);
+        assertEquals(640, found.getImageWidth());
+    }
+
+    @Test
+    void testGet_ResolvesRelativeAndUnnormalizedPaths() throws Exception {
+        ExifData exifData = indexedFile("IMG_0002.jpg", "original");
+
+        assertSame(exifData, index.get(tempDir.resolve("sub/../IMG_0002.jpg")));
+    }
+
+    @Test
+    void testGet_ChangedFileIsNotReturned() throws Exception {
+        indexedFile("IMG_0003.jpg", "original");
+        Files.writeString(tempDir.resolve("IMG_0003.jpg"), "replaced with other content");
+
+        assertNull(index.get(tempDir.resolve("IMG_0003.jpg")));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void testRemove_ForgetsMovedFile() throws Exception {
+        indexedFile("IMG_0004.jpg", "original");
+
+        index.remove(tempDir.resolve("IMG_0004.jpg"));
+        assertNull(index.get(tempDir.resolve("IMG_0004.jpg")));
+    }
+}
@@ -0,0 +1,94 @@
+package com.media.sort.service;
+
+import com.media.sort.model.ContentHash;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for PerceptualHashCache
+ */
+class PerceptualHashCacheTest {
+
+    private static final String KIND = "phash:32:8:t96:256";
+
+    @TempDir
+    Path tempDir;
+
+    private final AtomicInteger decodes = new AtomicInteger();
+
+    private Supplier<PerceptualHashService.ImageHash> decode(long hash) {
+        return () -> {
+            decodes.incrementAndGet();
+            return new PerceptualHashService.ImageHash(hash, 4000, 3000);
+        };
+    }
+
+    @Test
+    void testComputeIfAbsent_SameContentDecodedOnceAcrossRunsAndPaths() throws Exception {
+        Path cacheFile = tempDir.resolve("cache.tsv");
+        ContentHash content = ContentHash.fromHex(ContentHash.Kind.FULL, "00ff".repeat(16));
+        File original = new File(tempDir.toFile(), "a/photo.jpg");
+        File copy = new File(tempDir.toFile(), "b/copy.jpg");
+
+        PerceptualHashCache cache = new PerceptualHashCache(cacheFile, null);
+        assertEquals(0xF00DL, cache.computeIfAbsent(KIND, content, original, decode(0xF00DL)).hash());
+        assertEquals(0xF00DL, cache.computeIfAbsent(KIND, content, copy, decode(0xBADL)).hash());
+        cache.close();
+
+        PerceptualHashCache reloaded = new PerceptualHashCache(cacheFile, null);
+        PerceptualHashService.ImageHash cached = reloaded.computeIfAbsent(KIND, content, original, decode(0xBADL));
+        assertEquals(new PerceptualHashService.ImageHash(0xF00DL, 4000, 3000), cached);
+        assertEquals(1, decodes.get());
+
+        // Another algorithm or setting is a separate entry
+        reloaded.computeIfAbsent("dhash:t96:64", content, original, decode(0x1L));
+        assertEquals(2, decodes.get());
+    }
+
+    @Test
+    void testComputeIfAbsent_SizeKeyFallsBackToPathMemo() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("unique-size.jpg"), "content");
+        HashMemoService memo = new HashMemoService(tempDir.resolve("memo.tsv"));
+        PerceptualHashCache cache = new PerceptualHashCache(tempDir.resolve("cache.tsv"), memo);
+
+        ContentHash sizeKey = ContentHash.ofSize(7);
+        assertEquals(-1L, cache.computeIfAbsent(KIND, sizeKey, file.toFile(), decode(-1L)).hash());
+        assertEquals(-1L, cache.computeIfAbsent(KIND, sizeKey, file.toFile(), decode(0L)).hash());
+        assertEquals(1, decodes.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testComputeIfAbsent_PartialKeyIsNotSharedBetweenFiles() throws Exception {
+        Path first = Files.writeString(tempDir.resolve("first.jpg"), "first");
+        Path second = Files.writeString(tempDir.resolve("second.jpg"), "other");
+        HashMemoService memo = new HashMemoService(tempDir.resolve("memo.tsv"));
+        PerceptualHashCache cache = new PerceptualHashCache(tempDir.resolve("cache.tsv"), memo);
+
+        // Sampled blocks can collide for different images
+        ContentHash partial = ContentHash.fromHex(ContentHash.Kind.PARTIAL, "cd".repeat(32));
+        assertEquals(1L, cache.computeIfAbsent(KIND, partial, first.toFile(), decode(1L)).hash());
+        assertEquals(2L, cache.computeIfAbsent(KIND, partial, second.toFile(), decode(2L)).hash());
+        assertEquals(1L, cache.computeIfAbsent(KIND, partial, first.toFile(), decode(3L)).hash());
+        assertEquals(2, decodes.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testComputeIfAbsent_FailedDecodeIsNotCached() {
+        PerceptualHashCache cache = new PerceptualHashCache(tempDir.resolve("cache.tsv"), null);
+        ContentHash content = ContentHash.fromHex(ContentHash.Kind.FULL, "ab".repeat(32));
+        File file = new File(tempDir.toFile(), "corrupt.jpg");
+
+        assertNull(cache.computeIfAbsent(KIND, content, file, () -> null));
+        assertEquals(7L, cache.computeIfAbsent(KIND, content, file, decode(7L)).hash());
+    }
+}
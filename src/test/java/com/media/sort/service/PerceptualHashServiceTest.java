@@ -0,0 +1,185 @@
+package com.media.sort.service;
+
+import com.media.sort.model.ContentHash;
+import com.media.sort.service.phash.PerceptualHashIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the grid hashes and the CASCADE lookup of PerceptualHashService
+ */
+class PerceptualHashServiceTest {
+
+    private static final int SIZE = 256;
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Computes every hash and records the kinds that were asked for
+     */
+    private static final class RecordingCache extends PerceptualHashCache {
+
+        private final List<String> kinds = new ArrayList<>();
+
+        RecordingCache(Path cacheFile) {
+            super(cacheFile, null);
+        }
+
+        @Override
+        public PerceptualHashService.ImageHash computeIfAbsent(String kind, ContentHash contentHash, File file,
+                Supplier<PerceptualHashService.ImageHash> compute) {
+            kinds.add(kind);
+            return compute.get();
+        }
+
+        long pHashes() {
+            return kinds.stream().filter(kind -> kind.startsWith("phash")).count();
+        }
+    }
+
+    /**
+     * An image of columns x rows cells, 10 pixels each, with the given gray levels
+     */
+    private static BufferedImage grid(int columns, int rows, int[][] levels) {
+        BufferedImage image = new BufferedImage(columns * 10, rows * 10, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int level = levels[y / 10][x / 10];
+                image.setRGB(x, y, level << 16 | level << 8 | level);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Eight horizontal bands, each getting darker to the right with its own
+     * brightness and slope picked by seed: every seed gives the same dHash,
+     * give or take rounding, but a different pHash
+     */
+    private static BufferedImage picture(long seed) {
+        Random random = new Random(seed);
+        int[] offsets = new int[8];
+        int[] slopes = new int[8];
+        for (int band = 0; band < 8; band++) {
+            offsets[band] = random.nextInt(60);
+            slopes[band] = 20 + random.nextInt(170);
+        }
+        BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < SIZE; y++) {
+            int band = y * 8 / SIZE;
+            for (int x = 0; x < SIZE; x++) {
+                int level = (int) (200 - x * slopes[band] / (double) SIZE) - offsets[band];
+                image.setRGB(x, y, level << 16 | level << 8 | level);
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage scaled(BufferedImage image, int size) {
+        BufferedImage scaled = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = scaled.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.drawImage(image, 0, 0, size, size, null);
+        g2d.dispose();
+        return scaled;
+    }
+
+    private File write(String name, BufferedImage image) throws Exception {
+        File file = tempDir.resolve(name).toFile();
+        ImageIO.write(image, "png", file);
+        return file;
+    }
+
+    @Test
+    void testDifferenceHash_KnownGrid() {
+        // Even rows get darker to the right (left cell brighter: bit set), odd rows lighter
+        int[][] levels = new int[8][9];
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 9; x++) {
+                levels[y][x] = y % 2 == 0 ? 240 - 25 * x : 20 + 25 * x;
+            }
+        }
+        PerceptualHashService service = new PerceptualHashService(PerceptualHashService.Algorithm.DHASH, null);
+
+        assertEquals(0x00FF00FF00FF00FFL,
+                service.computeHash(grid(9, 8, levels), PerceptualHashService.Algorithm.DHASH));
+        assertEquals(0x00FF00FF00FF00FFL, service.computeHash(grid(9, 8, levels)));
+    }
+
+    @Test
+    void testAverageHash_KnownGrid() {
+        // First row and the left half bright, the rest dark
+        int[][] levels = new int[8][8];
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                levels[y][x] = y == 0 || x < 4 ? 230 : 30;
+            }
+        }
+        PerceptualHashService service = new PerceptualHashService(PerceptualHashService.Algorithm.AVERAGE_HASH,
+                null);
+
+        assertEquals(0x0F0F0F0F0F0F0FFFL,
+                service.computeHash(grid(8, 8, levels), PerceptualHashService.Algorithm.AVERAGE_HASH));
+    }
+
+    @Test
+    void testFindSimilar_CascadeKeepsOnlyPHashMatches() throws Exception {
+        RecordingCache cache = new RecordingCache(tempDir.resolve("cache.tsv"));
+        PerceptualHashService service = new PerceptualHashService(PerceptualHashService.Algorithm.CASCADE, cache);
+        BufferedImage original = picture(1);
+        BufferedImage banded = picture(2);
+        File photo = write("photo.png", original);
+        File resized = write("resized.png", scaled(original, 200));
+        File decoy = write("decoy.png", banded);
+
+        long hash = service.hashImage(photo, null).hash();
+        long decoyHash = service.hashImage(decoy, null).hash();
+        assertTrue(PerceptualHashService.calculateHammingDistance(hash, decoyHash) <= 14,
+                "The decoy is a dHash candidate");
+        assertTrue(PerceptualHashService.calculateHammingDistance(
+                service.computeHash(original, PerceptualHashService.Algorithm.PHASH),
+                service.computeHash(banded, PerceptualHashService.Algorithm.PHASH)) > 12,
+                "The decoy is no pHash match");
+
+        PerceptualHashIndex<File> index = new PerceptualHashIndex<>();
+        index.put(decoy, decoyHash);
+        assertNull(service.findSimilar(index, hash, photo, null, file -> file, file -> null),
+                "A dHash candidate whose pHash differs is no match");
+        assertEquals(2, cache.pHashes(), "The image and its one candidate are pHashed");
+
+        index.put(resized, service.hashImage(resized, null).hash());
+        assertEquals(resized, service.findSimilar(index, hash, photo, null, file -> file, file -> null));
+    }
+
+    @Test
+    void testFindSimilar_CascadeSkipsPHashWithoutCandidates() throws Exception {
+        RecordingCache cache = new RecordingCache(tempDir.resolve("cache.tsv"));
+        PerceptualHashService service = new PerceptualHashService(PerceptualHashService.Algorithm.CASCADE, cache);
+        File photo = write("photo.png", picture(1));
+        File other = write("other.png", scaled(grid(2, 2, new int[][]{{20, 240}, {20, 240}}), SIZE));
+
+        long hash = service.hashImage(photo, null).hash();
+        long otherHash = service.hashImage(other, null).hash();
+        assertTrue(PerceptualHashService.calculateHammingDistance(hash, otherHash) > 14);
+
+        PerceptualHashIndex<File> index = new PerceptualHashIndex<>();
+        index.put(other, otherHash);
+
+        assertNull(service.findSimilar(index, hash, photo, null, file -> file, file -> null));
+        assertEquals(0, cache.pHashes(), "No candidate, so no image is decoded for a pHash");
+    }
+}
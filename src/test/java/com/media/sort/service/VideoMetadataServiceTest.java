@@ -0,0 +1,91 @@
+package com.media.sort.service;
+
+import com.media.sort.model.ExifData;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.xml.sax.ContentHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the Tika fallback of VideoMetadataService
+ */
+class VideoMetadataServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Reads the whole stream, then sets its metadata and fails like a parser
+     * that hit the end of a truncated file
+     */
+    private static final class TruncatedParser implements Parser {
+
+        private final String creationDate;
+        private long bytesRead;
+
+        TruncatedParser(String creationDate) {
+            this.creationDate = creationDate;
+        }
+
+        @Override
+        public Set<MediaType> getSupportedTypes(ParseContext context) {
+            return Set.of(MediaType.OCTET_STREAM);
+        }
+
+        @Override
+        public void parse(InputStream stream, ContentHandler handler, Metadata metadata, ParseContext context)
+                throws TikaException {
+            try {
+                bytesRead = stream.transferTo(OutputStream.nullOutputStream());
+            } catch (IOException e) {
+                throw new TikaException("Read failed", e);
+            }
+            metadata.set("Make", "Sony");
+            if (creationDate != null) {
+                metadata.set("Creation-Date", creationDate);
+            }
+            throw new TikaException("Unexpected end of stream");
+        }
+    }
+
+    @Test
+    void testExtractTikaMetadata_TruncatedReadKeepsMetadata() throws Exception {
+        Path file = Files.write(tempDir.resolve("clip.flv"), new byte[10_000]);
+        TruncatedParser parser = new TruncatedParser("2021-06-01T12:30:15Z");
+        ProgressTracker errors = new ProgressTracker(tempDir.resolve("errors.txt").toString());
+        ExifData exifData = new ExifData(file.toFile());
+
+        new VideoMetadataService(parser, 4096).extractTikaMetadata(exifData, errors);
+
+        assertEquals(4096, parser.bytesRead, "Tika reads no further than the limit");
+        assertNotNull(exifData.getDateTaken());
+        assertEquals("Sony", exifData.getDeviceName());
+        assertEquals("", errors.loadProgress().trim(), "A cut-short parse that found a date is no failure");
+    }
+
+    @Test
+    void testExtractTikaMetadata_TruncatedReadWithoutDateIsReported() throws Exception {
+        Path file = Files.write(tempDir.resolve("clip.flv"), new byte[10_000]);
+        ProgressTracker errors = new ProgressTracker(tempDir.resolve("errors.txt").toString());
+        ExifData exifData = new ExifData(file.toFile());
+
+        new VideoMetadataService(new TruncatedParser(null), 4096).extractTikaMetadata(exifData, errors);
+
+        assertNull(exifData.getDateTaken());
+        assertEquals("Sony", exifData.getDeviceName());
+        assertTrue(errors.loadProgress().contains("extractTikaMetadata file: " + file));
+    }
+}
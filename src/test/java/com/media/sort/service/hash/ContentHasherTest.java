@@ -0,0 +1,65 @@
+package com.media.sort.service.hash;
+
+import com.media.sort.util.FileHashUtils;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ContentHasher implementations
+ */
+class ContentHasherTest {
+
+    private String hashHex(ContentHasher hasher, String input) {
+        ContentHasher.Session session = hasher.newSession();
+        session.update(ByteBuffer.wrap(input.getBytes(StandardCharsets.UTF_8)));
+        return FileHashUtils.toHex(session.digest());
+    }
+
+    @Test
+    void testForAlgorithm_ResolvesConfiguredNames() {
+        assertEquals(Sha256ContentHasher.ALGORITHM, ContentHasher.forAlgorithm("SHA-256").getAlgorithm());
+        assertEquals(Sha256ContentHasher.ALGORITHM, ContentHasher.forAlgorithm(null).getAlgorithm());
+        assertEquals(XxHash64ContentHasher.ALGORITHM, ContentHasher.forAlgorithm("xxh64").getAlgorithm());
+        assertThrows(IllegalArgumentException.class, () -> ContentHasher.forAlgorithm("MD5"));
+    }
+
+    @Test
+    void testSha256_KnownVector() {
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                hashHex(ContentHasher.forAlgorithm("SHA256"), "abc"));
+    }
+
+    @Test
+    void testXxHash64_KnownVectors() {
+        ContentHasher hasher = ContentHasher.forAlgorithm("XXH64");
+        assertEquals("ef46db3751d8e999", hashHex(hasher, ""));
+        assertEquals("44bc2cf5ad770999", hashHex(hasher, "abc"));
+        assertEquals("fbcea83c8a378bf1", hashHex(hasher, "Nobody inspects the spammish repetition"));
+    }
+
+    @Test
+    void testXxHash64_ChunkedUpdatesMatchSingleUpdate() {
+        byte[] content = new byte[100_003];
+        new Random(3).nextBytes(content);
+        ContentHasher hasher = ContentHasher.forAlgorithm("XXH64");
+
+        ContentHasher.Session whole = hasher.newSession();
+        whole.update(ByteBuffer.wrap(content));
+
+        ContentHasher.Session chunked = hasher.newSession();
+        Random random = new Random(5);
+        int position = 0;
+        while (position < content.length) {
+            int length = Math.min(content.length - position, random.nextInt(70));
+            chunked.update(ByteBuffer.wrap(content, position, length));
+            position += length;
+        }
+
+        assertArrayEquals(whole.digest(), chunked.digest());
+    }
+}
@@ -0,0 +1,94 @@
+package com.media.sort.service.hash;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for segment-parallel tree hashing
+ */
+class TreeHasherTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path tempDir;
+
+    private ExecutorService executor;
+    private TreeHasher treeHasher;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+        treeHasher = new TreeHasher(ContentHasher.forAlgorithm("SHA256"), SEGMENT_SIZE, executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private Path createFile(String name, int size, int changedOffset) throws IOException {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (i * 17);
+        }
+        if (changedOffset >= 0) {
+            content[changedOffset] ^= 0x55;
+        }
+        return Files.write(tempDir.resolve(name), content);
+    }
+
+    @Test
+    void testHash_IdenticalContentGivesSameRoot() throws Exception {
+        Path first = createFile("first.mp4", 10 * SEGMENT_SIZE + 123, -1);
+        Path second = createFile("second.mp4", 10 * SEGMENT_SIZE + 123, -1);
+
+        assertArrayEquals(treeHasher.hash(first).root(), treeHasher.hash(second).root());
+    }
+
+    @Test
+    void testHash_DifferentContentGivesDifferentRoot() throws Exception {
+        Path first = createFile("first.mp4", 10 * SEGMENT_SIZE, -1);
+        Path second = createFile("second.mp4", 10 * SEGMENT_SIZE, 7 * SEGMENT_SIZE + 1);
+
+        assertFalse(Arrays.equals(treeHasher.hash(first).root(), treeHasher.hash(second).root()));
+    }
+
+    @Test
+    void testHash_SegmentsCoverWholeFile() throws Exception {
+        Path file = createFile("video.mp4", 3 * SEGMENT_SIZE + 1, -1);
+
+        TreeHasher.Result result = treeHasher.hash(file);
+        assertEquals(4, result.segments().size());
+        assertArrayEquals(treeHasher.combine(Files.size(file), result.segments()), result.root());
+    }
+
+    @Test
+    void testVerify_LocatesCorruptedSegment() throws Exception {
+        Path file = createFile("video.mp4", 8 * SEGMENT_SIZE, -1);
+        List<byte[]> recorded = treeHasher.hash(file).segments();
+
+        createFile("video.mp4", 8 * SEGMENT_SIZE, 5 * SEGMENT_SIZE + 100);
+
+        assertEquals(List.of(5), treeHasher.verify(file, recorded));
+    }
+
+    @Test
+    void testVerify_IntactFileHasNoMismatches() throws Exception {
+        Path file = createFile("video.mp4", 8 * SEGMENT_SIZE, -1);
+
+        assertTrue(treeHasher.verify(file, treeHasher.hash(file).segments()).isEmpty());
+    }
+}
@@ -0,0 +1,109 @@
+package com.media.sort.service.phash;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that DctKernel matches the direct DCT formula the perceptual hash
+ * was originally computed with
+ */
+class DctKernelTest {
+
+    private static final int SIZE = 32;
+    private static final int BLOCK = 8;
+
+    /**
+     * The former PerceptualHashService.applyDCT followed by reduceDCT
+     */
+    static double[] directDct(double[][] input, int block) {
+        int n = input.length;
+        double[] output = new double[block * block];
+        for (int u = 0; u < block; u++) {
+            for (int v = 0; v < block; v++) {
+                double sum = 0.0;
+                for (int i = 0; i < n; i++) {
+                    for (int j = 0; j < n; j++) {
+                        sum += input[i][j] *
+                                Math.cos(((2 * i + 1) / (2.0 * n)) * u * Math.PI) *
+                                Math.cos(((2 * j + 1) / (2.0 * n)) * v * Math.PI);
+                    }
+                }
+                double cu = (u == 0) ? 1 / Math.sqrt(2.0) : 1.0;
+                double cv = (v == 0) ? 1 / Math.sqrt(2.0) : 1.0;
+                output[u * block + v] = 0.25 * cu * cv * sum;
+            }
+        }
+        return output;
+    }
+
+    private static long hashBits(double[] coefficients) {
+        double avg = 0.0;
+        for (double value : coefficients) {
+            avg += value;
+        }
+        avg /= coefficients.length;
+        long hash = 0;
+        for (int i = 0; i < Math.min(64, coefficients.length); i++) {
+            if (coefficients[i] > avg) {
+                hash |= 1L << i;
+            }
+        }
+        return hash;
+    }
+
+    private static double[][] randomImage(Random random) {
+        double[][] image = new double[SIZE][SIZE];
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                // Smooth gradient plus noise, like a downscaled photo
+                image[y][x] = 0.299 * random.nextInt(256) * 0.3 + 2.5 * x + 1.7 * y;
+            }
+        }
+        return image;
+    }
+
+    private static double[] flatten(double[][] image) {
+        double[] flat = new double[SIZE * SIZE];
+        for (int y = 0; y < SIZE; y++) {
+            System.arraycopy(image[y], 0, flat, y * SIZE, SIZE);
+        }
+        return flat;
+    }
+
+    @Test
+    void testTransform_MatchesDirectFormula() {
+        Random random = new Random(7);
+        DctKernel kernel = new DctKernel(SIZE, BLOCK);
+        double[] output = new double[BLOCK * BLOCK];
+
+        for (int round = 0; round < 20; round++) {
+            double[][] image = randomImage(random);
+            kernel.transform(flatten(image), output);
+            double[] expected = directDct(image, BLOCK);
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i], output[i], 1e-9 * Math.max(1.0, Math.abs(expected[i])));
+            }
+        }
+    }
+
+    @Test
+    void testTransform_HashBitsUnchanged() {
+        Random random = new Random(11);
+        DctKernel kernel = new DctKernel(SIZE, BLOCK);
+        double[] output = new double[BLOCK * BLOCK];
+
+        for (int round = 0; round < 200; round++) {
+            double[][] image = randomImage(random);
+            kernel.transform(flatten(image), output);
+            assertEquals(hashBits(directDct(image, BLOCK)), hashBits(output));
+        }
+    }
+
+    @Test
+    void testConstructor_RejectsBlockLargerThanInput() {
+        assertThrows(IllegalArgumentException.class, () -> new DctKernel(8, 16));
+    }
+}
@@ -0,0 +1,150 @@
+package com.media.sort.service.phash;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for GrayscaleDownscaler against the Image.SCALE_SMOOTH path it replaces
+ */
+class GrayscaleDownscalerTest {
+
+    private static final int SIZE = 32;
+
+    private static BufferedImage randomImage(int width, int height, int type, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // Gradient plus noise so neighbouring cells differ
+                int r = Math.min(255, x * 255 / width + random.nextInt(32));
+                int g = Math.min(255, y * 255 / height + random.nextInt(32));
+                int b = random.nextInt(256);
+                image.setRGB(x, y, 0xFF000000 | (r << 16) | (g << 8) | b);
+            }
+        }
+        return image;
+    }
+
+    private static double[] downscale(BufferedImage image) {
+        double[] output = new double[SIZE * SIZE];
+        new GrayscaleDownscaler(SIZE).downscale(image, output);
+        return output;
+    }
+
+    /**
+     * The former PerceptualHashService.resize followed by toGrayscale
+     */
+    private static double[] smoothScale(BufferedImage image) {
+        Image tmp = image.getScaledInstance(SIZE, SIZE, Image.SCALE_SMOOTH);
+        BufferedImage resized = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = resized.createGraphics();
+        g2d.drawImage(tmp, 0, 0, null);
+        g2d.dispose();
+
+        double[] gray = new double[SIZE * SIZE];
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                int rgb = resized.getRGB(x, y);
+                gray[y * SIZE + x] = 0.299 * ((rgb >> 16) & 0xFF) + 0.587 * ((rgb >> 8) & 0xFF) + 0.114 * (rgb & 0xFF);
+            }
+        }
+        return gray;
+    }
+
+    private static void assertClose(double[] expected, double[] actual, double tolerance) {
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], tolerance, "cell " + i);
+        }
+    }
+
+    @Test
+    void testDownscale_UniformColorKeepsLuminance() {
+        BufferedImage image = new BufferedImage(100, 75, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < 75; y++) {
+            for (int x = 0; x < 100; x++) {
+                image.setRGB(x, y, 0xC86432);
+            }
+        }
+
+        for (double value : downscale(image)) {
+            assertEquals(0.299 * 200 + 0.587 * 100 + 0.114 * 50, value, 1e-9);
+        }
+    }
+
+    @Test
+    void testDownscale_MatchesSmoothScaling() {
+        for (int[] dimensions : new int[][]{{640, 480}, {97, 61}, {SIZE, SIZE}, {20, 45}}) {
+            BufferedImage image = randomImage(dimensions[0], dimensions[1], BufferedImage.TYPE_3BYTE_BGR, 3);
+            // SCALE_SMOOTH rounds each channel to 8 bits, so allow a little under one level
+            assertClose(smoothScale(image), downscale(image), 1.0);
+        }
+    }
+
+    @Test
+    void testDownscale_DirectRasterPathsMatchGetRgbPath() {
+        BufferedImage reference = randomImage(301, 203, BufferedImage.TYPE_INT_ARGB_PRE, 5);
+        double[] expected = downscale(reference);
+
+        for (int type : new int[]{BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR,
+                BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_BGR}) {
+            BufferedImage image = new BufferedImage(301, 203, type);
+            Graphics2D g2d = image.createGraphics();
+            g2d.drawImage(reference, 0, 0, null);
+            g2d.dispose();
+            assertClose(expected, downscale(image), 1e-9);
+        }
+    }
+
+    @Test
+    void testDownscale_SubimageReadsOnlyItsRegion() {
+        BufferedImage parent = randomImage(400, 300, BufferedImage.TYPE_3BYTE_BGR, 9);
+        BufferedImage region = parent.getSubimage(37, 21, 200, 150);
+
+        BufferedImage copy = new BufferedImage(200, 150, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g2d = copy.createGraphics();
+        g2d.drawImage(region, 0, 0, null);
+        g2d.dispose();
+
+        assertClose(downscale(copy), downscale(region), 1e-9);
+    }
+
+    @Test
+    void testDownscale_TransparentPixelsBlendOverBlack() {
+        BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                image.setRGB(x, y, 0x00FFFFFF);
+            }
+        }
+
+        for (double value : downscale(image)) {
+            assertEquals(0.0, value, 1e-9);
+        }
+    }
+
+    @Test
+    void testDownscale_NonSquareOutputAveragesBlocks() {
+        // 10x10 blocks of one gray level each, shrunk to the 9x8 grid of dHash
+        BufferedImage image = new BufferedImage(90, 80, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 80; y++) {
+            for (int x = 0; x < 90; x++) {
+                int level = (x / 10) * 25 + (y / 10);
+                image.setRGB(x, y, (level << 16) | (level << 8) | level);
+            }
+        }
+
+        double[] output = new double[9 * 8];
+        new GrayscaleDownscaler(9, 8).downscale(image, output);
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 9; x++) {
+                assertEquals(x * 25 + y, output[y * 9 + x], 1e-9);
+            }
+        }
+    }
+}
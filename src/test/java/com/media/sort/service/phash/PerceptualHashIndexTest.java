@@ -0,0 +1,162 @@
+package com.media.sort.service.phash;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests PerceptualHashIndex against a linear scan
+ */
+class PerceptualHashIndexTest {
+
+    private record Entry(String name, long hash) {
+    }
+
+    private static long flipBits(long hash, int bits, Random random) {
+        long result = hash;
+        while (Long.bitCount(result ^ hash) < bits) {
+            result ^= 1L << random.nextInt(64);
+        }
+        return result;
+    }
+
+    private static Entry scan(List<Entry> entries, long hash, int maxDistance) {
+        Entry best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        for (Entry entry : entries) {
+            int distance = Long.bitCount(entry.hash() ^ hash);
+            if (distance <= maxDistance && distance < bestDistance) {
+                best = entry;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    private static int distance(Entry entry, long hash) {
+        return entry == null ? -1 : Long.bitCount(entry.hash() ^ hash);
+    }
+
+    @Test
+    void testFindNearest_MatchesLinearScan() {
+        Random random = new Random(17);
+        PerceptualHashIndex<Entry> index = new PerceptualHashIndex<>();
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Entry entry = new Entry("img" + i, random.nextLong());
+            entries.add(entry);
+            index.put(entry, entry.hash());
+        }
+
+        for (int maxDistance : new int[]{0, 5, 12, 20}) {
+            for (int i = 0; i < 300; i++) {
+                // Half the queries are edited copies of indexed images, half are unrelated
+                long query = i % 2 == 0
+                        ? flipBits(entries.get(random.nextInt(entries.size())).hash(), random.nextInt(16), random)
+                        : random.nextLong();
+                assertEquals(distance(scan(entries, query, maxDistance), query),
+                        distance(index.findNearest(query, maxDistance), query));
+            }
+        }
+    }
+
+    @Test
+    void testFindNearest_ScanSkipsRemovedEntries() {
+        Random random = new Random(23);
+        PerceptualHashIndex<Entry> index = new PerceptualHashIndex<>();
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            Entry entry = new Entry("img" + i, random.nextLong());
+            entries.add(entry);
+            index.put(entry, entry.hash());
+        }
+        // Remove from the middle of the hash column so later entries are moved into the gaps
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(index.remove(entries.remove(random.nextInt(entries.size()))));
+        }
+
+        for (int i = 0; i < 300; i++) {
+            long query = flipBits(entries.get(random.nextInt(entries.size())).hash(), random.nextInt(24), random);
+            // A threshold of 20 scans the hash column instead of probing chunks
+            assertEquals(distance(scan(entries, query, 20), query), distance(index.findNearest(query, 20), query));
+            assertEquals(distance(scan(entries, query, 12), query), distance(index.findNearest(query, 12), query));
+        }
+        assertEquals(2000, index.size());
+    }
+
+    @Test
+    void testRemove_EntryNoLongerFound() {
+        PerceptualHashIndex<Entry> index = new PerceptualHashIndex<>();
+        Entry original = new Entry("original", 0x0F0F_0F0F_0F0F_0F0FL);
+        index.put(original, original.hash());
+
+        assertSame(original, index.findNearest(original.hash() ^ 0b111, 12));
+        assertTrue(index.remove(original));
+        assertFalse(index.remove(original));
+        assertNull(index.findNearest(original.hash(), 12));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void testPut_SwapKeepsIndexInStep() {
+        PerceptualHashIndex<Entry> index = new PerceptualHashIndex<>();
+        Entry worse = new Entry("low.jpg", 0x1234_5678_9ABC_DEF0L);
+        Entry better = new Entry("high.jpg", 0x1234_5678_9ABC_DEF1L);
+        index.put(worse, worse.hash());
+
+        // Writer replaces the lower quality original with the better copy
+        index.remove(worse);
+        index.put(better, better.hash());
+
+        assertSame(better, index.findNearest(worse.hash(), 12));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void testPut_ReindexesChangedHash() {
+        PerceptualHashIndex<Entry> index = new PerceptualHashIndex<>();
+        Entry entry = new Entry("photo.jpg", 0L);
+        index.put(entry, 0L);
+        index.put(entry, -1L);
+
+        assertNull(index.findNearest(0L, 12));
+        assertSame(entry, index.findNearest(-1L, 0));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void testFindNearest_PrefersClosestThenEarliest() {
+        PerceptualHashIndex<Entry> index = new PerceptualHashIndex<>();
+        Entry first = new Entry("first", 0b1111L);
+        Entry second = new Entry("second", 0b1111L << 4);
+        Entry closest = new Entry("closest", 0b1L);
+        index.put(first, first.hash());
+        index.put(second, second.hash());
+
+        assertSame(first, index.findNearest(0L, 12));
+        index.put(closest, closest.hash());
+        assertSame(closest, index.findNearest(0L, 12));
+    }
+
+    @Test
+    void testFindWithin_ReturnsAllCandidatesNearestFirst() {
+        PerceptualHashIndex<Entry> index = new PerceptualHashIndex<>();
+        Entry far = new Entry("far", 0xFFFFL);
+        Entry first = new Entry("first", 0b111L);
+        Entry second = new Entry("second", 0b111L << 8);
+        Entry exact = new Entry("exact", 0L);
+        index.put(far, far.hash());
+        index.put(first, first.hash());
+        index.put(second, second.hash());
+        index.put(exact, exact.hash());
+
+        // Within 3 bits the low chunk matches several probes, but each entry is listed once
+        assertEquals(List.of(exact, first, second), index.findWithin(0L, 3));
+        assertEquals(List.of(exact, first, second, far), index.findWithin(0L, 16));
+        assertTrue(index.findWithin(-1L, 12).isEmpty());
+    }
+}
@@ -0,0 +1,149 @@
+package com.media.sort.service.phash;
+
+import com.media.sort.util.FileContent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for thumbnail-first and subsampled decoding
+ */
+class ReducedImageDecoderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static byte[] jpeg(int width, int height, Color color) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setColor(color);
+        g2d.fillRect(0, 0, width, height);
+        g2d.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Inserts an APP1 segment right after SOI whose IFD1 points at the thumbnail
+     */
+    private static byte[] withExifThumbnail(byte[] jpeg, byte[] thumbnail) {
+        int tiffSize = 8 + 2 + 4 + 2 + 3 * 12 + 4; // header, empty IFD0, IFD1 with three entries
+        ByteBuffer tiff = ByteBuffer.allocate(tiffSize + thumbnail.length).order(ByteOrder.LITTLE_ENDIAN);
+        tiff.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt(8);
+        tiff.putShort((short) 0).putInt(14); // IFD0: no entries, IFD1 at 14
+        tiff.putShort((short) 3);
+        tiff.putShort((short) 0x0103).putShort((short) 3).putInt(1).putShort((short) 6).putShort((short) 0);
+        tiff.putShort((short) 0x0201).putShort((short) 4).putInt(1).putInt(tiffSize);
+        tiff.putShort((short) 0x0202).putShort((short) 4).putInt(1).putInt(thumbnail.length);
+        tiff.putInt(0);
+        tiff.put(thumbnail);
+
+        int segmentLength = 2 + 6 + tiff.capacity();
+        ByteBuffer result = ByteBuffer.allocate(jpeg.length + 2 + segmentLength);
+        result.put(jpeg, 0, 2); // SOI
+        result.put((byte) 0xFF).put((byte) 0xE1).putShort((short) segmentLength);
+        result.put("Exif".getBytes()).put((byte) 0).put((byte) 0);
+        result.put(tiff.array());
+        result.put(jpeg, 2, jpeg.length - 2);
+        return result.array();
+    }
+
+    private File write(String name, byte[] bytes) throws IOException {
+        return Files.write(tempDir.resolve(name), bytes).toFile();
+    }
+
+    private static boolean isRed(BufferedImage image) {
+        Color color = new Color(image.getRGB(image.getWidth() / 2, image.getHeight() / 2));
+        return color.getRed() > 200 && color.getGreen() < 60 && color.getBlue() < 60;
+    }
+
+    @Test
+    void testLocate_FindsThumbnailInApp1() throws IOException {
+        byte[] thumbnail = jpeg(160, 120, Color.RED);
+        byte[] file = withExifThumbnail(jpeg(800, 600, Color.BLUE), thumbnail);
+
+        ExifThumbnail.Location location = ExifThumbnail.locate(ByteBuffer.wrap(file));
+
+        assertNotNull(location);
+        assertEquals(thumbnail.length, location.length());
+        assertEquals(0xFF, file[location.offset()] & 0xFF);
+        assertEquals(0xD8, file[location.offset() + 1] & 0xFF);
+    }
+
+    @Test
+    void testLocate_NoExifSegment() throws IOException {
+        assertNull(ExifThumbnail.locate(ByteBuffer.wrap(jpeg(100, 100, Color.BLUE))));
+        assertNull(ExifThumbnail.locate(ByteBuffer.wrap(new byte[]{(byte) 0x89, 'P', 'N', 'G'})));
+    }
+
+    @Test
+    void testDecode_PrefersMatchingThumbnail() throws IOException {
+        File file = write("photo.jpg", withExifThumbnail(jpeg(800, 600, Color.BLUE), jpeg(160, 120, Color.RED)));
+
+        ReducedImageDecoder.DecodedImage decoded = new ReducedImageDecoder(256, 96, true).decode(file, null);
+
+        assertTrue(decoded.thumbnail());
+        assertTrue(isRed(decoded.image()));
+        assertEquals(800, decoded.width());
+        assertEquals(600, decoded.height());
+    }
+
+    @Test
+    void testDecode_IgnoresLetterboxedOrSmallThumbnail() throws IOException {
+        File letterboxed = write("wide.jpg", withExifThumbnail(jpeg(900, 600, Color.BLUE), jpeg(160, 120, Color.RED)));
+        File small = write("small.jpg", withExifThumbnail(jpeg(800, 600, Color.BLUE), jpeg(80, 60, Color.RED)));
+        ReducedImageDecoder decoder = new ReducedImageDecoder(256, 96, true);
+
+        assertFalse(decoder.decode(letterboxed, null).thumbnail());
+        assertFalse(decoder.decode(small, null).thumbnail());
+    }
+
+    @Test
+    void testDecode_SubsamplesLargeImage() throws IOException {
+        File file = write("large.png", pngOf(2000, 1000));
+
+        ReducedImageDecoder.DecodedImage decoded = new ReducedImageDecoder(250, 96, true).decode(file, null);
+
+        assertFalse(decoded.thumbnail());
+        assertEquals(2000, decoded.width());
+        assertEquals(1000, decoded.height());
+        assertEquals(500, decoded.image().getWidth());
+        assertEquals(250, decoded.image().getHeight());
+    }
+
+    @Test
+    void testDecode_InMemoryContentMatchesFile() throws IOException {
+        File file = write("photo.jpg", withExifThumbnail(jpeg(1200, 900, Color.BLUE), jpeg(160, 120, Color.RED)));
+        ReducedImageDecoder decoder = new ReducedImageDecoder(256, 96, false);
+
+        ReducedImageDecoder.DecodedImage fromFile = decoder.decode(file, null);
+        try (FileContent content = FileContent.read(file, Long.MAX_VALUE)) {
+            ReducedImageDecoder.DecodedImage fromMemory = decoder.decode(file, content);
+
+            assertFalse(fromMemory.thumbnail());
+            assertEquals(fromFile.image().getWidth(), fromMemory.image().getWidth());
+            assertEquals(fromFile.image().getRGB(10, 10), fromMemory.image().getRGB(10, 10));
+        }
+    }
+
+    private static byte[] pngOf(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,209 @@
+package com.media.sort.service.video;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the RIFF, EBML and ASF header date parsers on files assembled
+ * structure by structure
+ */
+class HeaderDateParsersTest {
+
+    private static final Instant RECORDED = Instant.parse("2009-07-14T08:30:15Z");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRiff_PrefersIditOverInfoAndSkipsMovi() throws Exception {
+        byte[] hdrl = list("hdrl", chunk("avih", new byte[56]),
+                list("strl", chunk("strh", new byte[56]), chunk("strd", exif("2001:02:03 04:05:06"))),
+                chunk("IDIT", "TUE JUL 14 08:30:15 2009\n\u0000".getBytes(StandardCharsets.ISO_8859_1)));
+        Path avi = write("clip.avi", riff(hdrl, list("INFO", chunk("ICRD", ascii("2005-01-01"))),
+                list("movi", new byte[4096]), chunk("idx1", new byte[16])));
+
+        assertEquals(local(2009, 7, 14, 8, 30, 15), RiffParser.readCreationDate(avi.toFile()));
+    }
+
+    @Test
+    void testRiff_FallsBackToStreamDataThenInfo() throws Exception {
+        byte[] strl = list("strl", chunk("strh", new byte[56]),
+                chunk("strd", exif("0000:00:00 00:00:00", "2001:02:03 04:05:06")));
+        Path avi = write("still.avi", riff(list("hdrl", chunk("avih", new byte[56]), strl),
+                list("movi", new byte[33])));
+        assertEquals(local(2001, 2, 3, 4, 5, 6), RiffParser.readCreationDate(avi.toFile()));
+
+        Path info = write("info.avi", riff(list("hdrl", chunk("avih", new byte[56])),
+                list("movi", new byte[8]), list("INFO", chunk("ICRD", ascii("2005/08/17")))));
+        assertEquals(local(2005, 8, 17, 0, 0, 0), RiffParser.readCreationDate(info.toFile()));
+
+        Path none = write("none.avi", riff(list("hdrl", chunk("avih", new byte[56]))));
+        assertNull(RiffParser.readCreationDate(none.toFile()));
+    }
+
+    @Test
+    void testEbml_ReadsDateUtcAfterSeekHeadAndVoid() throws Exception {
+        long nanos = (RECORDED.toEpochMilli() - Instant.parse("2001-01-01T00:00:00Z").toEpochMilli()) * 1_000_000;
+        byte[] info = element(0x1549A966, element(0x2AD7B1, int64(1_000_000)), element(0x4461, int64(nanos)));
+        byte[] header = element(0x1A45DFA3, element(0x4282, ascii("matroska")));
+
+        Path mkv = write("clip.mkv", header, element(0x18538067,
+                element(0x114D9B74, new byte[0]), element(0xEC, new byte[20]), info,
+                element(0x1F43B675, new byte[256])));
+        assertEquals(Date.from(RECORDED), EbmlParser.readCreationDate(mkv.toFile()));
+
+        // Info after the clusters, found through the SeekHead
+        byte[] cluster = element(0x1F43B675, new byte[256]);
+        // Positions are relative to the segment payload; with 8-byte sizes the SeekHead is 54 bytes
+        byte[] seekHead = element(0x114D9B74, element(0x4DBB,
+                element(0x53AB, id(0x1549A966)), element(0x53AC, int64(54 + cluster.length))));
+        assertEquals(54, seekHead.length);
+        Path trailing = write("trailing.webm", header, element(0x18538067, seekHead, cluster, info));
+        assertEquals(Date.from(RECORDED), EbmlParser.readCreationDate(trailing.toFile()));
+
+        Path noDate = write("nodate.mkv", header, element(0x18538067, element(0x1549A966,
+                element(0x2AD7B1, int64(1_000_000)))));
+        assertNull(EbmlParser.readCreationDate(noDate.toFile()));
+    }
+
+    @Test
+    void testAsf_ReadsFilePropertiesCreationDate() throws Exception {
+        long fileTime = (RECORDED.toEpochMilli() + 11_644_473_600_000L) * 10_000;
+        byte[] fileProperties = asfObject(guid(0x8CABDCA1, 0xA947, 0x11CF, 0x8EE400C00C205365L),
+                ByteBuffer.allocate(80).order(ByteOrder.LITTLE_ENDIAN).put(new byte[16]).putLong(1 << 20)
+                        .putLong(fileTime).array());
+        byte[] other = asfObject(guid(0x75B22633, 0x668E, 0x11CF, 0xA6D900AA0062CE6CL), new byte[34]);
+        Path wmv = write("clip.wmv", asfHeader(other, fileProperties), new byte[512]);
+
+        assertEquals(Date.from(RECORDED), AsfParser.readCreationDate(wmv.toFile()));
+    }
+
+    @Test
+    void testParsers_RejectOtherFormats() throws Exception {
+        Path mp4 = write("clip.avi", new byte[]{0, 0, 0, 16, 'f', 't', 'y', 'p', 'i', 's', 'o', 'm',
+                0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0});
+
+        assertThrows(IOException.class, () -> RiffParser.readCreationDate(mp4.toFile()));
+        assertThrows(IOException.class, () -> EbmlParser.readCreationDate(mp4.toFile()));
+        assertThrows(IOException.class, () -> AsfParser.readCreationDate(mp4.toFile()));
+    }
+
+    @Test
+    void testRiff_ParseDateFormats() {
+        assertEquals(local(2002, 12, 14, 11, 43, 2), RiffParser.parseDate("SAT DEC 14 11:43:02 2002"));
+        assertEquals(local(2003, 1, 3, 9, 0, 0), RiffParser.parseDate("Fri Jan  3 09:00:00 2003\n"));
+        assertEquals(local(2005, 8, 17, 11, 42, 0), RiffParser.parseDate("2005/08/17/ 11:42"));
+        assertEquals(local(2005, 8, 17, 11, 42, 43), RiffParser.parseDate("2005:08:17 11:42:43"));
+        assertNull(RiffParser.parseDate("unknown"));
+    }
+
+    private static Date local(int year, int month, int day, int hour, int minute, int second) {
+        return Date.from(LocalDateTime.of(year, month, day, hour, minute, second)
+                .atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private Path write(String name, byte[]... parts) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part);
+        }
+        return Files.write(tempDir.resolve(name), out.toByteArray());
+    }
+
+    private static byte[] ascii(String text) {
+        return (text + "\u0000").getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Camera strd block: "AVIF", then EXIF-style data with the given date strings
+     */
+    private static byte[] exif(String... dates) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes("AVIF".getBytes(StandardCharsets.ISO_8859_1));
+        out.writeBytes(new byte[12]);
+        for (String date : dates) {
+            out.writeBytes(ascii(date));
+            out.writeBytes(new byte[3]);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] riff(byte[]... chunks) {
+        return chunk("RIFF", concat("AVI ".getBytes(StandardCharsets.ISO_8859_1), concat(chunks)));
+    }
+
+    private static byte[] list(String type, byte[]... chunks) {
+        return chunk("LIST", concat(type.getBytes(StandardCharsets.ISO_8859_1), concat(chunks)));
+    }
+
+    /**
+     * RIFF chunk: ID, little-endian size, data padded to an even size
+     */
+    private static byte[] chunk(String id, byte[] data) {
+        ByteBuffer chunk = ByteBuffer.allocate(8 + data.length + (data.length & 1)).order(ByteOrder.LITTLE_ENDIAN);
+        return chunk.put(id.getBytes(StandardCharsets.ISO_8859_1)).putInt(data.length).put(data).array();
+    }
+
+    /**
+     * EBML element: ID with its marker bits, 8-byte size, data
+     */
+    private static byte[] element(int id, byte[]... children) {
+        byte[] data = concat(children);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            if ((id >>> shift) != 0) {
+                out.write(id >>> shift);
+            }
+        }
+        out.writeBytes(ByteBuffer.allocate(8).putLong(0x0100000000000000L | data.length).array());
+        out.writeBytes(data);
+        return out.toByteArray();
+    }
+
+    private static byte[] id(int id) {
+        return ByteBuffer.allocate(4).putInt(id).array();
+    }
+
+    private static byte[] int64(long value) {
+        return ByteBuffer.allocate(8).putLong(value).array();
+    }
+
+    private static byte[] asfHeader(byte[]... objects) {
+        byte[] fields = ByteBuffer.allocate(6).order(ByteOrder.LITTLE_ENDIAN).putInt(objects.length)
+                .put((byte) 1).put((byte) 2).array();
+        return asfObject(guid(0x75B22630, 0x668E, 0x11CF, 0xA6D900AA0062CE6CL), concat(fields, concat(objects)));
+    }
+
+    private static byte[] asfObject(byte[] guid, byte[] data) {
+        return ByteBuffer.allocate(24 + data.length).order(ByteOrder.LITTLE_ENDIAN)
+                .put(guid).putLong(24 + data.length).put(data).array();
+    }
+
+    private static byte[] guid(int data1, int data2, int data3, long data4) {
+        ByteBuffer buffer = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(data1).putShort((short) data2).putShort((short) data3);
+        return buffer.order(ByteOrder.BIG_ENDIAN).putLong(data4).array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
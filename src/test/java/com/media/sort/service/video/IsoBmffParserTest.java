@@ -0,0 +1,186 @@
+package com.media.sort.service.video;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for IsoBmffParser on files assembled box by box
+ */
+class IsoBmffParserTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testParse_ReadsHeadersSampleTableAndCoverArt() throws Exception {
+        byte[] cover = {(byte) 0xFF, (byte) 0xD8, 1, 2, 3};
+        byte[] moov = box("moov",
+                mvhd(0, 1000, 12_345),
+                videoTrak(90_000, 1_111_050, 1920, 1080, new int[]{500, 40, 41, 42}, 1, 4),
+                box("udta", box("meta", new byte[4], box("hdlr", new byte[25]),
+                        box("ilst", box("covr", box("data", new byte[8], cover))))));
+        Path file = write(box("ftyp", "isom".getBytes(StandardCharsets.ISO_8859_1)),
+                box("mdat", new byte[1000]), moov);
+
+        Mp4Movie movie = IsoBmffParser.parse(file.toFile());
+
+        assertNotNull(movie);
+        assertEquals(12_345, movie.getDurationMillis());
+        Mp4Movie.Track video = movie.getTrack("vide");
+        assertNotNull(video);
+        assertEquals(90_000, video.getTimescale());
+        assertEquals(12_345, video.getDurationMillis());
+        assertEquals(1920, video.getWidth());
+        assertEquals(1080, video.getHeight());
+        assertEquals(4, video.getSampleCount());
+        assertEquals(41, video.getSampleSize(2));
+        assertTrue(video.hasSyncSamples());
+        assertTrue(video.isSyncSample(0));
+        assertFalse(video.isSyncSample(2));
+        assertTrue(video.isSyncSample(3));
+        assertNull(movie.getTrack("soun"));
+        assertArrayEquals(cover, movie.getCoverArt());
+    }
+
+    @Test
+    void testParse_ReadsCreationTimeDeviceAndLocation() throws Exception {
+        // 2021-06-01T12:00:00Z in seconds since 1904
+        long creationTime = 1_622_548_800L + 2_082_844_800L;
+        byte[] moov = box("moov",
+                mvhd(creationTime, 600, 6000),
+                videoTrak(600, 6000, 1280, 720, new int[]{100, 50}, 1),
+                box("udta", userData("\u00A9mak", "Apple"), userData("\u00A9mod", "iPhone 12"),
+                        userData("\u00A9xyz", "+48.8577+002.2950+035.000/")));
+        Path file = write(box("ftyp", "qt  ".getBytes(StandardCharsets.ISO_8859_1)), moov, box("mdat", new byte[64]));
+
+        Mp4Movie movie = IsoBmffParser.parse(file.toFile(), false);
+
+        assertNotNull(movie);
+        assertEquals(1_622_548_800_000L, movie.getCreationDate().getTime());
+        assertEquals("Apple", movie.getMake());
+        assertEquals("iPhone 12", movie.getModel());
+        assertEquals(48.8577, movie.getLatitude(), 1e-9);
+        assertEquals(2.295, movie.getLongitude(), 1e-9);
+        Mp4Movie.Track video = movie.getTrack("vide");
+        assertEquals(1280, video.getWidth());
+        assertEquals(720, video.getHeight());
+        assertFalse(video.hasSampleSizes(), "Sample sizes are only read on request");
+        assertFalse(video.hasSyncSamples());
+    }
+
+    @Test
+    void testParse_ReadsAppleMetadataKeys() throws Exception {
+        byte[] keys = box("keys", new byte[4], new byte[]{0, 0, 0, 3},
+                key("com.apple.quicktime.make"), key("com.apple.quicktime.model"),
+                key("com.apple.quicktime.creationdate"));
+        byte[] ilst = box("ilst",
+                box(new byte[]{0, 0, 0, 1}, utf8Data("Apple")),
+                box(new byte[]{0, 0, 0, 2}, utf8Data("iPhone 14 Pro")),
+                box(new byte[]{0, 0, 0, 3}, utf8Data("2023-03-04T15:16:17+0100")));
+        // QuickTime meta: a plain container starting with hdlr
+        byte[] moov = box("moov", mvhd(0, 600, 6000), box("meta", box("hdlr", new byte[25]), keys, ilst));
+
+        Mp4Movie movie = IsoBmffParser.parse(write(box("ftyp", new byte[8]), moov).toFile(), false);
+
+        assertNotNull(movie);
+        assertEquals("Apple", movie.getMake());
+        assertEquals("iPhone 14 Pro", movie.getModel());
+        // No mvhd creation time, so the local creation date is used
+        assertEquals(java.time.Instant.parse("2023-03-04T14:16:17Z"), movie.getCreationDate().toInstant());
+        assertNull(movie.getLatitude());
+    }
+
+    @Test
+    void testParse_NotAnIsoFileOrNoMoov() throws Exception {
+        Path avi = Files.write(tempDir.resolve("clip.avi"), "RIFF\u0000\u0000\u0000\u0000AVI LIST".getBytes(
+                StandardCharsets.ISO_8859_1));
+        assertNull(IsoBmffParser.parse(avi.toFile()));
+
+        Path truncated = write(box("ftyp", new byte[8]), box("mdat", new byte[64]));
+        assertNull(IsoBmffParser.parse(truncated.toFile()));
+    }
+
+    private Path write(byte[]... boxes) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] box : boxes) {
+            out.write(box);
+        }
+        return Files.write(Files.createTempFile(tempDir, "clip", ".mp4"), out.toByteArray());
+    }
+
+    private static byte[] mvhd(long creationTime, int timescale, long duration) {
+        return box("mvhd", ByteBuffer.allocate(100).putInt(0).putInt((int) creationTime).putInt(0)
+                .putInt(timescale).putInt((int) duration).array());
+    }
+
+    /**
+     * QuickTime user data text item: length, language, text
+     */
+    private static byte[] userData(String type, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return box(type, ByteBuffer.allocate(4).putShort((short) bytes.length).array(), bytes);
+    }
+
+    private static byte[] key(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(8 + bytes.length).putInt(8 + bytes.length)
+                .put("mdta".getBytes(StandardCharsets.ISO_8859_1)).put(bytes).array();
+    }
+
+    private static byte[] utf8Data(String value) {
+        return box("data", new byte[]{0, 0, 0, 1, 0, 0, 0, 0}, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * A video trak with the given sample sizes and, if any, an stss box
+     * listing the given 1-based sync sample numbers
+     */
+    private static byte[] videoTrak(int timescale, long duration, int width, int height, int[] sampleSizes,
+            int... syncSamples) {
+        ByteBuffer tkhd = ByteBuffer.allocate(84).putInt(0);
+        tkhd.position(76);
+        tkhd.putInt(width << 16).putInt(height << 16);
+        ByteBuffer mdhd = ByteBuffer.allocate(24).putInt(0).putInt(0).putInt(0)
+                .putInt(timescale).putInt((int) duration);
+        ByteBuffer hdlr = ByteBuffer.allocate(24).putInt(0).putInt(0)
+                .put("vide".getBytes(StandardCharsets.ISO_8859_1));
+        ByteBuffer stsz = ByteBuffer.allocate(12 + 4 * sampleSizes.length).putInt(0).putInt(0)
+                .putInt(sampleSizes.length);
+        for (int size : sampleSizes) {
+            stsz.putInt(size);
+        }
+        ByteBuffer stss = ByteBuffer.allocate(8 + 4 * syncSamples.length).putInt(0).putInt(syncSamples.length);
+        for (int sample : syncSamples) {
+            stss.putInt(sample);
+        }
+        byte[] stbl = syncSamples.length > 0 ? box("stbl", box("stsz", stsz.array()), box("stss", stss.array()))
+                : box("stbl", box("stsz", stsz.array()));
+        return box("trak", box("tkhd", tkhd.array()),
+                box("mdia", box("mdhd", mdhd.array()), box("hdlr", hdlr.array()),
+                        box("minf", stbl)));
+    }
+
+    private static byte[] box(String type, byte[]... payloads) {
+        return box(type.getBytes(StandardCharsets.ISO_8859_1), payloads);
+    }
+
+    private static byte[] box(byte[] type, byte[]... payloads) {
+        int size = 8;
+        for (byte[] payload : payloads) {
+            size += payload.length;
+        }
+        ByteBuffer box = ByteBuffer.allocate(size).putInt(size).put(type);
+        for (byte[] payload : payloads) {
+            box.put(payload);
+        }
+        return box.array();
+    }
+}
@@ -0,0 +1,131 @@
+package com.media.sort.service.video;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for VideoFingerprint and VideoFingerprintIndex on synthetic sample tables
+ */
+class VideoFingerprintTest {
+
+    @Test
+    void testMatches_ReencodedCopyOnly() {
+        VideoFingerprint fingerprint = VideoFingerprint.of(movie(600, 6000, 1920, 1080,
+                frameSizes(motion(300, 1), 30, true, 1), 30));
+        // Recompressed: a third of the bytes, a different timescale and group of pictures, rotated,
+        // one frame dropped
+        VideoFingerprint copy = VideoFingerprint.of(movie(90_000, 898_200, 720, 1280,
+                frameSizes(motion(299, 1), 60, false, 3), 60));
+        VideoFingerprint other = VideoFingerprint.of(movie(600, 6010, 1920, 1080,
+                frameSizes(motion(300, 7), 30, true, 1), 30));
+
+        assertTrue(fingerprint.hasBitrateProfile());
+        assertTrue(fingerprint.matches(copy, 12));
+        assertTrue(copy.matches(fingerprint, 12));
+        assertFalse(fingerprint.matches(other, 12), "Same length and frame count, different content");
+
+        // Cover art decides when both files have it
+        assertFalse(fingerprint.withPosterHash(0L).matches(copy.withPosterHash(-1L), 12));
+        assertTrue(fingerprint.withPosterHash(0L).matches(other.withPosterHash(0xFL), 12));
+    }
+
+    @Test
+    void testMatches_UnrelatedClipsWithSameKeyframeCadence() {
+        // Steady scenes whose frame sizes are mostly set by the frame type
+        for (int seed = 1; seed <= 20; seed++) {
+            VideoFingerprint clip = VideoFingerprint.of(movie(600, 6000, 1920, 1080,
+                    frameSizes(noise(300, seed), 30, true, 1), 30));
+            VideoFingerprint unrelated = VideoFingerprint.of(movie(600, 6000, 1920, 1080,
+                    frameSizes(noise(300, seed + 100), 30, true, 1), 30));
+
+            assertTrue(clip.hasBitrateProfile());
+            assertFalse(clip.matches(unrelated, 12), "Seed " + seed);
+        }
+    }
+
+    @Test
+    void testOf_NoProfileWithSingleGroupOfPictures() {
+        VideoFingerprint fingerprint = VideoFingerprint.of(movie(600, 6000, 1920, 1080,
+                frameSizes(motion(300, 1), 300, true, 1), 300));
+        VideoFingerprint copy = VideoFingerprint.of(movie(600, 6000, 1920, 1080,
+                frameSizes(motion(300, 1), 300, true, 1), 300));
+
+        assertNotNull(fingerprint);
+        assertFalse(fingerprint.hasBitrateProfile());
+        assertFalse(fingerprint.matches(copy, 12), "Without a profile only cover art can match");
+    }
+
+    @Test
+    void testIndex_FindsMatchesWithinDurationTolerance() {
+        VideoFingerprintIndex<String> index = new VideoFingerprintIndex<>();
+        index.put("original", VideoFingerprint.of(movie(600, 6000, 1920, 1080,
+                frameSizes(motion(300, 1), 30, true, 1), 30)));
+        index.put("other", VideoFingerprint.of(movie(600, 6000, 1920, 1080,
+                frameSizes(motion(300, 7), 30, true, 1), 30)));
+        index.put("longer", VideoFingerprint.of(movie(600, 7200, 1920, 1080,
+                frameSizes(motion(300, 1), 30, true, 1), 30)));
+
+        VideoFingerprint copy = VideoFingerprint.of(movie(1000, 10_040, 1280, 720,
+                frameSizes(motion(300, 1), 30, false, 2), 30));
+        assertEquals(List.of("original"), index.findMatches(copy, 12));
+
+        index.remove("original");
+        assertTrue(index.findMatches(copy, 12).isEmpty());
+        assertEquals(2, index.size());
+    }
+
+    /**
+     * Scene complexity that changes over the clip, following a pattern picked by seed
+     */
+    private static double[] motion(int frames, int seed) {
+        return IntStream.range(0, frames)
+                .mapToDouble(i -> 1 + Math.sin(i * seed * 0.07) * Math.cos(i * 0.013 * seed + seed))
+                .toArray();
+    }
+
+    /**
+     * Scene complexity that stays within 5% of a constant
+     */
+    private static double[] noise(int frames, long seed) {
+        Random random = new Random(seed);
+        return IntStream.range(0, frames).mapToDouble(i -> 1 + 0.05 * random.nextGaussian()).toArray();
+    }
+
+    /**
+     * Frame sizes for a scene complexity, divided by a compression factor:
+     * a keyframe every gop frames and, with B-frames, every other frame at
+     * 40% of the size of a P-frame
+     */
+    private static int[] frameSizes(double[] complexity, int gop, boolean bFrames, int compression) {
+        int[] sizes = new int[complexity.length];
+        for (int i = 0; i < sizes.length; i++) {
+            double predicted = (20_000 * complexity[i] + 2000) * (bFrames && i % 2 == 1 ? 0.4 : 1);
+            sizes[i] = (int) ((i % gop == 0 ? 90_000 : predicted) / compression);
+        }
+        return sizes;
+    }
+
+    private static Mp4Movie movie(int timescale, long duration, int width, int height, int[] sampleSizes,
+            int gop) {
+        Mp4Movie.Track video = new Mp4Movie.Track();
+        video.handlerType = "vide";
+        video.timescale = timescale;
+        video.duration = duration;
+        video.sampleCount = sampleSizes.length;
+        video.sampleSizes = sampleSizes;
+        video.syncSamples = IntStream.iterate(0, i -> i < sampleSizes.length, i -> i + gop).toArray();
+        video.width = width;
+        video.height = height;
+
+        Mp4Movie movie = new Mp4Movie();
+        movie.timescale = timescale;
+        movie.duration = duration;
+        movie.tracks.add(video);
+        return movie;
+    }
+}
@@ -0,0 +1,85 @@
+package com.media.sort.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for FileContent
+ */
+class FileContentTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path createFile(String name, int size) throws Exception {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (i * 13);
+        }
+        return Files.write(tempDir.resolve(name), content);
+    }
+
+    @Test
+    void testRead_HoldsWholeFile() throws Exception {
+        Path file = createFile("photo.jpg", 100_000);
+
+        try (FileContent content = FileContent.read(file.toFile(), 1024 * 1024)) {
+            assertEquals(100_000, content.length());
+            try (InputStream in = content.newInputStream()) {
+                assertArrayEquals(Files.readAllBytes(file), in.readAllBytes());
+            }
+        }
+    }
+
+    @Test
+    void testRead_LargerThanLimitReturnsNull() throws Exception {
+        Path file = createFile("photo.jpg", 2048);
+
+        assertNull(FileContent.read(file.toFile(), 1024));
+    }
+
+    @Test
+    void testSlice_ClampedToEnd() throws Exception {
+        Path file = createFile("photo.jpg", 1000);
+
+        try (FileContent content = FileContent.read(file.toFile(), 1024 * 1024)) {
+            ByteBuffer slice = content.slice(900, 500);
+            assertEquals(100, slice.remaining());
+            assertEquals((byte) (900 * 13), slice.get());
+        }
+    }
+
+    @Test
+    void testRead_NestedReadDoesNotShareBytes() throws Exception {
+        Path first = createFile("first.jpg", 1000);
+        Path second = Files.write(tempDir.resolve("second.jpg"), new byte[1000]);
+
+        try (FileContent outer = FileContent.read(first.toFile(), 1024 * 1024);
+                FileContent inner = FileContent.read(second.toFile(), 1024 * 1024)) {
+            assertEquals(0, inner.asByteBuffer().get(1));
+            assertEquals((byte) 13, outer.asByteBuffer().get(1));
+        }
+    }
+
+    @Test
+    void testRead_LargeFileGetsOneOffArray() throws Exception {
+        Path large = createFile("large.jpg", FileContent.POOLED_CAPACITY + 1);
+        Path small = createFile("small.jpg", 1000);
+
+        try (FileContent content = FileContent.read(large.toFile(), Long.MAX_VALUE)) {
+            assertEquals(FileContent.POOLED_CAPACITY + 1, content.length());
+            assertEquals(content.length(), content.asByteBuffer().array().length);
+        }
+        try (FileContent content = FileContent.read(small.toFile(), Long.MAX_VALUE)) {
+            // The pooled array did not grow to the large file
+            assertEquals(FileContent.POOLED_CAPACITY, content.asByteBuffer().array().length);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.media.sort.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for FileHashUtils
+ */
+class FileHashUtilsTest {
+
+    @TempDir
+    Path tempDir;
+
+    private void assertMatchesReference(int size) throws Exception {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        Path file = Files.write(tempDir.resolve("file-" + size), content);
+
+        byte[] expected = MessageDigest.getInstance("SHA-256").digest(content);
+        assertArrayEquals(expected, FileHashUtils.sha256(file));
+    }
+
+    @Test
+    void testSha256_EmptyFile() throws Exception {
+        assertMatchesReference(0);
+    }
+
+    @Test
+    void testSha256_BufferedRead() throws Exception {
+        // Spans several reads of the pooled buffer
+        assertMatchesReference(700_000);
+    }
+
+    @Test
+    void testSha256_LargeFile() throws Exception {
+        assertMatchesReference(20 * 1024 * 1024);
+    }
+
+    @Test
+    void testToHex_MatchesHexFormat() {
+        byte[] bytes = { 0x00, 0x0f, (byte) 0xa5, (byte) 0xff, 0x10 };
+        assertEquals(HexFormat.of().formatHex(bytes), FileHashUtils.toHex(bytes));
+    }
+}
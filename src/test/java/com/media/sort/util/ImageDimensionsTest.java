@@ -0,0 +1,67 @@
+package com.media.sort.util;
+
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.metadata.Metadata;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ImageDimensions
+ */
+class ImageDimensionsTest {
+
+    @TempDir
+    Path tempDir;
+
+    private File createImage(String name, String format, int width, int height) throws Exception {
+        File file = tempDir.resolve(name).toFile();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR), format, file);
+        return file;
+    }
+
+    @Test
+    void testFromMetadata_JpegStartOfFrame() throws Exception {
+        File file = createImage("photo.jpg", "jpg", 640, 427);
+
+        Metadata metadata = ImageMetadataReader.readMetadata(file);
+
+        assertEquals(new ImageDimensions.Size(640, 427), ImageDimensions.fromMetadata(metadata));
+    }
+
+    @Test
+    void testFromMetadata_PngHeader() throws Exception {
+        File file = createImage("image.png", "png", 300, 200);
+
+        Metadata metadata = ImageMetadataReader.readMetadata(file);
+
+        assertEquals(new ImageDimensions.Size(300, 200), ImageDimensions.fromMetadata(metadata));
+    }
+
+    @Test
+    void testFromMetadata_NoDimensions() {
+        assertNull(ImageDimensions.fromMetadata(new Metadata()));
+        assertNull(ImageDimensions.fromMetadata(null));
+    }
+
+    @Test
+    void testFromHeader_ReadsWithoutDecoding() throws Exception {
+        File file = createImage("photo.jpg", "jpg", 1024, 768);
+
+        assertEquals(new ImageDimensions.Size(1024, 768), ImageDimensions.fromHeader(file));
+    }
+
+    @Test
+    void testFromHeader_UnsupportedFile() throws Exception {
+        File file = Files.writeString(tempDir.resolve("notes.jpg"), "not an image").toFile();
+
+        assertNull(ImageDimensions.fromHeader(file));
+    }
+}
@@ -0,0 +1,217 @@
+package com.media.sort.util;
+
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.exif.ExifSubIFDDirectory;
+import com.drew.metadata.exif.GpsDirectory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for JpegExif on JPEG headers assembled segment by segment
+ */
+class JpegExifTest {
+
+    private static final int ASCII = 2;
+    private static final int LONG = 4;
+    private static final int RATIONAL = 5;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRead_DatesDeviceLocationAndDimensions() throws Exception {
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+            Path file = write(jpeg(exif(order, true)));
+
+            JpegExif exif = JpegExif.read(file.toFile());
+
+            assertNotNull(exif);
+            // 14:30:15.25 at +02:00
+            assertEquals(Instant.parse("2021-06-01T12:30:15.250Z"), exif.dateTimeOriginal().toInstant());
+            // No offset tag: UTC
+            assertEquals(Instant.parse("2021-06-01T14:31:00Z"), exif.dateTimeDigitized().toInstant());
+            assertEquals("Canon", exif.make());
+            assertEquals("Canon EOS 80D", exif.model());
+            assertEquals(48.858222, exif.latitude(), 1e-6);
+            assertEquals(-2.284450, exif.longitude(), 1e-6);
+            assertEquals(4000, exif.width());
+            assertEquals(3000, exif.height());
+            assertEquals(exif, JpegExif.read(ByteBuffer.wrap(Files.readAllBytes(file))));
+        }
+    }
+
+    @Test
+    void testRead_MatchesMetadataExtractor() throws Exception {
+        Path file = write(jpeg(exif(ByteOrder.LITTLE_ENDIAN, true)));
+
+        JpegExif exif = JpegExif.read(file.toFile());
+        Metadata metadata = ImageMetadataReader.readMetadata(file.toFile());
+
+        ExifSubIFDDirectory subIfd = metadata.getFirstDirectoryOfType(ExifSubIFDDirectory.class);
+        assertEquals(subIfd.getDateOriginal(), exif.dateTimeOriginal());
+        assertEquals(subIfd.getDateDigitized(), exif.dateTimeDigitized());
+        assertEquals(metadata.getFirstDirectoryOfType(ExifIFD0Directory.class)
+                .getString(ExifIFD0Directory.TAG_MODEL), exif.model());
+        GpsDirectory gps = metadata.getFirstDirectoryOfType(GpsDirectory.class);
+        assertEquals(gps.getGeoLocation().getLatitude(), exif.latitude(), 1e-9);
+        assertEquals(gps.getGeoLocation().getLongitude(), exif.longitude(), 1e-9);
+    }
+
+    @Test
+    void testRead_WithoutExifOrLocation() throws Exception {
+        JpegExif noGps = JpegExif.read(write(jpeg(exif(ByteOrder.BIG_ENDIAN, false))).toFile());
+        assertNotNull(noGps.dateTimeOriginal());
+        assertNull(noGps.latitude());
+        assertNull(noGps.longitude());
+
+        // Only an XMP APP1 segment: dimensions but no tags
+        byte[] xmp = segment(0xE1, "http://ns.adobe.com/xap/1.0/\u0000<x:xmpmeta/>".getBytes(StandardCharsets.UTF_8));
+        JpegExif plain = JpegExif.read(write(jpeg(xmp)).toFile());
+        assertNull(plain.dateTimeOriginal());
+        assertNull(plain.make());
+        assertEquals(4000, plain.width());
+
+        assertNull(JpegExif.read(ByteBuffer.wrap("GIF89a....".getBytes(StandardCharsets.ISO_8859_1))));
+    }
+
+    @Test
+    void testRead_TruncatedHeader() throws Exception {
+        byte[] bytes = jpeg(exif(ByteOrder.LITTLE_ENDIAN, true));
+        JpegExif exif = JpegExif.read(ByteBuffer.wrap(bytes, 0, 60).slice());
+
+        assertNotNull(exif);
+        assertNull(exif.dateTimeOriginal());
+        assertEquals(0, exif.width());
+    }
+
+    private Path write(byte[] bytes) throws Exception {
+        return Files.write(Files.createTempFile(tempDir, "photo", ".jpg"), bytes);
+    }
+
+    /**
+     * SOI, JFIF APP0, the given APP1 segment, a quantization table, a
+     * 4000x3000 SOF0, then the start of the scan
+     */
+    private static byte[] jpeg(byte[] app1) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(new byte[]{(byte) 0xFF, (byte) 0xD8});
+        out.writeBytes(segment(0xE0, "JFIF\u0000\u0001\u0001\u0000\u0000\u0001\u0000\u0001\u0000\u0000"
+                .getBytes(StandardCharsets.ISO_8859_1)));
+        out.writeBytes(app1);
+        out.writeBytes(segment(0xDB, new byte[65]));
+        out.writeBytes(segment(0xC0, ByteBuffer.allocate(15).put((byte) 8).putShort((short) 3000)
+                .putShort((short) 4000).put((byte) 3).array()));
+        out.writeBytes(segment(0xDA, new byte[10]));
+        out.writeBytes(new byte[100]);
+        return out.toByteArray();
+    }
+
+    private static byte[] segment(int marker, byte[] payload) {
+        return ByteBuffer.allocate(4 + payload.length).put((byte) 0xFF).put((byte) marker)
+                .putShort((short) (2 + payload.length)).put(payload).array();
+    }
+
+    private record Entry(int tag, int type, int count, byte[] value) {
+    }
+
+    /**
+     * APP1 segment: "Exif\0\0", TIFF header, IFD0, the EXIF IFD and optionally the GPS IFD
+     */
+    private static byte[] exif(ByteOrder order, boolean gps) {
+        List<Entry> exifIfd = List.of(
+                ascii(0x9003, "2021:06:01 14:30:15"),
+                ascii(0x9004, "2021:06:01 14:31:00"),
+                ascii(0x9011, "+02:00"),
+                ascii(0x9291, "25"));
+        List<Entry> gpsIfd = List.of(
+                ascii(0x0001, "N"),
+                new Entry(0x0002, RATIONAL, 3, rationals(order, 48, 1, 51, 1, 2960, 100)),
+                ascii(0x0003, "W"),
+                new Entry(0x0004, RATIONAL, 3, rationals(order, 2, 1, 17, 1, 4020, 1000)));
+
+        // IFD0 pointers are inline LONGs, so its size does not depend on their values
+        int ifd0Size = ifd(order, 8, ifd0(order, 0, gps ? 0 : -1)).length;
+        int exifStart = 8 + ifd0Size;
+        byte[] exifBytes = ifd(order, exifStart, exifIfd);
+        int gpsStart = exifStart + exifBytes.length;
+
+        ByteArrayOutputStream tiff = new ByteArrayOutputStream();
+        tiff.writeBytes(ByteBuffer.allocate(8).order(order)
+                .putShort(order == ByteOrder.LITTLE_ENDIAN ? (short) 0x4949 : (short) 0x4D4D)
+                .putShort((short) 42).putInt(8).array());
+        tiff.writeBytes(ifd(order, 8, ifd0(order, exifStart, gps ? gpsStart : -1)));
+        tiff.writeBytes(exifBytes);
+        if (gps) {
+            tiff.writeBytes(ifd(order, gpsStart, gpsIfd));
+        }
+        byte[] header = "Exif\u0000\u0000".getBytes(StandardCharsets.ISO_8859_1);
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        payload.writeBytes(header);
+        payload.writeBytes(tiff.toByteArray());
+        return segment(0xE1, payload.toByteArray());
+    }
+
+    private static List<Entry> ifd0(ByteOrder order, int exifStart, int gpsStart) {
+        List<Entry> entries = new ArrayList<>(List.of(ascii(0x010F, "Canon"), ascii(0x0110, "Canon EOS 80D"),
+                new Entry(0x8769, LONG, 1, ByteBuffer.allocate(4).order(order).putInt(exifStart).array())));
+        if (gpsStart >= 0) {
+            entries.add(new Entry(0x8825, LONG, 1, ByteBuffer.allocate(4).order(order).putInt(gpsStart).array()));
+        }
+        return entries;
+    }
+
+    /**
+     * An IFD at a TIFF offset: count, entries, next-IFD pointer (0), then
+     * the values that do not fit in an entry
+     */
+    private static byte[] ifd(ByteOrder order, int start, List<Entry> entries) {
+        int dataStart = start + 2 + 12 * entries.size() + 4;
+        ByteBuffer table = ByteBuffer.allocate(dataStart - start).order(order);
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        table.putShort((short) entries.size());
+        for (Entry entry : entries) {
+            table.putShort((short) entry.tag()).putShort((short) entry.type()).putInt(entry.count());
+            if (entry.value().length <= 4) {
+                table.put(ByteBuffer.allocate(4).put(entry.value()).array());
+            } else {
+                table.putInt(dataStart + data.size());
+                data.writeBytes(entry.value());
+                if (data.size() % 2 == 1) {
+                    data.write(0); // Values start on a word boundary
+                }
+            }
+        }
+        table.putInt(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(table.array());
+        out.writeBytes(data.toByteArray());
+        return out.toByteArray();
+    }
+
+    private static Entry ascii(int tag, String value) {
+        byte[] bytes = (value + "\u0000").getBytes(StandardCharsets.ISO_8859_1);
+        return new Entry(tag, ASCII, bytes.length, bytes);
+    }
+
+    private static byte[] rationals(ByteOrder order, int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 * values.length).order(order);
+        for (int value : values) {
+            buffer.putInt(value);
+        }
+        return buffer.array();
+    }
+}